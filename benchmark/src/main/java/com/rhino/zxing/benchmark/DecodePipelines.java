@@ -0,0 +1,205 @@
+package com.rhino.zxing.benchmark;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.RGBLuminanceSource;
+import com.rhino.zxing.camera.RotatedYUVLuminanceSource;
+import com.rhino.zxing.decode.AdaptiveBinarizerStrategy;
+import com.rhino.zxing.decode.DecodeEngine;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The steps the library takes from a frame or image to a {@link com.google.zxing.LuminanceSource},
+ * repeated here without the Android classes around them.
+ */
+final class DecodePipelines {
+
+    /**
+     * What {@code DecodeThreadPool} asks for with the default preferences.
+     */
+    static final Set<BarcodeFormat> PREVIEW_FORMATS = EnumSet.of(
+            BarcodeFormat.UPC_A, BarcodeFormat.UPC_E, BarcodeFormat.EAN_13, BarcodeFormat.EAN_8,
+            BarcodeFormat.RSS_14, BarcodeFormat.RSS_EXPANDED,
+            BarcodeFormat.CODE_39, BarcodeFormat.CODE_93, BarcodeFormat.CODE_128, BarcodeFormat.ITF,
+            BarcodeFormat.CODABAR,
+            BarcodeFormat.QR_CODE, BarcodeFormat.DATA_MATRIX);
+
+    /**
+     * What {@code CodeUtils.parseCode(String)} asks for.
+     */
+    static final Set<BarcodeFormat> GALLERY_FORMATS;
+    static {
+        GALLERY_FORMATS = EnumSet.copyOf(PREVIEW_FORMATS);
+        GALLERY_FORMATS.add(BarcodeFormat.AZTEC);
+        GALLERY_FORMATS.add(BarcodeFormat.PDF_417);
+    }
+
+    // The longest side CodeUtils.compressBitmap() scales a gallery image down to.
+    private static final int GALLERY_MAX_WIDTH = 800;
+    private static final int GALLERY_MAX_HEIGHT = 480;
+
+    private DecodePipelines() {
+    }
+
+    /**
+     * @return the hints {@code DecodeThreadPool} hands each worker.
+     */
+    static Map<DecodeHintType,Object> previewHints() {
+        Map<DecodeHintType,Object> hints = new EnumMap<>(DecodeHintType.class);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, PREVIEW_FORMATS);
+        return hints;
+    }
+
+    /**
+     * @return an engine like each worker's, with the binarizer strategy the capture screen uses.
+     */
+    static DecodeEngine previewEngine() {
+        DecodeEngine engine = new DecodeEngine(previewHints(), null);
+        engine.setBinarizerStrategy(new AdaptiveBinarizerStrategy());
+        return engine;
+    }
+
+    static Map<DecodeHintType,Object> galleryHints() {
+        Map<DecodeHintType,Object> hints = new EnumMap<>(DecodeHintType.class);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, GALLERY_FORMATS);
+        return hints;
+    }
+
+    /**
+     * Like {@code FrameGeometry.buildLuminanceSource(byte[], int, int)}: the centred square,
+     * rotated in place.
+     */
+    static RotatedYUVLuminanceSource previewSource(Frame frame) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int size = Math.min(width, height);
+        return new RotatedYUVLuminanceSource(frame.getData(), width, height,
+                (width - size) / 2, (height - size) / 2, size, size, frame.getRotation());
+    }
+
+    /**
+     * The stock ZXing path: the Y plane is copied into an upright buffer, which is then cropped to
+     * the centred square with a {@link PlanarYUVLuminanceSource}.
+     */
+    static PlanarYUVLuminanceSource planarSource(Frame frame) {
+        byte[] data = frame.getData();
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        if (frame.getRotation() != 0) {
+            data = rotate(data, width, height, frame.getRotation());
+            if (frame.getRotation() != 180) {
+                int tmp = width;
+                width = height;
+                height = tmp;
+            }
+        }
+        int size = Math.min(width, height);
+        return new PlanarYUVLuminanceSource(data, width, height,
+                (width - size) / 2, (height - size) / 2, size, size, false);
+    }
+
+    /**
+     * The path before {@link RotatedYUVLuminanceSource}: only the centred square is copied, already
+     * upright, into a buffer kept across frames.
+     *
+     * @param buffer the buffer from the last frame, reused if it has the right size, or null.
+     */
+    static PlanarYUVLuminanceSource croppedCopySource(Frame frame, byte[] buffer) {
+        byte[] data = frame.getData();
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int size = Math.min(width, height);
+        if (frame.getRotation() == 0) {
+            return new PlanarYUVLuminanceSource(data, width, height,
+                    (width - size) / 2, (height - size) / 2, size, size, false);
+        }
+        if (frame.getRotation() != 90) {
+            throw new IllegalArgumentException("Bad rotation: " + frame.getRotation());
+        }
+        // The centred square of the upright frame, whose width is the frame's height.
+        int left = (height - size) / 2;
+        int top = (width - size) / 2;
+        if (buffer == null || buffer.length != size * size) {
+            buffer = new byte[size * size];
+        }
+        for (int x = 0; x < size; x++) {
+            int sourceOffset = (height - 1 - left - x) * width + top;
+            int rotatedOffset = x;
+            for (int y = 0; y < size; y++) {
+                buffer[rotatedOffset] = data[sourceOffset + y];
+                rotatedOffset += size;
+            }
+        }
+        return new PlanarYUVLuminanceSource(buffer, size, size, 0, 0, size, size, false);
+    }
+
+    /**
+     * Like {@code CodeUtils.getRGBLuminanceSource()}, including the copy out of the bitmap.
+     */
+    static RGBLuminanceSource gallerySource(GalleryImage image) {
+        int[] pixels = new int[image.getWidth() * image.getHeight()];
+        System.arraycopy(image.getPixels(), 0, pixels, 0, pixels.length);
+        return new RGBLuminanceSource(image.getWidth(), image.getHeight(), pixels);
+    }
+
+    /**
+     * Scales an image down as {@code CodeUtils.compressBitmap()} does, taking every n-th pixel
+     * like {@code BitmapFactory} does for a power of two {@code inSampleSize}.
+     */
+    static GalleryImage loadGalleryImage(String name, BarcodeFormat format, int[] pixels, int width, int height) {
+        int sampleSize = 1;
+        if (width > height && width > GALLERY_MAX_WIDTH) {
+            sampleSize = width / GALLERY_MAX_WIDTH;
+        } else if (width < height && height > GALLERY_MAX_HEIGHT) {
+            sampleSize = height / GALLERY_MAX_HEIGHT;
+        }
+        // BitmapFactory rounds inSampleSize down to a power of two.
+        sampleSize = Integer.highestOneBit(Math.max(sampleSize, 1));
+        if (sampleSize == 1) {
+            return new GalleryImage(name, format, pixels, width, height);
+        }
+        int sampledWidth = width / sampleSize;
+        int sampledHeight = height / sampleSize;
+        int[] sampled = new int[sampledWidth * sampledHeight];
+        for (int y = 0; y < sampledHeight; y++) {
+            for (int x = 0; x < sampledWidth; x++) {
+                sampled[y * sampledWidth + x] = pixels[y * sampleSize * width + x * sampleSize];
+            }
+        }
+        return new GalleryImage(name, format, sampled, sampledWidth, sampledHeight);
+    }
+
+    private static byte[] rotate(byte[] data, int width, int height, int rotation) {
+        byte[] rotated = new byte[width * height];
+        switch (rotation) {
+            case 90:
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        rotated[x * height + height - y - 1] = data[x + y * width];
+                    }
+                }
+                break;
+            case 180:
+                for (int i = 0, last = width * height - 1; i <= last; i++) {
+                    rotated[last - i] = data[i];
+                }
+                break;
+            case 270:
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        rotated[(width - 1 - x) * height + y] = data[x + y * width];
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Bad rotation: " + rotation);
+        }
+        return rotated;
+    }
+
+}
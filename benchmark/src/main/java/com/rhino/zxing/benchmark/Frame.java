@@ -0,0 +1,71 @@
+package com.rhino.zxing.benchmark;
+
+import com.google.zxing.BarcodeFormat;
+
+/**
+ * A camera preview frame in NV21, as passed to {@code Camera.PreviewCallback.onPreviewFrame()},
+ * together with the rotation the capture screen applies to it.
+ */
+public final class Frame {
+
+    private final String name;
+    private final BarcodeFormat format;
+    private final byte[] data;
+    private final int width;
+    private final int height;
+    private final int rotation;
+    private final int codeCount;
+
+    public Frame(String name, BarcodeFormat format, byte[] data, int width, int height, int rotation, int codeCount) {
+        if (data.length < width * height) {
+            throw new IllegalArgumentException("Frame " + name + " is smaller than " + width + "x" + height);
+        }
+        this.name = name;
+        this.format = format;
+        this.data = data;
+        this.width = width;
+        this.height = height;
+        this.rotation = rotation;
+        this.codeCount = codeCount;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public BarcodeFormat getFormat() {
+        return format;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return clockwise rotation, 0, 90, 180 or 270, which turns the frame upright on screen.
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
+    /**
+     * @return number of barcodes in the frame.
+     */
+    public int getCodeCount() {
+        return codeCount;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.rhino.zxing.benchmark;
+
+import com.google.zxing.BarcodeFormat;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Frames and images to run through the decode pipeline, read from the directory named by the
+ * {@value #DIR_PROPERTY} system property. Files are matched by name:
+ *
+ * <ul>
+ *   <li>{@code QR_CODE_1280x720_90.nv21}: a preview buffer exactly as delivered to
+ *   {@code onPreviewFrame()}, of the given format, size and display rotation. A suffix such as
+ *   {@code _3codes} gives the number of barcodes in the frame, and anything after that is a free
+ *   form tag, as in {@code QR_CODE_1280x720_90_3codes_shelf.nv21}.</li>
+ *   <li>{@code EAN_13.jpg}, {@code EAN_13_receipt.png}: a gallery image of the given format, with an
+ *   optional lower case tag.</li>
+ * </ul>
+ *
+ * Where the directory holds nothing that matches, a synthetic frame or image is rendered
+ * instead, so every benchmark runs without a corpus.
+ */
+final class FrameCorpus {
+
+    static final String DIR_PROPERTY = "corpus.dir";
+
+    private static final Pattern FRAME_NAME =
+            Pattern.compile("([A-Z0-9_]+?)_(\\d+)x(\\d+)_(0|90|180|270)(?:_(\\d+)codes)?(?:_.*)?\\.nv21");
+    private static final Pattern IMAGE_NAME =
+            Pattern.compile("([A-Z0-9_]+?)(?:_[a-z].*)?\\.(?i:png|jpg|jpeg)");
+
+    private FrameCorpus() {
+    }
+
+    static List<Frame> previewFrames(BarcodeFormat format, int width, int height, int rotation, int codeCount) {
+        List<Frame> frames = new ArrayList<>();
+        for (File file : list()) {
+            Matcher matcher = FRAME_NAME.matcher(file.getName());
+            if (matcher.matches()
+                    && matcher.group(1).equals(format.name())
+                    && Integer.parseInt(matcher.group(2)) == width
+                    && Integer.parseInt(matcher.group(3)) == height
+                    && Integer.parseInt(matcher.group(4)) == rotation
+                    && (matcher.group(5) == null ? 1 : Integer.parseInt(matcher.group(5))) == codeCount) {
+                frames.add(new Frame(file.getName(), format, read(file), width, height, rotation, codeCount));
+            }
+        }
+        if (frames.isEmpty()) {
+            frames.add(SyntheticFrames.preview(format, width, height, rotation, codeCount));
+        }
+        return frames;
+    }
+
+    /**
+     * @param width width of the synthetic image, used when the corpus has none of the format.
+     * @param height height of the synthetic image.
+     */
+    static List<GalleryImage> galleryImages(BarcodeFormat format, int width, int height) {
+        List<GalleryImage> images = new ArrayList<>();
+        for (File file : list()) {
+            Matcher matcher = IMAGE_NAME.matcher(file.getName());
+            if (matcher.matches() && matcher.group(1).equals(format.name())) {
+                BufferedImage image = readImage(file);
+                images.add(DecodePipelines.loadGalleryImage(file.getName(), format,
+                        image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth()),
+                        image.getWidth(), image.getHeight()));
+            }
+        }
+        if (images.isEmpty()) {
+            String name = format + "_" + width + "x" + height + "_synthetic";
+            images.add(DecodePipelines.loadGalleryImage(name, format,
+                    SyntheticFrames.gallery(format, width, height), width, height));
+        }
+        return images;
+    }
+
+    private static List<File> list() {
+        String dir = System.getProperty(DIR_PROPERTY);
+        File[] files = dir == null ? null : new File(dir).listFiles();
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+
+    private static byte[] read(File file) {
+        try {
+            return Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't read " + file, e);
+        }
+    }
+
+    private static BufferedImage readImage(File file) {
+        try {
+            BufferedImage image = ImageIO.read(file);
+            if (image == null) {
+                throw new IllegalStateException("Not an image: " + file);
+            }
+            return image;
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't read " + file, e);
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.rhino.zxing.benchmark;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Result;
+import com.google.zxing.common.HybridBinarizer;
+import com.rhino.zxing.decode.DecodeEngine;
+import com.rhino.zxing.decode.DecodeOutcome;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code CodeUtils.parseCode()} on an image picked from the gallery, once the bitmap has been
+ * decoded and scaled down.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GalleryDecodeBenchmark {
+
+    @Param({"QR_CODE", "DATA_MATRIX", "CODE_128", "EAN_13", "PDF_417"})
+    public String format;
+
+    /**
+     * Size of the synthetic photo, used where the corpus has no image of the format.
+     */
+    @Param({"1600x1200", "4000x3000"})
+    public String resolution;
+
+    private GalleryImage[] images;
+    private int next;
+    private MultiFormatReader reader;
+
+    @Setup
+    public void setUp() {
+        String[] size = resolution.split("x");
+        images = FrameCorpus.galleryImages(BarcodeFormat.valueOf(format),
+                Integer.parseInt(size[0]), Integer.parseInt(size[1])).toArray(new GalleryImage[0]);
+        reader = new MultiFormatReader();
+        reader.setHints(DecodePipelines.galleryHints());
+        for (GalleryImage image : images) {
+            DecodeOutcome outcome = new DecodeEngine(DecodePipelines.galleryHints(), null)
+                    .decode(DecodePipelines.gallerySource(image));
+            if (!outcome.isFound() || outcome.getResult().getBarcodeFormat() != image.getFormat()) {
+                throw new IllegalStateException("Can't decode " + image + ": " + outcome);
+            }
+        }
+    }
+
+    private GalleryImage nextImage() {
+        GalleryImage image = images[next];
+        next = (next + 1) % images.length;
+        return image;
+    }
+
+    /**
+     * As {@code CodeUtils.parseCode()}, which builds a new engine for every image.
+     */
+    @Benchmark
+    public DecodeOutcome parseCode() {
+        return new DecodeEngine(DecodePipelines.galleryHints(), null).decode(DecodePipelines.gallerySource(nextImage()));
+    }
+
+    /**
+     * Stock ZXing, with a reader kept from one image to the next.
+     */
+    @Benchmark
+    public Result multiFormatReader() {
+        try {
+            return reader.decodeWithState(new BinaryBitmap(new HybridBinarizer(DecodePipelines.gallerySource(nextImage()))));
+        } catch (NotFoundException e) {
+            return null;
+        } finally {
+            reader.reset();
+        }
+    }
+
+}
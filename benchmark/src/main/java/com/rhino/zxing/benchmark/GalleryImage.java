@@ -0,0 +1,50 @@
+package com.rhino.zxing.benchmark;
+
+import com.google.zxing.BarcodeFormat;
+
+/**
+ * An image picked from the gallery, already scaled down the way {@code CodeUtils.parseCode()}
+ * loads it, as ARGB pixels like those from {@code Bitmap.getPixels()}.
+ */
+public final class GalleryImage {
+
+    private final String name;
+    private final BarcodeFormat format;
+    private final int[] pixels;
+    private final int width;
+    private final int height;
+
+    public GalleryImage(String name, BarcodeFormat format, int[] pixels, int width, int height) {
+        this.name = name;
+        this.format = format;
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public BarcodeFormat getFormat() {
+        return format;
+    }
+
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
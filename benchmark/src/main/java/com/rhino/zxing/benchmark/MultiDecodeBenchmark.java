@@ -0,0 +1,76 @@
+package com.rhino.zxing.benchmark;
+
+import com.google.zxing.BarcodeFormat;
+import com.rhino.zxing.decode.DecodeEngine;
+import com.rhino.zxing.decode.DecodeOutcome;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of reporting every barcode in a frame, as {@code CaptureActivity.isMultiDecode()}
+ * does, against stopping at the first one, with one or more codes in view.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MultiDecodeBenchmark {
+
+    @Param({"QR_CODE", "CODE_128"})
+    public String format;
+
+    @Param({"1280x720", "1920x1080"})
+    public String resolution;
+
+    @Param({"1", "2", "4"})
+    public int codes;
+
+    private Frame[] frames;
+    private int next;
+    private DecodeEngine engine;
+
+    @Setup
+    public void setUp() {
+        String[] size = resolution.split("x");
+        frames = FrameCorpus.previewFrames(BarcodeFormat.valueOf(format),
+                Integer.parseInt(size[0]), Integer.parseInt(size[1]), 90, codes).toArray(new Frame[0]);
+        engine = DecodePipelines.previewEngine();
+        for (Frame frame : frames) {
+            DecodeOutcome outcome = engine.decodeMultiple(DecodePipelines.previewSource(frame));
+            if (!outcome.isFound() || outcome.getResults().length != frame.getCodeCount()) {
+                throw new IllegalStateException("Can't decode all of " + frame + ": " + outcome);
+            }
+        }
+    }
+
+    private Frame nextFrame() {
+        Frame frame = frames[next];
+        next = (next + 1) % frames.length;
+        return frame;
+    }
+
+    @Benchmark
+    public DecodeOutcome decode() {
+        return engine.decode(DecodePipelines.previewSource(nextFrame()));
+    }
+
+    @Benchmark
+    public DecodeOutcome decodeMultiple() {
+        return engine.decodeMultiple(DecodePipelines.previewSource(nextFrame()));
+    }
+
+}
@@ -0,0 +1,148 @@
+package com.rhino.zxing.benchmark;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.common.HybridBinarizer;
+import com.rhino.zxing.decode.DecodeEngine;
+import com.rhino.zxing.decode.DecodeOutcome;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each stage a preview frame goes through in {@code DecodeHandler}, and the stock ZXing path it
+ * replaced, per barcode format, preview size and display rotation. Run with {@code -prof gc} for
+ * the allocation rate; sample time mode gives the latency percentiles.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PreviewDecodeBenchmark {
+
+    @Param({"QR_CODE", "DATA_MATRIX", "CODE_128", "EAN_13"})
+    public String format;
+
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String resolution;
+
+    @Param({"0", "90"})
+    public int rotation;
+
+    private Frame[] frames;
+    private int next;
+    private byte[] cropBuffer;
+    private DecodeEngine engine;
+    private MultiFormatReader reader;
+
+    @Setup
+    public void setUp() {
+        String[] size = resolution.split("x");
+        List<Frame> corpus = FrameCorpus.previewFrames(BarcodeFormat.valueOf(format),
+                Integer.parseInt(size[0]), Integer.parseInt(size[1]), rotation, 1);
+        frames = corpus.toArray(new Frame[0]);
+        Map<DecodeHintType,Object> hints = DecodePipelines.previewHints();
+        engine = DecodePipelines.previewEngine();
+        reader = new MultiFormatReader();
+        reader.setHints(hints);
+        // A frame nothing can be read from would only measure the readers giving up.
+        for (Frame frame : frames) {
+            DecodeOutcome outcome = engine.decode(DecodePipelines.previewSource(frame));
+            if (!outcome.isFound() || outcome.getResult().getBarcodeFormat() != frame.getFormat()) {
+                throw new IllegalStateException("Can't decode " + frame + ": " + outcome);
+            }
+        }
+    }
+
+    private Frame nextFrame() {
+        Frame frame = frames[next];
+        next = (next + 1) % frames.length;
+        return frame;
+    }
+
+    /**
+     * The luminance source {@code DecodeHandler} builds, rotating lazily, read out in full.
+     */
+    @Benchmark
+    public byte[] rotatedSource() {
+        return DecodePipelines.previewSource(nextFrame()).getMatrix();
+    }
+
+    /**
+     * A rotated copy of the frame cropped with {@link com.google.zxing.PlanarYUVLuminanceSource},
+     * read out in full.
+     */
+    @Benchmark
+    public byte[] rotateCopyPlanarCrop() {
+        return DecodePipelines.planarSource(nextFrame()).getMatrix();
+    }
+
+    /**
+     * A rotated copy of the centred square only, into a buffer kept across frames, read out in
+     * full; the step between the two above.
+     */
+    @Benchmark
+    public byte[] rotateCropCopy() {
+        PlanarYUVLuminanceSource source = DecodePipelines.croppedCopySource(nextFrame(), cropBuffer);
+        byte[] matrix = source.getMatrix();
+        cropBuffer = matrix;
+        return matrix;
+    }
+
+    @Benchmark
+    public BitMatrix hybridBinarizer() throws NotFoundException {
+        return new HybridBinarizer(DecodePipelines.previewSource(nextFrame())).getBlackMatrix();
+    }
+
+    @Benchmark
+    public BitMatrix globalHistogramBinarizer() throws NotFoundException {
+        return new GlobalHistogramBinarizer(DecodePipelines.previewSource(nextFrame())).getBlackMatrix();
+    }
+
+    /**
+     * Stock ZXing: a rotated copy, the hybrid binarizer and {@link MultiFormatReader}.
+     */
+    @Benchmark
+    public Result multiFormatReader() {
+        LuminanceSource source = DecodePipelines.planarSource(nextFrame());
+        try {
+            return reader.decodeWithState(new BinaryBitmap(new HybridBinarizer(source)));
+        } catch (NotFoundException e) {
+            return null;
+        } finally {
+            reader.reset();
+        }
+    }
+
+    /**
+     * The whole of {@code DecodeHandler.decode()} without a region tracker or quality gate.
+     */
+    @Benchmark
+    public DecodeOutcome decodeEngine() {
+        return engine.decode(DecodePipelines.previewSource(nextFrame()));
+    }
+
+}
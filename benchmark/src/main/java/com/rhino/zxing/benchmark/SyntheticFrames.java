@@ -0,0 +1,189 @@
+package com.rhino.zxing.benchmark;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Renders barcodes into preview frames and gallery images, for when no recorded corpus is
+ * available. The frames are lit unevenly and carry sensor-like noise, so that both binarizers
+ * have some work to do, and codes are placed inside the centred square the capture screen crops.
+ */
+final class SyntheticFrames {
+
+    private static final int BLACK = 40;
+    private static final int WHITE = 210;
+    private static final int NOISE = 12;
+
+    private SyntheticFrames() {
+    }
+
+    /**
+     * @param rotation clockwise rotation which turns the frame upright; the codes are drawn so
+     *                 that they read upright after it.
+     * @param codeCount number of codes, laid out in a grid inside the centred square.
+     */
+    static Frame preview(BarcodeFormat format, int width, int height, int rotation, int codeCount) {
+        int uprightWidth = rotation % 180 == 0 ? width : height;
+        int uprightHeight = rotation % 180 == 0 ? height : width;
+        byte[] upright = render(format, uprightWidth, uprightHeight, codeCount, 0.7f);
+
+        byte[] data = new byte[width * height * 3 / 2];
+        for (int y = 0; y < uprightHeight; y++) {
+            for (int x = 0; x < uprightWidth; x++) {
+                int offset;
+                switch (rotation) {
+                    case 0:
+                        offset = y * width + x;
+                        break;
+                    case 90:
+                        offset = (height - 1 - x) * width + y;
+                        break;
+                    case 180:
+                        offset = (height - 1 - y) * width + width - 1 - x;
+                        break;
+                    case 270:
+                        offset = x * width + width - 1 - y;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Bad rotation: " + rotation);
+                }
+                data[offset] = upright[y * uprightWidth + x];
+            }
+        }
+        // Neutral chroma; the decoder only reads the Y plane.
+        for (int i = width * height; i < data.length; i++) {
+            data[i] = (byte) 128;
+        }
+        String name = format + "_" + width + "x" + height + "_" + rotation + "_" + codeCount + "codes_synthetic";
+        return new Frame(name, format, data, width, height, rotation, codeCount);
+    }
+
+    /**
+     * @return a photo-sized image with one code, before the scaling {@code CodeUtils} applies.
+     */
+    static int[] gallery(BarcodeFormat format, int width, int height) {
+        byte[] luminance = render(format, width, height, 1, 0.4f);
+        int[] pixels = new int[luminance.length];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000 | ((luminance[i] & 0xff) * 0x00010101);
+        }
+        return pixels;
+    }
+
+    /**
+     * @return the text encoded in code {@code index} of a synthetic frame.
+     */
+    static String contents(BarcodeFormat format, int index) {
+        switch (format) {
+            case EAN_13:
+                return withCheckDigit(String.valueOf(690123456700L + index));
+            case EAN_8:
+                return withCheckDigit(String.valueOf(6901200 + index));
+            case UPC_A:
+                return withCheckDigit(String.valueOf(12345678900L + index));
+            case ITF:
+                return String.valueOf(1234567890 + index);
+            case CODE_39:
+            case CODE_93:
+            case CODABAR:
+                return "A" + (100000 + index) + "B";
+            case CODE_128:
+                return "RHINO-" + (100000 + index);
+            default:
+                return "https://github.com/rhinoSp/LibZxing?code=" + index;
+        }
+    }
+
+    private static byte[] render(BarcodeFormat format, int width, int height, int codeCount, float fill) {
+        byte[] luminance = new byte[width * height];
+        int[] illumination = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // A light source towards the top left, falling off to about 60%.
+                illumination[y * width + x] = 100 - 40 * (x + y) / (width + height);
+            }
+        }
+        int[] code = new int[width * height];
+        for (int i = 0; i < code.length; i++) {
+            code[i] = WHITE;
+        }
+
+        int square = Math.min(width, height);
+        int squareLeft = (width - square) / 2;
+        int squareTop = (height - square) / 2;
+        int columns = (int) Math.ceil(Math.sqrt(codeCount));
+        int rows = (codeCount + columns - 1) / columns;
+        int cellWidth = square / columns;
+        int cellHeight = square / rows;
+        boolean oneD = isOneD(format);
+        for (int i = 0; i < codeCount; i++) {
+            int codeWidth = (int) (cellWidth * (oneD ? 0.9f : fill));
+            int codeHeight = oneD ? cellHeight / 3 : codeWidth;
+            if (!oneD) {
+                codeWidth = codeHeight = Math.min(codeWidth, (int) (cellHeight * fill));
+            }
+            BitMatrix matrix = encode(format, contents(format, i), codeWidth, codeHeight);
+            // Some writers, such as the Data Matrix one, ignore the requested size.
+            int scale = Math.max(1, Math.min(codeWidth / matrix.getWidth(), codeHeight / matrix.getHeight()));
+            int matrixWidth = matrix.getWidth() * scale;
+            int matrixHeight = matrix.getHeight() * scale;
+            int left = squareLeft + (i % columns) * cellWidth + (cellWidth - matrixWidth) / 2;
+            int top = squareTop + (i / columns) * cellHeight + (cellHeight - matrixHeight) / 2;
+            for (int y = 0; y < matrixHeight; y++) {
+                for (int x = 0; x < matrixWidth; x++) {
+                    if (matrix.get(x / scale, y / scale)) {
+                        code[(top + y) * width + left + x] = BLACK;
+                    }
+                }
+            }
+        }
+
+        int seed = 0x9E3779B9 ^ format.ordinal() ^ width * 31 ^ height;
+        for (int i = 0; i < luminance.length; i++) {
+            seed ^= seed << 13;
+            seed ^= seed >>> 17;
+            seed ^= seed << 5;
+            int value = code[i] * illumination[i] / 100 + seed % NOISE;
+            luminance[i] = (byte) Math.max(0, Math.min(255, value));
+        }
+        return luminance;
+    }
+
+    private static BitMatrix encode(BarcodeFormat format, String contents, int width, int height) {
+        Map<EncodeHintType,Object> hints = new EnumMap<>(EncodeHintType.class);
+        hints.put(EncodeHintType.MARGIN, 1);
+        try {
+            return new MultiFormatWriter().encode(contents, format, width, height, hints);
+        } catch (WriterException e) {
+            throw new IllegalArgumentException("Can't render " + format, e);
+        }
+    }
+
+    private static boolean isOneD(BarcodeFormat format) {
+        switch (format) {
+            case QR_CODE:
+            case DATA_MATRIX:
+            case AZTEC:
+            case PDF_417:
+            case MAXICODE:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private static String withCheckDigit(String digits) {
+        int sum = 0;
+        for (int i = digits.length() - 1, weight = 3; i >= 0; i--, weight = 4 - weight) {
+            sum += (digits.charAt(i) - '0') * weight;
+        }
+        return digits + (10 - sum % 10) % 10;
+    }
+
+}
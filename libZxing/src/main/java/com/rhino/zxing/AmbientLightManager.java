@@ -27,6 +27,7 @@ import android.preference.PreferenceManager;
 
 import com.rhino.zxing.camera.CameraManager;
 import com.rhino.zxing.camera.FrontLightMode;
+import com.rhino.zxing.decode.FrameQuality;
 
 
 /**
@@ -39,10 +40,16 @@ final class AmbientLightManager implements SensorEventListener {
 
     private static final float TOO_DARK_LUX = 45.0f;
     private static final float BRIGHT_ENOUGH_LUX = 450.0f;
+    // Without a light sensor, fall back on the preview frames' brightness. The light itself
+    // brightens the frames, so it is only ever switched on this way.
+    private static final int TOO_DARK_BRIGHTNESS = 40;
+    private static final int TOO_DARK_FRAMES = 15;
 
     private final Context context;
     private CameraManager cameraManager;
     private Sensor lightSensor;
+    private boolean useFrameBrightness;
+    private int darkFrames;
 
     public AmbientLightManager(Context context) {
         this.context = context;
@@ -56,11 +63,15 @@ final class AmbientLightManager implements SensorEventListener {
             lightSensor = sensorManager.getDefaultSensor(Sensor.TYPE_LIGHT);
             if (lightSensor != null) {
                 sensorManager.registerListener(this, lightSensor, SensorManager.SENSOR_DELAY_NORMAL);
+            } else {
+                useFrameBrightness = true;
+                darkFrames = 0;
             }
         }
     }
 
     void stop() {
+        useFrameBrightness = false;
         if (lightSensor != null) {
             SensorManager sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
             sensorManager.unregisterListener(this);
@@ -81,6 +92,18 @@ final class AmbientLightManager implements SensorEventListener {
         }
     }
 
+    void onFrameQuality(FrameQuality quality) {
+        CameraManager theCameraManager = cameraManager;
+        if (!useFrameBrightness || theCameraManager == null) {
+            return;
+        }
+        if (quality.getBrightness() > TOO_DARK_BRIGHTNESS) {
+            darkFrames = 0;
+        } else if (++darkFrames == TOO_DARK_FRAMES) {
+            theCameraManager.setTorch(true);
+        }
+    }
+
     @Override
     public void onAccuracyChanged(Sensor sensor, int accuracy) {
         // do nothing
@@ -18,12 +18,13 @@ package com.rhino.zxing;
 
 
 import android.app.Activity;
+import android.app.AlertDialog;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Rect;
 import android.graphics.RectF;
-import android.hardware.Camera;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
@@ -39,28 +40,38 @@ import android.view.Window;
 import android.view.WindowManager;
 import android.widget.Toast;
 
-import com.google.zxing.BinaryBitmap;
-import com.google.zxing.ChecksumException;
-import com.google.zxing.FormatException;
-import com.google.zxing.NotFoundException;
-import com.google.zxing.RGBLuminanceSource;
-import com.google.zxing.common.HybridBinarizer;
-import com.google.zxing.qrcode.QRCodeReader;
 import com.rhino.zxing.camera.CameraManager;
+import com.rhino.zxing.camera.CameraStarter;
+import com.rhino.zxing.camera.FrameGeometry;
+import com.rhino.zxing.camera.PreviewSizeSelector;
+import com.rhino.zxing.camera.StartupTimings;
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.DecodeHintType;
 import com.google.zxing.Result;
+import com.rhino.zxing.decode.AdaptiveBinarizerStrategy;
+import com.rhino.zxing.decode.AutoZoom;
+import com.rhino.zxing.decode.BinarizerStrategy;
 import com.rhino.zxing.decode.DecodeFormatManager;
 import com.rhino.zxing.decode.DecodeHintManager;
+import com.rhino.zxing.decode.DecodeMetrics;
+import com.rhino.zxing.decode.DecodeOutcome;
+import com.rhino.zxing.decode.DecodeStage;
+import com.rhino.zxing.decode.DecodeStatistics;
+import com.rhino.zxing.decode.FrameQuality;
+import com.rhino.zxing.decode.FramePolicy;
+import com.rhino.zxing.decode.FrameScheduler;
+import com.rhino.zxing.decode.HintEscalation;
+import com.rhino.zxing.decode.InvertedDecode;
+import com.rhino.zxing.decode.LatencyHistogram;
+import com.rhino.zxing.decode.ResultFilter;
+import com.rhino.zxing.utils.CodeUtils;
 import com.rhino.zxing.utils.StatusBarUtils;
 import com.rhino.zxing.utils.UriUtils;
 import com.rhino.zxing.view.ViewfinderView;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Hashtable;
-import java.util.List;
+import java.util.EnumMap;
 import java.util.Map;
 
 /**
@@ -77,6 +88,7 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
     private Bitmap scanBitmap;
 
     public static final String KEY_RESULT = Intents.Scan.RESULT;
+    public static final String KEY_RESULTS = Intents.Scan.RESULTS;
 
     private static final String TAG = CaptureActivity.class.getSimpleName();
 
@@ -113,6 +125,35 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
     private InactivityTimer inactivityTimer;
     private BeepManager beepManager;
     private AmbientLightManager ambientLightManager;
+    private final DecodeStatistics decodeStatistics = new DecodeStatistics();
+    private final DecodeMetrics decodeMetrics = new DecodeMetrics();
+    private PreviewSizeSelector previewSizeSelector;
+    private boolean previewSizeSelectorCreated;
+    private CameraStarter cameraStarter;
+    private boolean cameraOpened;
+    // Built while the camera opens, and becomes handler once the preview starts.
+    private CaptureActivityHandler startingHandler;
+    private StartupTimings startupTimings;
+    private final CameraStarter.Callback cameraStartCallback = new CameraStarter.Callback() {
+        @Override
+        public void onCameraOpened() {
+            cameraOpened = true;
+            startPreviewIfReady();
+        }
+
+        @Override
+        public void onCameraOpenFailed(Exception e) {
+            // Barcode Scanner has seen crashes in the wild of this variety:
+            // java.?lang.?RuntimeException: Fail to connect to camera service
+            Log.w(TAG, "Unexpected error initializing camera", e);
+            // Nothing will be decoded; stop the decode threads built meanwhile.
+            if (startingHandler != null) {
+                startingHandler.quitSynchronously();
+                startingHandler = null;
+            }
+            displayFrameworkBugMessageAndExit();
+        }
+    };
 
     /**
      * 是否支持缩放（变焦），默认支持
@@ -139,6 +180,21 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
         return beepManager;
     }
 
+    /**
+     * 解码统计，记录识别成功次数及各类失败原因（未找到、校验失败、格式错误、读取出错）的次数
+     */
+    public DecodeStatistics getDecodeStatistics() {
+        return decodeStatistics;
+    }
+
+    /**
+     * 解码各阶段耗时（纳秒）的直方图，可通过{@link DecodeMetrics#snapshot()}获取p50/p99等分位数用于上报。
+     * 每次打开相机时清零，只包含本次扫码的耗时
+     */
+    public DecodeMetrics getDecodeMetrics() {
+        return decodeMetrics;
+    }
+
     @Override
     public void onCreate(Bundle icicle) {
         this.requestWindowFeature(Window.FEATURE_NO_TITLE);
@@ -264,8 +320,9 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
         if (TextUtils.isEmpty(path)) {
             return null;
         }
-        Hashtable<DecodeHintType, String> hints = new Hashtable();
+        Map<DecodeHintType, Object> hints = new EnumMap<>(DecodeHintType.class);
         hints.put(DecodeHintType.CHARACTER_SET, "UTF-8"); // 设置二维码内容的编码
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, DecodeFormatManager.QR_CODE_FORMATS);
         BitmapFactory.Options options = new BitmapFactory.Options();
         options.inJustDecodeBounds = true; // 先获取原大小
         scanBitmap = BitmapFactory.decodeFile(path, options);
@@ -277,22 +334,14 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
         options.inSampleSize = sampleSize;
 
         scanBitmap = BitmapFactory.decodeFile(path, options);
-        int[] data = new int[scanBitmap.getWidth() * scanBitmap.getHeight()];
-        scanBitmap.getPixels(data, 0, scanBitmap.getWidth(), 0, 0, scanBitmap.getWidth(), scanBitmap.getHeight());
-        RGBLuminanceSource rgbLuminanceSource = new RGBLuminanceSource(scanBitmap.getWidth(), scanBitmap.getHeight(), data);
-        BinaryBitmap binaryBitmap = new BinaryBitmap(new HybridBinarizer(rgbLuminanceSource));
-        QRCodeReader reader = new QRCodeReader();
-        Result result = null;
-        try {
-            result = reader.decode(binaryBitmap, hints);
-        } catch (NotFoundException e) {
-            Log.e(TAG, "NotFoundException", e);
-        } catch (ChecksumException e) {
-            Log.e(TAG, "ChecksumException", e);
-        } catch (FormatException e) {
-            Log.e(TAG, "FormatException", e);
+        if (scanBitmap == null) {
+            return null;
+        }
+        DecodeOutcome outcome = CodeUtils.decodeBitmap(scanBitmap, hints);
+        if (!outcome.isFound()) {
+            Log.e(TAG, "Decode failed: " + outcome.getStatus());
         }
-        return result;
+        return outcome.getResult();
     }
 
     public int getPreviewViewId(){
@@ -320,7 +369,20 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
         // first launch. That led to bugs where the scanning rectangle was the wrong size and partially
         // off screen.
 
+        // Counted from here, as this is where the user starts waiting for the camera.
+        startupTimings = new StartupTimings();
         cameraManager = new CameraManager(getApplication());
+        cameraManager.setStartupTimings(startupTimings);
+        cameraManager.setWarmIdleMs(getWarmCameraIdleMs());
+        if (!previewSizeSelectorCreated) {
+            // Kept for the life of the activity, so each camera start uses the decode time
+            // measured during the last one.
+            previewSizeSelector = createPreviewSizeSelector();
+            previewSizeSelectorCreated = true;
+        }
+        cameraManager.setPreviewSizeSelector(previewSizeSelector);
+        // Timings are per camera start; recordDecodeCost() relies on them being for this size only.
+        decodeMetrics.reset();
         viewfinderView.setCameraManager(cameraManager);
 
         handler = null;
@@ -403,6 +465,15 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
 
         }
 
+        // The intent may have asked for a camera or framing rect, so open the camera only now, on
+        // a background thread. The decode threads are built meanwhile, and the preview starts once
+        // both the camera and the surface are ready.
+        cameraOpened = false;
+        cameraStarter = new CameraStarter(cameraManager);
+        cameraStarter.start(cameraStartCallback);
+        startingHandler = new CaptureActivityHandler(this, decodeFormats, decodeHints, characterSet, cameraManager);
+        startupTimings.mark(StartupTimings.Phase.DECODER_STARTED);
+
         SurfaceView surfaceView = findViewById(getPreviewViewId());
         SurfaceHolder surfaceHolder = surfaceView.getHolder();
         if (hasSurface) {
@@ -450,13 +521,23 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
 
     @Override
     protected void onPause() {
+        if (cameraStarter != null) {
+            // A camera still being opened is closed by the opening thread, without waiting here.
+            cameraStarter.cancel();
+            cameraStarter = null;
+        }
         if (handler != null) {
             handler.quitSynchronously();
             handler = null;
         }
+        if (startingHandler != null) {
+            startingHandler.quitSynchronously();
+            startingHandler = null;
+        }
         inactivityTimer.onPause();
         ambientLightManager.stop();
         beepManager.close();
+        recordDecodeCost();
         cameraManager.closeDriver();
         //historyManager = null; // Keep for onActivityResult
         if (!hasSurface) {
@@ -467,6 +548,14 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
         super.onPause();
     }
 
+    private void recordDecodeCost() {
+        FrameGeometry geometry = cameraManager.getFrameGeometry();
+        LatencyHistogram decode = decodeMetrics.getHistogram(DecodeStage.DECODE);
+        if (previewSizeSelector != null && geometry != null && decode.getCount() > 0L) {
+            previewSizeSelector.recordDecodeNanos(decode.snapshot().getPercentileNanos(50.0), geometry.getCropSize());
+        }
+    }
+
     @Override
     protected void onDestroy() {
         inactivityTimer.shutdown();
@@ -556,7 +645,7 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
                 savedResultToShow = result;
             }
             if (savedResultToShow != null) {
-                Message message = Message.obtain(handler, R.id.decode_succeeded, savedResultToShow);
+                Message message = Message.obtain(handler, R.id.decode_succeeded, -1, 0, savedResultToShow);
                 handler.sendMessage(message);
             }
             savedResultToShow = null;
@@ -612,6 +701,28 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
         }
     }
 
+    /**
+     * 多码模式下的扫码结果回调，一帧中识别到的所有条码（已去重）一次性返回
+     * @param results 扫码结果，至少一个
+     */
+    public void onResult(Result[] results){
+        if(isContinuousScan()){
+            if(isAutoRestartPreviewAndDecode()){
+                restartPreviewAndDecode();
+            }
+        }else{
+            String[] texts = new String[results.length];
+            for (int i = 0; i < results.length; i++) {
+                texts[i] = results[i].getText();
+            }
+            Intent intent = new Intent();
+            intent.putExtra(KEY_RESULT,texts[0]);
+            intent.putExtra(KEY_RESULTS,texts);
+            setResult(RESULT_OK,intent);
+            finish();
+        }
+    }
+
     /**
      * 是否连续扫码，如果想支持连续扫码，则将此方法返回{@code true}并重写{@link #onResult(Result)}
      * @return 默认返回 false
@@ -620,6 +731,190 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
         return false;
     }
 
+    /**
+     * 连续扫码时的结果过滤，位于解码和{@link #onResult(Result)}之间：内容和格式都相同的条码在时间窗口内只回调一次，
+     * 条码一直在画面中时不会重复回调；也可对易误读的一维码开启投票，最近M次识别中有N次一致才回调，
+     * 例如{@code new ResultFilter(1500L, 2, 3, ResultFilter.LOW_CONFIDENCE_FORMATS)}
+     * @return 默认过滤1500毫秒内的重复结果，不投票；返回 null 则不过滤
+     */
+    public ResultFilter createResultFilter(){
+        return new ResultFilter(1500L);
+    }
+
+    /**
+     * 预览帧调度：解码线程都忙时如何处理新到的帧，以及帧的最长有效时间。等待解码时已超过有效时间的帧不再解码，
+     * 避免解码线程处理镜头早已离开的旧画面；已开始解码的帧识别到的结果总会回调。可选策略见{@link FramePolicy}，
+     * 例如每200毫秒取一帧：{@code new FrameScheduler(FramePolicy.FIXED_RATE, 1, 200L, 300L)}
+     * @return 默认只保留最新一帧，有效时间300毫秒
+     */
+    public FrameScheduler createFrameScheduler(){
+        return new FrameScheduler(300L);
+    }
+
+    /**
+     * 解码线程数，每个线程使用独立的解码器，可同时解码多帧预览数据
+     * @return 默认为CPU核数减一，最少1个，最多4个
+     */
+    public int getDecodeThreadCount(){
+        return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, 4));
+    }
+
+    /**
+     * 是否复用预览帧缓冲区，开启后相机将预览数据写入预先分配的缓冲区，避免每帧分配内存
+     * @return 默认返回 true
+     */
+    public boolean isPreviewBufferReuse(){
+        return true;
+    }
+
+    /**
+     * 二值化策略：按每帧的亮度统计选择二值化算法，所有解码线程共用。
+     * 默认的{@link AdaptiveBinarizerStrategy}在暗光、低对比度时改用更合适的算法，并根据命中率调整顺序
+     * @return 返回 null 则每帧先用HybridBinarizer，未识别到再用GlobalHistogramBinarizer
+     */
+    public BinarizerStrategy createBinarizerStrategy(){
+        return new AdaptiveBinarizerStrategy();
+    }
+
+    /**
+     * 是否在解码前检测帧质量（对比度、清晰度、与上一帧相比的运动），跳过无法识别的帧，节省CPU和电量
+     * @return 默认返回 true
+     */
+    public boolean isFrameQualityGate(){
+        return true;
+    }
+
+    /**
+     * 是否在识别成功时生成扫码框内画面的灰度缩略图，传给{@link #handleDecode(Result, Bitmap, float)}。
+     * 缩略图使用复用的Bitmap，只在回调期间有效，如需保留请自行复制
+     * @return 默认返回 false，此时 handleDecode 收到的 barcode 为 null
+     */
+    public boolean isResultThumbnail(){
+        return false;
+    }
+
+    /**
+     * 是否开启多码模式，一帧中识别扫码框内的所有条码，结果通过{@link #onResult(Result[])}一次性返回
+     * @return 默认返回 false
+     */
+    public boolean isMultiDecode(){
+        return false;
+    }
+
+    /**
+     * 是否跟踪条码位置，识别到条码后只解码其附近的区域，该区域未识别到时立即解码整个扫码框；
+     * 适合连续扫码
+     * @return 默认返回 false
+     */
+    public boolean isRegionTracking(){
+        return false;
+    }
+
+    /**
+     * 扫码框较大时先以一半分辨率解码，大而近的条码只需处理四分之一的像素，未识别到再用全分辨率；
+     * 识别到的多为小条码时会自动减少半分辨率的尝试。各层命中率见{@link #getDecodeStatistics()}
+     * @return 默认返回 true
+     */
+    public boolean isPyramidDecode(){
+        return true;
+    }
+
+    /**
+     * 是否识别反色条码（深色背景上的浅色条码，如手机屏幕上显示或激光刻在金属上的条码）。
+     * WHEN_DARK 只在画面大部分偏暗时多解一次反色；ALTERNATE 每帧只解一种，未识别到时换另一种。
+     * 默认的 WHEN_DARK 在暗处对准不含条码的画面时每帧要解两遍，只扫纸质条码的页面可返回
+     * {@link InvertedDecode#OFF}。两种极性的命中率见{@link #getDecodeStatistics()}
+     * @return 默认返回 {@link InvertedDecode#WHEN_DARK}
+     */
+    public InvertedDecode getInvertedDecode(){
+        return InvertedDecode.WHEN_DARK;
+    }
+
+    /**
+     * 每帧解码的时间上限（毫秒），超时后放弃该帧去解下一帧，避免个别慢帧拖住解码线程；
+     * 退出扫码时正在解的帧也会立即中止。被放弃的帧数见{@link #getDecodeStatistics()}。
+     * 只在二值化和读码器之间检查，二维码的定位和解码过程中不会中止，实际耗时可能超出数十毫秒，
+     * 见{@link com.rhino.zxing.decode.DecodeBudget}；应大于{@link #createFrameScheduler()}的帧过期时间
+     * @return 默认返回 0，不限时
+     */
+    public long getDecodeBudgetMs(){
+        return 0L;
+    }
+
+    /**
+     * 按解码开销选择预览尺寸：选能看清目标条码的最小预览尺寸，而不是最接近屏幕的尺寸，
+     * 高分辨率手机上可用720p代替1080p，解码开销减半。每帧解码耗时先按估计值，之后按上次打开相机时实测的耗时计算。
+     * 可返回 new PreviewSizeSelector(PreviewSizeSelector.DEFAULT_TARGET_MODULES, PreviewSizeSelector.DEFAULT_MIN_MODULE_PIXELS,
+     * PreviewSizeSelector.DEFAULT_MIN_CODE_FRACTION, getDecodeBudgetMs() * 1000000L)，
+     * 目标为占扫码框40%宽的版本10二维码，每个模块至少3像素
+     * @return 默认返回 null，按屏幕尺寸选择预览尺寸
+     */
+    public PreviewSizeSelector createPreviewSizeSelector(){
+        return null;
+    }
+
+    /**
+     * 退出扫码后相机保持打开的时间（毫秒）。期间再次打开扫码界面时直接沿用已打开并设置好的相机，
+     * 几乎无需等待；超时无人使用则释放相机，其他应用才能使用。适合频繁扫码的场景，进程内共用一个相机
+     * @return 默认返回 0，退出扫码后立即释放相机
+     */
+    public long getWarmCameraIdleMs(){
+        return 0L;
+    }
+
+    /**
+     * 解码参数逐级放宽：每次扫码先用开销小的参数，连续多帧未识别到再换下一级，识别成功后回到第一级。
+     * 可返回 HintEscalation.standard(hints, null, HintEscalation.DEFAULT_MISSES_TO_ESCALATE)，
+     * 第一级使用完整的解码参数，连续4帧未识别到后再加上TRY_HARDER；传入primaryFormats可先只识别常用格式。
+     * 各级的帧数和命中率见{@link HintEscalation#toString()}，可据此调整
+     * @param hints 完整的解码参数
+     * @return 默认返回 null，始终使用完整的解码参数
+     */
+    public HintEscalation createHintEscalation(Map<DecodeHintType,?> hints){
+        return null;
+    }
+
+    /**
+     * 自动变焦：识别到的二维码码元（模块）太小、之后又连续几帧解码失败时，自动放大画面，
+     * 远处货架上的小标签无需手动双指缩放即可稳定识别；长时间识别不到条码时再缩小回去。
+     * 只支持可估算码元大小的二维码，每次最多放大到{@link AutoZoom#DEFAULT_MAX_STEP}倍，适合连续扫码。
+     * 可返回 new AutoZoom(AutoZoom.DEFAULT_MIN_MODULE_PIXELS, AutoZoom.DEFAULT_TARGET_MODULE_PIXELS,
+     * AutoZoom.DEFAULT_MISSES_TO_ZOOM, AutoZoom.DEFAULT_MISSES_TO_ZOOM_OUT, AutoZoom.DEFAULT_MAX_STEP)
+     * @return 默认返回 null，不自动变焦
+     */
+    public AutoZoom createAutoZoom(){
+        return null;
+    }
+
+    /**
+     * @return 本次启动相机的各阶段耗时，从onResume开始计时
+     */
+    public StartupTimings getStartupTimings(){
+        return startupTimings;
+    }
+
+    /**
+     * 相机启动完成回调，收到第一帧预览数据时在主线程中调用。相机在后台线程中打开，同时创建解码线程和预览界面
+     * @param timings 打开相机、设置参数、解码线程、预览界面、开始预览和第一帧各阶段完成的时间
+     */
+    public void onCameraStarted(StartupTimings timings){
+        Log.i(TAG, "Camera started: " + timings);
+    }
+
+    /**
+     * 帧质量评分回调，在主线程中调用，解码线程评分后发送到主线程。默认用于画面模糊且静止时立即对焦，以及无光线传感器时在画面过暗时打开闪光灯
+     * @param quality 帧质量评分
+     */
+    public void onFrameQuality(FrameQuality quality){
+        CameraManager theCameraManager = cameraManager;
+        if (theCameraManager != null) {
+            theCameraManager.onFrameQuality(quality);
+        }
+        if (ambientLightManager != null) {
+            ambientLightManager.onFrameQuality(quality);
+        }
+    }
+
     /**
      * 是否自动重启扫码和解码器，当支持连扫时才起作用。
      * @return 默认返回 true
@@ -628,12 +923,31 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
         return true;
     }
 
+    /**
+     * Several barcodes have been found in one frame, in multi decode mode.
+     *
+     * @param rawResults  The barcodes, without duplicates.
+     * @param barcode     A greyscale bitmap of the camera data which was decoded, or null unless
+     *                    {@link #isResultThumbnail()}. Only valid during this call.
+     * @param scaleFactor amount by which thumbnail was scaled
+     */
+    public void handleDecode(Result[] rawResults, Bitmap barcode, float scaleFactor) {
+        inactivityTimer.onActivity();
+        lastResult = rawResults[0];
+        if(isBeepSoundAndVibrate()){
+            beepManager.playBeepSoundAndVibrate();
+        }
+
+        onResult(rawResults);
+    }
+
     /**
      * A valid barcode has been found, so give an indication of success and show the results.
      *
      * @param rawResult The contents of the barcode.
      * @param scaleFactor amount by which thumbnail was scaled
-     * @param barcode   A greyscale bitmap of the camera data which was decoded.
+     * @param barcode   A greyscale bitmap of the camera data which was decoded, or null unless
+     *                  {@link #isResultThumbnail()}. Only valid during this call.
      */
     public void handleDecode(Result rawResult, Bitmap barcode, float scaleFactor) {
         inactivityTimer.onActivity();
@@ -921,36 +1235,60 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
         if (surfaceHolder == null) {
             throw new IllegalStateException("No SurfaceHolder provided");
         }
-        if (cameraManager.isOpen()) {
-            Log.w(TAG, "initCamera() while already open -- late SurfaceView callback?");
+        startupTimings.mark(StartupTimings.Phase.SURFACE_READY);
+        startPreviewIfReady();
+    }
+
+    /**
+     * Binds the camera to the surface and starts the preview, once the camera has been opened in
+     * the background and the surface exists, whichever comes last.
+     */
+    private void startPreviewIfReady() {
+        // startingHandler is gone once the preview has started, say on a late SurfaceView callback.
+        if (!cameraOpened || !hasSurface || startingHandler == null) {
             return;
         }
+        SurfaceView surfaceView = findViewById(getPreviewViewId());
         try {
-            cameraManager.openDriver(surfaceHolder);
-            // Creating the handler starts the preview, which can also throw a RuntimeException.
-            if (handler == null) {
-                handler = new CaptureActivityHandler(this, decodeFormats, decodeHints, characterSet, cameraManager);
-            }
+            cameraManager.setPreviewDisplay(surfaceView.getHolder());
+            handler = startingHandler;
+            startingHandler = null;
+            // Starting the preview can also throw a RuntimeException.
+            handler.startPreview();
             decodeOrStoreSavedBitmap(null, null);
         } catch (IOException ioe) {
             Log.w(TAG, ioe);
-//            displayFrameworkBugMessageAndExit();
+            displayFrameworkBugMessageAndExit();
         } catch (RuntimeException e) {
             // Barcode Scanner has seen crashes in the wild of this variety:
             // java.?lang.?RuntimeException: Fail to connect to camera service
             Log.w(TAG, "Unexpected error initializing camera", e);
-//            displayFrameworkBugMessageAndExit();
+            displayFrameworkBugMessageAndExit();
         }
     }
 
-//    private void displayFrameworkBugMessageAndExit() {
-//        AlertDialog.Builder builder = new AlertDialog.Builder(this);
-//        builder.setTitle(getString(R.string.app_name));
-//        builder.setMessage(getString(R.string.msg_camera_framework_bug));
-//        builder.setPositiveButton(R.string.button_ok, new FinishListener(this));
-//        builder.setOnCancelListener(new FinishListener(this));
-//        builder.show();
-//    }
+    private void displayFrameworkBugMessageAndExit() {
+        if (isFinishing()) {
+            return;
+        }
+        DialogInterface.OnClickListener finishOnClick = new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                finish();
+            }
+        };
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("提示");
+        builder.setMessage("相机打开失败，请检查相机权限，或重启设备后重试。");
+        builder.setPositiveButton("确定", finishOnClick);
+        builder.setOnCancelListener(new DialogInterface.OnCancelListener() {
+            @Override
+            public void onCancel(DialogInterface dialog) {
+                finish();
+            }
+        });
+        builder.show();
+    }
 
     public void restartPreviewAfterDelay(long delayMS) {
         if (handler != null) {
@@ -974,12 +1312,8 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
     @Override
     public boolean onTouchEvent(MotionEvent event) {
         if(isZoom && cameraManager.isOpen()){
-            Camera camera = cameraManager.getOpenCamera().getCamera();
-            if(camera ==null){
-                return super.onTouchEvent(event);
-            }
             if (event.getPointerCount() == 1) {//单点触控，聚焦
-//                focusOnTouch(event,camera);
+//                focusOnTouch(event);
             } else {
                 switch (event.getAction() & MotionEvent.ACTION_MASK) {//多点触控
                     case MotionEvent.ACTION_POINTER_DOWN:
@@ -989,9 +1323,9 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
                         float newDistance = calcFingerSpacing(event);
 
                         if (newDistance > oldDistance + DEVIATION) {//
-                            handleZoom(true, camera);
+                            handleZoom(true);
                         } else if (newDistance < oldDistance - DEVIATION) {
-                            handleZoom(false, camera);
+                            handleZoom(false);
                         }
                         oldDistance = newDistance;
                         break;
@@ -1010,64 +1344,32 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
     }
 
     /**
-     * 处理变焦缩放
+     * 处理变焦缩放，多次变焦合并到下一帧画面时一起设置给相机
      * @param isZoomIn
-     * @param camera
      */
-    private void handleZoom(boolean isZoomIn, Camera camera) {
-        Camera.Parameters params = camera.getParameters();
-        if (params.isZoomSupported()) {
-            int maxZoom = params.getMaxZoom();
-            int zoom = params.getZoom();
-            if (isZoomIn && zoom < maxZoom) {
-                zoom++;
-            } else if (zoom > 0) {
-                zoom--;
-            }
-            params.setZoom(zoom);
-            camera.setParameters(params);
-        } else {
+    private void handleZoom(boolean isZoomIn) {
+        if (!cameraManager.zoomBy(isZoomIn ? 1 : -1)) {
             Log.i(TAG, "zoom not supported");
+        } else if (handler != null && handler.getAutoZoom() != null) {
+            // 手动变焦后，之前估算的码元大小不再准确
+            handler.getAutoZoom().reset();
         }
     }
 
     /**
      * 聚焦
      * @param event
-     * @param camera
      */
-    public void focusOnTouch(MotionEvent event, Camera camera) {
-
-        Camera.Parameters params = camera.getParameters();
-        Camera.Size previewSize = params.getPreviewSize();
-
-        Rect focusRect = calcTapArea(event.getRawX(), event.getRawY(), 1f,previewSize);
-        Rect meteringRect = calcTapArea(event.getRawX(), event.getRawY(), 1.5f,previewSize);
-        Camera.Parameters parameters = camera.getParameters();
-        if (parameters.getMaxNumFocusAreas() > 0) {
-            List<Camera.Area> focusAreas = new ArrayList<>();
-            focusAreas.add(new Camera.Area(focusRect, 600));
-            parameters.setFocusAreas(focusAreas);
-        }
-
-        if (parameters.getMaxNumMeteringAreas() > 0) {
-            List<Camera.Area> meteringAreas = new ArrayList<>();
-            meteringAreas.add(new Camera.Area(meteringRect, 600));
-            parameters.setMeteringAreas(meteringAreas);
+    public void focusOnTouch(MotionEvent event) {
+        FrameGeometry geometry = cameraManager.getFrameGeometry();
+        if (geometry == null) {
+            return;
         }
-        final String currentFocusMode = params.getFocusMode();
-        params.setFocusMode(Camera.Parameters.FOCUS_MODE_MACRO);
-        camera.setParameters(params);
-
-        camera.autoFocus(new Camera.AutoFocusCallback() {
-            @Override
-            public void onAutoFocus(boolean success, Camera camera) {
-                Camera.Parameters params = camera.getParameters();
-                params.setFocusMode(currentFocusMode);
-                camera.setParameters(params);
-            }
-        });
-
+        Rect focusRect = calcTapArea(event.getRawX(), event.getRawY(), 1f,
+                geometry.getPreviewWidth(), geometry.getPreviewHeight());
+        Rect meteringRect = calcTapArea(event.getRawX(), event.getRawY(), 1.5f,
+                geometry.getPreviewWidth(), geometry.getPreviewHeight());
+        cameraManager.focusOnArea(focusRect, meteringRect);
     }
 
     /**
@@ -1086,14 +1388,15 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback
      * @param x
      * @param y
      * @param coefficient
-     * @param previewSize
+     * @param previewWidth
+     * @param previewHeight
      * @return
      */
-    private Rect calcTapArea(float x, float y, float coefficient, Camera.Size previewSize) {
+    private Rect calcTapArea(float x, float y, float coefficient, int previewWidth, int previewHeight) {
         float focusAreaSize = 200;
         int areaSize = Float.valueOf(focusAreaSize * coefficient).intValue();
-        int centerX = (int) ((x / previewSize.width) * 2000 - 1000);
-        int centerY = (int) ((y / previewSize.height) * 2000 - 1000);
+        int centerX = (int) ((x / previewWidth) * 2000 - 1000);
+        int centerY = (int) ((y / previewHeight) * 2000 - 1000);
         int left = clamp(centerX - (areaSize / 2), -1000, 1000);
         int top = clamp(centerY - (areaSize / 2), -1000, 1000);
         RectF rectF = new RectF(left, top, left + areaSize, top + areaSize);
@@ -23,22 +23,32 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
+import android.os.SystemClock;
 import android.provider.Browser;
 import android.util.Log;
 
 import com.rhino.zxing.camera.CameraManager;
+import com.rhino.zxing.camera.StartupTimings;
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.DecodeHintType;
 import com.google.zxing.Result;
+import com.rhino.zxing.decode.AutoZoom;
+import com.rhino.zxing.decode.DecodeMetrics;
+import com.rhino.zxing.decode.DecodeStage;
 import com.rhino.zxing.decode.DecodeThread;
+import com.rhino.zxing.decode.DecodeThreadPool;
+import com.rhino.zxing.decode.FrameQuality;
+import com.rhino.zxing.decode.FrameScheduler;
+import com.rhino.zxing.decode.HintEscalation;
+import com.rhino.zxing.decode.ResultFilter;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class handles all the messaging which comprises the state machine for activity_capture.
@@ -50,9 +60,22 @@ public final class CaptureActivityHandler extends Handler {
     private static final String TAG = CaptureActivityHandler.class.getSimpleName();
 
     private final CaptureActivity activity;
-    private final DecodeThread decodeThread;
+    private final DecodeThreadPool decodePool;
     private State state;
     private final CameraManager cameraManager;
+    private boolean frameRequested;
+    private long frameRequestNanos;
+    private final DecodeMetrics metrics;
+    private final ResultFilter resultFilter;
+    private final FrameScheduler frameScheduler;
+    private final AutoZoom autoZoom;
+    private final FrameScheduler.FrameReleaser frameReleaser = new FrameScheduler.FrameReleaser() {
+        @Override
+        public void release(byte[] data) {
+            cameraManager.releasePreviewFrame(data);
+        }
+    };
+    private final ThumbnailBitmapPool thumbnailPool = new ThumbnailBitmapPool();
 
     public enum State {
         PREVIEW,
@@ -66,13 +89,27 @@ public final class CaptureActivityHandler extends Handler {
                            String characterSet,
                            CameraManager cameraManager) {
         this.activity = activity;
-        decodeThread = new DecodeThread(activity, decodeFormats, baseHints, characterSet,
-                new ViewfinderResultPointCallback(activity.getViewfinderView()));
-        decodeThread.start();
+        metrics = activity.getDecodeMetrics();
+        autoZoom = activity.createAutoZoom();
+        decodePool = new DecodeThreadPool(activity, decodeFormats, baseHints, characterSet,
+                new ViewfinderResultPointCallback(activity.getViewfinderView()),
+                activity.getDecodeThreadCount());
+        frameScheduler = activity.createFrameScheduler();
+        decodePool.setFrameDeadlineNanos(frameScheduler.getDeadlineNanos());
+        decodePool.start();
+        resultFilter = activity.isContinuousScan() ? activity.createResultFilter() : null;
         state = State.SUCCESS;
-
-        // Start ourselves capturing previews and decoding.
         this.cameraManager = cameraManager;
+    }
+
+    /**
+     * Starts capturing previews and decoding. The decode threads are already running, so they can
+     * be built while the camera opens; this is called once it is open and bound to its surface.
+     */
+    public void startPreview() {
+        // One buffer per worker, per frame waiting for a worker, and the one in the camera.
+        cameraManager.setPreviewBufferCount(activity.isPreviewBufferReuse() ?
+                decodePool.size() + frameScheduler.getCapacity() + 1 : 0);
         cameraManager.startPreview();
         restartPreviewAndDecode();
     }
@@ -82,25 +119,111 @@ public final class CaptureActivityHandler extends Handler {
         if (message.what == R.id.restart_preview) {
             restartPreviewAndDecode();
 
-        } else if (message.what == R.id.decode_succeeded) {
+        } else if (message.what == R.id.request_preview_frame) {
+            if (state == State.PREVIEW) {
+                requestPreviewFrame();
+            }
+
+        } else if (message.what == R.id.preview_frame) {
+            // Queue the frame and hand it to an idle worker if there is one, then ask for another
+            // straight away, so that a fresh frame is waiting whenever a worker frees up.
+            frameRequested = false;
+            long frameNanos = cameraManager.getPreviewFrameNanos();
+            StartupTimings timings = activity.getStartupTimings();
+            if (timings != null && timings.mark(StartupTimings.Phase.FIRST_FRAME)) {
+                activity.onCameraStarted(timings);
+            }
+            metrics.record(DecodeStage.FRAME_WAIT, frameNanos - frameRequestNanos);
+            byte[] data = (byte[]) message.obj;
+            if (state == State.PREVIEW) {
+                frameScheduler.offer(data, message.arg1, message.arg2, frameNanos, frameReleaser);
+                frameScheduler.dispatch(decodePool, System.nanoTime(), frameReleaser);
+                requestPreviewFrame();
+            } else {
+                cameraManager.releasePreviewFrame(data);
+            }
+
+        } else if (message.what == R.id.decode_succeeded || message.what == R.id.decode_multi_succeeded) {
+            // arg1 is the worker index, or -1 for a result that did not come from a worker.
+            int worker = message.arg1;
+            boolean current = worker < 0 || decodePool.isCurrent(worker);
+            decodePool.release(worker);
+            if (state != State.PREVIEW || !current) {
+                // A result from a frame that was in flight when another one decoded.
+                return;
+            }
+            if (autoZoom != null) {
+                if (message.what == R.id.decode_multi_succeeded) {
+                    for (Result result : (Result[]) message.obj) {
+                        autoZoom.onFound(result);
+                    }
+                } else {
+                    autoZoom.onFound((Result) message.obj);
+                }
+            }
+            Object results = message.obj;
+            if (resultFilter != null) {
+                long now = SystemClock.uptimeMillis();
+                if (message.what == R.id.decode_multi_succeeded) {
+                    Result[] accepted = resultFilter.accept((Result[]) results, now);
+                    results = accepted.length > 0 ? accepted : null;
+                } else if (!resultFilter.accept((Result) results, now)) {
+                    results = null;
+                }
+                if (results == null) {
+                    // Seen already, or not yet confirmed: keep scanning as if nothing was found.
+                    dispatchAndRequestFrames();
+                    return;
+                }
+            }
             state = State.SUCCESS;
-            Bundle bundle = message.getData();
+            decodePool.cancelInFlight();
+            frameScheduler.clear(frameReleaser);
+            Bundle bundle = message.peekData();
             Bitmap barcode = null;
             float scaleFactor = 1.0f;
             if (bundle != null) {
-                byte[] compressedBitmap = bundle.getByteArray(DecodeThread.BARCODE_BITMAP);
-                if (compressedBitmap != null) {
-                    barcode = BitmapFactory.decodeByteArray(compressedBitmap, 0, compressedBitmap.length, null);
-                    // Mutable copy:
-                    barcode = barcode.copy(Bitmap.Config.ARGB_8888, true);
+                int[] pixels = bundle.getIntArray(DecodeThread.BARCODE_PIXELS);
+                int width = bundle.getInt(DecodeThread.BARCODE_WIDTH);
+                if (pixels != null && width > 0) {
+                    barcode = thumbnailPool.acquire(pixels, width, pixels.length / width);
+                    scaleFactor = bundle.getFloat(DecodeThread.BARCODE_SCALED_FACTOR);
                 }
-                scaleFactor = bundle.getFloat(DecodeThread.BARCODE_SCALED_FACTOR);
             }
-            activity.handleDecode((Result) message.obj, barcode, scaleFactor);
+            if (message.what == R.id.decode_multi_succeeded) {
+                activity.handleDecode((Result[]) results, barcode, scaleFactor);
+            } else {
+                activity.handleDecode((Result) results, barcode, scaleFactor);
+            }
+            if (barcode != null) {
+                thumbnailPool.release(barcode);
+            }
+            if (worker >= 0) {
+                long now = System.nanoTime();
+                metrics.record(DecodeStage.DELIVERY, now - decodePool.getResultNanos(worker));
+                metrics.record(DecodeStage.TOTAL, now - decodePool.getFrameNanos(worker));
+            }
 
         } else if (message.what == R.id.decode_failed) {// We're decoding as fast as possible, so when one decode fails, start another.
-            state = State.PREVIEW;
-            cameraManager.requestPreviewFrame(decodeThread.getHandler(), R.id.decode);
+            boolean current = decodePool.isCurrent(message.arg1);
+            decodePool.release(message.arg1);
+            if (message.arg2 == DecodeThread.FRAME_EXPIRED) {
+                frameScheduler.onFrameExpired();
+            } else if (autoZoom != null && state == State.PREVIEW && current && message.arg2 == 0) {
+                float factor = autoZoom.onMissed();
+                if (factor != 1.0f) {
+                    cameraManager.zoomByRatio(factor);
+                }
+            }
+            if (state == State.PREVIEW) {
+                dispatchAndRequestFrames();
+            }
+
+        } else if (message.what == R.id.frame_quality) {
+            // Scored on a worker; the torch and focus are only driven from here.
+            if (state == State.PREVIEW) {
+                activity.onFrameQuality((FrameQuality) message.obj);
+            }
 
         } else if (message.what == R.id.return_scan_result) {
             activity.setResult(Activity.RESULT_OK, (Intent) message.obj);
@@ -145,26 +268,78 @@ public final class CaptureActivityHandler extends Handler {
     public void quitSynchronously() {
         state = State.DONE;
         cameraManager.stopPreview();
-        Message quit = Message.obtain(decodeThread.getHandler(), R.id.quit);
-        quit.sendToTarget();
-        try {
-            // Wait at most half a second; should be enough time, and onPause() will timeout quickly
-            decodeThread.join(500L);
-        } catch (InterruptedException e) {
-            // continue
+        // Running decodes are cancelled and stop at their next budget check; wait at most half a
+        // second anyway, so onPause() will timeout quickly
+        decodePool.quit(500L);
+        frameScheduler.clear(frameReleaser);
+        if (autoZoom != null) {
+            Log.i(TAG, String.valueOf(autoZoom));
         }
 
         // Be absolutely sure we don't send any queued up messages
+        removeMessages(R.id.request_preview_frame);
+        removeMessages(R.id.preview_frame);
         removeMessages(R.id.decode_succeeded);
+        removeMessages(R.id.decode_multi_succeeded);
         removeMessages(R.id.decode_failed);
     }
 
     public void restartPreviewAndDecode() {
         if (state == State.SUCCESS) {
             state = State.PREVIEW;
-            cameraManager.requestPreviewFrame(decodeThread.getHandler(), R.id.decode);
+            requestPreviewFrame();
             activity.drawViewfinder();
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * @return the frame scheduler and its drop counters.
+     */
+    public FrameScheduler getFrameScheduler() {
+        return frameScheduler;
+    }
+
+    /**
+     * @return the hint escalation and its per-step hit counts, or null if there is none.
+     */
+    public HintEscalation getHintEscalation() {
+        return decodePool.getHintEscalation();
+    }
+
+    /**
+     * @return the automatic zoom and its zoom counts, or null if there is none.
+     */
+    public AutoZoom getAutoZoom() {
+        return autoZoom;
+    }
+
+    /**
+     * Gives a worker that has just freed up the next waiting frame, and keeps frames coming.
+     */
+    private void dispatchAndRequestFrames() {
+        frameScheduler.dispatch(decodePool, System.nanoTime(), frameReleaser);
+        requestPreviewFrame();
+    }
+
+    /**
+     * Asks the camera for the next preview frame unless one is already on its way. With a fixed
+     * frame rate, the request waits for the next sample time.
+     */
+    private void requestPreviewFrame() {
+        if (frameRequested) {
+            return;
+        }
+        long now = System.nanoTime();
+        long delayNanos = frameScheduler.getRequestDelayNanos(now);
+        if (delayNanos > 0L) {
+            if (!hasMessages(R.id.request_preview_frame)) {
+                sendEmptyMessageDelayed(R.id.request_preview_frame, TimeUnit.NANOSECONDS.toMillis(delayNanos) + 1L);
+            }
+            return;
+        }
+        frameRequested = true;
+        frameRequestNanos = now;
+        cameraManager.requestPreviewFrame(this, R.id.preview_frame);
+    }
+
+}
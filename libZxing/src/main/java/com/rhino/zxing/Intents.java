@@ -129,6 +129,11 @@ public final class Intents {
          */
         public static final String RESULT = "SCAN_RESULT";
 
+        /**
+         * In multi decode mode, the contents of every barcode found, as a String array.
+         */
+        public static final String RESULTS = "SCAN_RESULTS";
+
         /**
          * Call {@link Intent#getStringExtra(String)} with {@code RESULT_FORMAT}
          * to determine which barcode format was found.
@@ -0,0 +1,33 @@
+package com.rhino.zxing;
+
+import android.graphics.Bitmap;
+
+/**
+ * Keeps the bitmap that decode result thumbnails are drawn into, so that a result in continuous
+ * scan mode reuses the previous one rather than allocating a new bitmap.
+ */
+final class ThumbnailBitmapPool {
+
+    private Bitmap free;
+
+    /**
+     * @return a mutable ARGB_8888 bitmap of the given size, filled with {@code pixels}.
+     */
+    Bitmap acquire(int[] pixels, int width, int height) {
+        Bitmap bitmap = free;
+        free = null;
+        if (bitmap == null || bitmap.isRecycled() || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+        bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+        return bitmap;
+    }
+
+    /**
+     * Takes the bitmap back once the result has been handled.
+     */
+    void release(Bitmap bitmap) {
+        free = bitmap;
+    }
+
+}
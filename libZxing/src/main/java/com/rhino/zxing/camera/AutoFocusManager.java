@@ -19,10 +19,12 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.hardware.Camera;
 import android.os.AsyncTask;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import android.util.Log;
 
 import com.rhino.zxing.Preferences;
+import com.rhino.zxing.decode.FrameQuality;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
@@ -35,6 +37,9 @@ final class AutoFocusManager implements Camera.AutoFocusCallback {
     private static final String TAG = AutoFocusManager.class.getSimpleName();
 
     private static final long AUTO_FOCUS_INTERVAL_MS = 1200L;
+    private static final long MIN_REFOCUS_INTERVAL_MS = 400L;
+    private static final int BLURRED_SHARPNESS = 12;
+    private static final int STEADY_MOTION = 8;
     private static final Collection<String> FOCUS_MODES_CALLING_AF;
     static {
         FOCUS_MODES_CALLING_AF = new ArrayList<>(2);
@@ -47,11 +52,14 @@ final class AutoFocusManager implements Camera.AutoFocusCallback {
     private final boolean useAutoFocus;
     private final Camera camera;
     private AsyncTask<?,?,?> outstandingTask;
+    private long lastFocusTime;
 
-    AutoFocusManager(Context context, Camera camera) {
+    /**
+     * @param currentFocusMode the focus mode the camera is in, from its cached parameters.
+     */
+    AutoFocusManager(Context context, Camera camera, String currentFocusMode) {
         this.camera = camera;
         SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
-        String currentFocusMode = camera.getParameters().getFocusMode();
         useAutoFocus =
                 sharedPrefs.getBoolean(Preferences.KEY_AUTO_FOCUS, true) &&
                         FOCUS_MODES_CALLING_AF.contains(currentFocusMode);
@@ -62,9 +70,24 @@ final class AutoFocusManager implements Camera.AutoFocusCallback {
     @Override
     public synchronized void onAutoFocus(boolean success, Camera theCamera) {
         focusing = false;
+        lastFocusTime = SystemClock.uptimeMillis();
         autoFocusAgainLater();
     }
 
+    /**
+     * Focuses right away, rather than at the next interval, when the device is held still on a
+     * blurred scene.
+     */
+    synchronized void onFrameQuality(FrameQuality quality) {
+        if (useAutoFocus && !stopped && !focusing &&
+                quality.getSharpness() < BLURRED_SHARPNESS &&
+                quality.getMotion() <= STEADY_MOTION &&
+                SystemClock.uptimeMillis() - lastFocusTime >= MIN_REFOCUS_INTERVAL_MS) {
+            cancelOutstandingTask();
+            start();
+        }
+    }
+
     private synchronized void autoFocusAgainLater() {
         if (!stopped && outstandingTask == null) {
             AutoFocusTask newTask = new AutoFocusTask(this);
@@ -20,6 +20,7 @@ package com.rhino.zxing.camera;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.graphics.Point;
+import android.graphics.Rect;
 import android.hardware.Camera;
 import android.preference.PreferenceManager;
 import android.util.Log;
@@ -48,6 +49,7 @@ final class CameraConfigurationManager {
     private Point cameraResolution;
     private Point bestPreviewSize;
     private Point previewSizeOnScreen;
+    private PreviewSizeSelector previewSizeSelector;
 
     CameraConfigurationManager(Context context) {
         this.context = context;
@@ -124,9 +126,18 @@ final class CameraConfigurationManager {
         screenResolution = theScreenResolution;
         Log.i(TAG, "Screen resolution in current orientation: " + screenResolution);
 
-        cameraResolution = CameraConfigurationUtils.findBestPreviewSizeValue(parameters, screenResolution);
+        if (previewSizeSelector != null) {
+            // The decoded square spans the screen's short side, and the framing rect part of it.
+            float framingFraction = CameraManager.findFramingSize(screenResolution) /
+                    (float) Math.min(screenResolution.x, screenResolution.y);
+            cameraResolution = CameraConfigurationUtils.findCheapestPreviewSizeValue(
+                    parameters, screenResolution, previewSizeSelector, framingFraction);
+        } else {
+            cameraResolution = CameraConfigurationUtils.findBestPreviewSizeValue(parameters, screenResolution);
+        }
         Log.i(TAG, "Camera resolution: " + cameraResolution);
-        bestPreviewSize = CameraConfigurationUtils.findBestPreviewSizeValue(parameters, screenResolution);
+        // A copy, since it is corrected below if the camera won't take it.
+        bestPreviewSize = new Point(cameraResolution);
         Log.i(TAG, "Best available preview size: " + bestPreviewSize);
 
         boolean isScreenPortrait = screenResolution.x < screenResolution.y;
@@ -140,6 +151,10 @@ final class CameraConfigurationManager {
         Log.i(TAG, "Preview size on screen: " + previewSizeOnScreen);
     }
 
+    void setPreviewSizeSelector(PreviewSizeSelector selector) {
+        previewSizeSelector = selector;
+    }
+
     void setDesiredCameraParameters(OpenCamera camera, boolean safeMode) {
 
         Camera theCamera = camera.getCamera();
@@ -199,7 +214,48 @@ final class CameraConfigurationManager {
 
         theCamera.setDisplayOrientation(cwRotationFromDisplayToCamera);
 
-        Camera.Parameters afterParameters = theCamera.getParameters();
+        updateBestPreviewSize(theCamera.getParameters());
+    }
+
+    /**
+     * @return everything {@link #setDesiredCameraParameters(OpenCamera, boolean)} depends on apart
+     * from the camera itself. A camera configured under the same key needs no configuring again.
+     */
+    String getConfigurationKey() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        return bestPreviewSize.x + "x" + bestPreviewSize.y +
+                ",rotation=" + cwRotationFromDisplayToCamera +
+                ",light=" + FrontLightMode.readPref(prefs) +
+                ",af=" + prefs.getBoolean(Preferences.KEY_AUTO_FOCUS, true) +
+                ",noContinuous=" + prefs.getBoolean(Preferences.KEY_DISABLE_CONTINUOUS_FOCUS, true) +
+                ",invert=" + prefs.getBoolean(Preferences.KEY_INVERT_SCAN, false) +
+                ",noScene=" + prefs.getBoolean(Preferences.KEY_DISABLE_BARCODE_SCENE_MODE, true) +
+                ",noMetering=" + prefs.getBoolean(Preferences.KEY_DISABLE_METERING, true) +
+                ",noExposure=" + prefs.getBoolean(Preferences.KEY_DISABLE_EXPOSURE, true);
+    }
+
+    /**
+     * Puts a camera which was configured under the same {@link #getConfigurationKey()} back to the
+     * parameters it was configured with, in place of
+     * {@link #setDesiredCameraParameters(OpenCamera, boolean)}.
+     *
+     * @param configuredParameters the flattened parameters once it had been configured.
+     * @param torchOn whether the torch was on when the camera was parked.
+     */
+    void restoreCameraParameters(OpenCamera camera, String configuredParameters, boolean torchOn) {
+        Camera theCamera = camera.getCamera();
+        Camera.Parameters parameters = theCamera.getParameters();
+        String current = parameters.flatten();
+        // Zoom or the torch may have been changed during the last scan.
+        parameters.unflatten(configuredParameters);
+        doSetTorch(parameters, torchOn, false);
+        if (!current.equals(parameters.flatten())) {
+            theCamera.setParameters(parameters);
+        }
+        updateBestPreviewSize(parameters);
+    }
+
+    private void updateBestPreviewSize(Camera.Parameters afterParameters) {
         Camera.Size afterSize = afterParameters.getPreviewSize();
         if (afterSize != null && (bestPreviewSize.x != afterSize.width || bestPreviewSize.y != afterSize.height)) {
             Log.w(TAG, "Camera said it supported preview size " + bestPreviewSize.x + 'x' + bestPreviewSize.y +
@@ -229,23 +285,36 @@ final class CameraConfigurationManager {
         return cwNeededRotation;
     }
 
-    boolean getTorchState(Camera camera) {
-        if (camera != null) {
-            Camera.Parameters parameters = camera.getParameters();
-            if (parameters != null) {
-                String flashMode = parameters.getFlashMode();
-                return
-                        Camera.Parameters.FLASH_MODE_ON.equals(flashMode) ||
-                                Camera.Parameters.FLASH_MODE_TORCH.equals(flashMode);
-            }
+    /**
+     * Takes a snapshot of the current configuration for the decode workers. Portrait frames are
+     * rotated a quarter turn clockwise; that is all the decoders need, since they read codes in
+     * any orientation.
+     *
+     * @param framingRectInPreview the framing rect in preview coordinates.
+     * @return null if called before {@link #initFromCameraParameters(OpenCamera)}.
+     */
+    FrameGeometry createFrameGeometry(Rect framingRectInPreview) {
+        if (screenResolution == null || bestPreviewSize == null || framingRectInPreview == null) {
+            return null;
+        }
+        int rotation = screenResolution.x < screenResolution.y ? 90 : 0;
+        FrameGeometry geometry = new FrameGeometry(rotation, bestPreviewSize.x, bestPreviewSize.y, framingRectInPreview);
+        Log.i(TAG, "Frame geometry: " + geometry);
+        return geometry;
+    }
+
+    boolean getTorchState(Camera.Parameters parameters) {
+        if (parameters != null) {
+            String flashMode = parameters.getFlashMode();
+            return
+                    Camera.Parameters.FLASH_MODE_ON.equals(flashMode) ||
+                            Camera.Parameters.FLASH_MODE_TORCH.equals(flashMode);
         }
         return false;
     }
 
-    void setTorch(Camera camera, boolean newSetting) {
-        Camera.Parameters parameters = camera.getParameters();
+    void setTorch(Camera.Parameters parameters, boolean newSetting) {
         doSetTorch(parameters, newSetting, false);
-        camera.setParameters(parameters);
     }
 
     private void initializeTorch(Camera.Parameters parameters, SharedPreferences prefs, boolean safeMode) {
@@ -22,6 +22,7 @@ import android.hardware.Camera;
 import android.os.Build;
 import android.util.Log;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -355,6 +356,54 @@ public final class CameraConfigurationUtils {
         return defaultSize;
     }
 
+    /**
+     * Like {@link #findBestPreviewSizeValue(Camera.Parameters, Point)}, and with the same aspect
+     * ratio limits, but picks the preview size by decode cost rather than closeness to the screen:
+     * the smallest one whose centred square still resolves the selector's target code. If none
+     * does, the largest one whose decode time fits the selector's limit.
+     *
+     * @param framingFraction share of the centred square's side the framing rect takes up.
+     */
+    public static Point findCheapestPreviewSizeValue(Camera.Parameters parameters,
+                                                     Point screenResolution,
+                                                     PreviewSizeSelector selector,
+                                                     float framingFraction) {
+        List<Camera.Size> rawSupportedSizes = parameters.getSupportedPreviewSizes();
+        if (rawSupportedSizes == null) {
+            return findBestPreviewSizeValue(parameters, screenResolution);
+        }
+        double screenAspectRatio = screenResolution.x < screenResolution.y ?
+                screenResolution.x / (double) screenResolution.y :
+                screenResolution.y / (double) screenResolution.x;
+        List<Camera.Size> candidates = new ArrayList<>(rawSupportedSizes.size());
+        for (Camera.Size size : rawSupportedSizes) {
+            if (size.width * size.height < MIN_PREVIEW_PIXELS) {
+                continue;
+            }
+            double aspectRatio = Math.min(size.width, size.height) / (double) Math.max(size.width, size.height);
+            if (Math.abs(aspectRatio - screenAspectRatio) > MAX_ASPECT_DISTORTION) {
+                continue;
+            }
+            candidates.add(size);
+        }
+        int[] cropSides = new int[candidates.size()];
+        for (int i = 0; i < cropSides.length; i++) {
+            cropSides[i] = Math.min(candidates.get(i).width, candidates.get(i).height);
+        }
+
+        int chosen = selector.chooseCropSide(cropSides, framingFraction);
+        if (chosen < 0) {
+            return findBestPreviewSizeValue(parameters, screenResolution);
+        }
+        Camera.Size size = candidates.get(chosen);
+        Point result = new Point(size.width, size.height);
+        int requiredSide = selector.getRequiredCropSide(framingFraction);
+        Log.i(TAG, "Cheapest preview size " + (cropSides[chosen] >= requiredSide ? "resolving " : "not resolving ") +
+                requiredSide + " px: " + result + ", expected decode " +
+                selector.estimateDecodeNanos(cropSides[chosen]) / 1000000L + " ms, " + selector);
+        return result;
+    }
+
     private static String findSettableValue(String name,
                                             Collection<String> supportedValues,
                                             String... desiredValues) {
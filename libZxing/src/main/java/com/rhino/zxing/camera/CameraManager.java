@@ -18,6 +18,7 @@ package com.rhino.zxing.camera;
 
 
 import android.content.Context;
+import android.graphics.ImageFormat;
 import android.graphics.Point;
 import android.graphics.Rect;
 import android.hardware.Camera;
@@ -27,9 +28,11 @@ import android.view.SurfaceHolder;
 
 import com.rhino.zxing.camera.open.OpenCamera;
 import com.rhino.zxing.camera.open.OpenCameraInterface;
-import com.google.zxing.PlanarYUVLuminanceSource;
+import com.rhino.zxing.decode.FrameQuality;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * This object wraps the Camera service object and expects to be the only one talking to it. The
@@ -54,11 +57,21 @@ public final class CameraManager {
     private AutoFocusManager autoFocusManager;
     private Rect framingRect;
     private Rect framingRectInPreview;
+    // Replaced, never modified, so decode workers can read it without the lock.
+    private volatile FrameGeometry frameGeometry;
     private boolean initialized;
     private boolean previewing;
     private int requestedCameraId = OpenCameraInterface.NO_REQUESTED_CAMERA;
     private int requestedFramingRectWidth;
     private int requestedFramingRectHeight;
+    private int previewBufferCount;
+    private volatile PreviewBufferRing previewBufferRing;
+    private volatile StartupTimings startupTimings;
+    private long warmIdleMs;
+    // How the camera was configured, so it can be parked in the WarmCameraSession.
+    private String configurationKey;
+    private String configuredParameters;
+    private final CameraParameterCache parameterCache = new CameraParameterCache(this);
 
     /**
      * Preview frames are delivered here, which we pass on to the registered handler. Make sure to
@@ -78,16 +91,50 @@ public final class CameraManager {
      * @param holder The surface object which the camera will draw preview frames into.
      * @throws IOException Indicates the camera driver failed to open.
      */
-    public synchronized void openDriver(SurfaceHolder holder) throws IOException {
-        OpenCamera theCamera = camera;
+    public void openDriver(SurfaceHolder holder) throws IOException {
+        openDriver();
+        setPreviewDisplay(holder);
+    }
+
+    /**
+     * Opens the camera driver and initializes the hardware parameters, without a surface to draw
+     * into yet; see {@link #setPreviewDisplay(SurfaceHolder)}. May be called from a background
+     * thread, but not while another thread opens the driver; {@link #closeDriver()} may be called
+     * meanwhile, though it only closes a camera which is already open.
+     *
+     * @throws IOException Indicates the camera driver failed to open.
+     */
+    public void openDriver() throws IOException {
+        OpenCamera theCamera;
+        int cameraId;
+        synchronized (this) {
+            theCamera = camera;
+            cameraId = requestedCameraId;
+        }
+        WarmCameraSession.Parked parked = null;
         if (theCamera == null) {
-            theCamera = OpenCameraInterface.open(requestedCameraId);
+            parked = WarmCameraSession.getInstance().take(cameraId);
+            if (parked != null) {
+                Log.i(TAG, "Reattached warm camera");
+                theCamera = parked.getCamera();
+                markStartup(StartupTimings.Phase.CAMERA_OPENED);
+            }
+        }
+        if (theCamera == null) {
+            // Opening is the slow part. Don't hold the lock through it, so the main thread can
+            // still ask for the framing rect, and gets null until the camera is open.
+            theCamera = OpenCameraInterface.open(cameraId);
             if (theCamera == null) {
                 throw new IOException("Camera.open() failed to return object from driver");
             }
-            camera = theCamera;
+            markStartup(StartupTimings.Phase.CAMERA_OPENED);
         }
+        configure(theCamera, parked);
+        markStartup(StartupTimings.Phase.CAMERA_CONFIGURED);
+    }
 
+    private synchronized void configure(OpenCamera theCamera, WarmCameraSession.Parked parked) {
+        camera = theCamera;
         if (!initialized) {
             initialized = true;
             configManager.initFromCameraParameters(theCamera);
@@ -99,6 +146,18 @@ public final class CameraManager {
         }
 
         Camera cameraObject = theCamera.getCamera();
+        configurationKey = configManager.getConfigurationKey();
+        if (parked != null && configurationKey.equals(parked.getConfigurationKey())) {
+            try {
+                configManager.restoreCameraParameters(theCamera, parked.getConfiguredParameters(), parked.isTorchOn());
+                configuredParameters = parked.getConfiguredParameters();
+                parameterCache.attach(cameraObject, cameraObject.getParameters());
+                updateFrameGeometry();
+                return;
+            } catch (RuntimeException re) {
+                Log.w(TAG, "Could not restore warm camera parameters; configuring again", re);
+            }
+        }
         Camera.Parameters parameters = cameraObject.getParameters();
         String parametersFlattened = parameters == null ? null : parameters.flatten(); // Save these, temporarily
         try {
@@ -120,8 +179,55 @@ public final class CameraManager {
                 }
             }
         }
-        cameraObject.setPreviewDisplay(holder);
+        try {
+            Camera.Parameters configured = cameraObject.getParameters();
+            configuredParameters = configured == null ? null : configured.flatten();
+            parameterCache.attach(cameraObject, configured);
+        } catch (RuntimeException re) {
+            configuredParameters = null;
+            parameterCache.detach();
+        }
+        // The camera may have settled on another preview size than the one asked for.
+        updateFrameGeometry();
+    }
 
+    /**
+     * Makes {@link #closeDriver()} keep the configured camera open for {@code idleMs} in the
+     * {@link WarmCameraSession}, where the next {@link #openDriver()} in this process takes it
+     * over. Zero releases it right away.
+     */
+    public synchronized void setWarmIdleMs(long idleMs) {
+        warmIdleMs = idleMs;
+    }
+
+    /**
+     * Binds the open camera to the surface it draws preview frames into. Must be called before
+     * {@link #startPreview()}.
+     *
+     * @param holder The surface object which the camera will draw preview frames into.
+     * @throws IOException Indicates the surface is not usable.
+     */
+    public synchronized void setPreviewDisplay(SurfaceHolder holder) throws IOException {
+        if (camera == null) {
+            throw new IOException("Camera is not open");
+        }
+        camera.getCamera().setPreviewDisplay(holder);
+    }
+
+    /**
+     * Records the camera phases of this start, opening and configuring, in {@code timings}.
+     *
+     * @param timings The timings of the current start, or null.
+     */
+    public void setStartupTimings(StartupTimings timings) {
+        startupTimings = timings;
+    }
+
+    private void markStartup(StartupTimings.Phase phase) {
+        StartupTimings timings = startupTimings;
+        if (timings != null) {
+            timings.mark(phase);
+        }
     }
 
     public synchronized boolean isOpen() {
@@ -137,12 +243,34 @@ public final class CameraManager {
      */
     public synchronized void closeDriver() {
         if (camera != null) {
-            camera.getCamera().release();
+            Log.i(TAG, String.valueOf(parameterCache));
+            if (warmIdleMs > 0L && configuredParameters != null) {
+                stopPreview();
+                // The torch must not stay lit while nobody is scanning; it comes back on with the
+                // camera if it was on.
+                boolean torchOn = configManager.getTorchState(parameterCache.get());
+                if (torchOn) {
+                    configManager.setTorch(parameterCache.edit(), false);
+                }
+                parameterCache.flush();
+                parameterCache.detach();
+                WarmCameraSession.getInstance().park(requestedCameraId,
+                        new WarmCameraSession.Parked(camera, configurationKey, configuredParameters, torchOn), warmIdleMs);
+            } else {
+                parameterCache.detach();
+                camera.getCamera().release();
+            }
+            PreviewBufferRing ring = previewBufferRing;
+            if (ring != null) {
+                // Neither a released nor a parked camera hands back the buffers queued in it.
+                ring.reclaimQueued();
+            }
             camera = null;
             // Make sure to clear these each time we close the camera, so that any scanning rect
             // requested by intent is forgotten.
             framingRect = null;
             framingRectInPreview = null;
+            frameGeometry = null;
         }
     }
 
@@ -152,12 +280,40 @@ public final class CameraManager {
     public synchronized void startPreview() {
         OpenCamera theCamera = camera;
         if (theCamera != null && !previewing) {
-            theCamera.getCamera().startPreview();
+            Camera cameraObject = theCamera.getCamera();
+            if (previewBufferCount > 0) {
+                setUpPreviewBuffers(cameraObject);
+            }
+            cameraObject.startPreview();
             previewing = true;
-            autoFocusManager = new AutoFocusManager(context, theCamera.getCamera());
+            markStartup(StartupTimings.Phase.PREVIEW_STARTED);
+            autoFocusManager = new AutoFocusManager(context, theCamera.getCamera(), getFocusMode());
         }
     }
 
+    private void setUpPreviewBuffers(Camera cameraObject) {
+        Point cameraResolution = configManager.getCameraResolution();
+        Camera.Parameters parameters = parameterCache.get();
+        if (cameraResolution == null || parameters == null) {
+            return;
+        }
+        int bitsPerPixel = ImageFormat.getBitsPerPixel(parameters.getPreviewFormat());
+        if (bitsPerPixel <= 0) {
+            Log.w(TAG, "Unknown preview format " + parameters.getPreviewFormat() + "; using one-shot callbacks");
+            previewBufferRing = null;
+            return;
+        }
+        int bufferSize = cameraResolution.x * cameraResolution.y * bitsPerPixel / 8;
+        PreviewBufferRing ring = previewBufferRing;
+        if (ring == null || ring.getBufferSize() != bufferSize || ring.getAllocationCount() < previewBufferCount) {
+            ring = new PreviewBufferRing(previewBufferCount, bufferSize);
+            previewBufferRing = ring;
+        }
+        Log.i(TAG, "Using " + previewBufferCount + " preview buffers of " + bufferSize + " bytes");
+        previewCallback.setBufferRing(ring);
+        cameraObject.setPreviewCallbackWithBuffer(previewCallback);
+    }
+
     /**
      * Tells the camera to stop drawing preview frames.
      */
@@ -168,6 +324,12 @@ public final class CameraManager {
         }
         if (camera != null && previewing) {
             camera.getCamera().stopPreview();
+            PreviewBufferRing ring = previewBufferRing;
+            if (ring != null) {
+                // Drops the buffers queued in the camera.
+                camera.getCamera().setPreviewCallbackWithBuffer(null);
+                ring.reclaimQueued();
+            }
             previewCallback.setHandler(null, 0);
             previewing = false;
         }
@@ -180,20 +342,147 @@ public final class CameraManager {
      */
     public synchronized void setTorch(boolean newSetting) {
         OpenCamera theCamera = camera;
-        if (theCamera != null && newSetting != configManager.getTorchState(theCamera.getCamera())) {
+        Camera.Parameters parameters = parameterCache.get();
+        if (theCamera != null && parameters != null && newSetting != configManager.getTorchState(parameters)) {
             boolean wasAutoFocusManager = autoFocusManager != null;
             if (wasAutoFocusManager) {
                 autoFocusManager.stop();
                 autoFocusManager = null;
             }
-            configManager.setTorch(theCamera.getCamera(), newSetting);
+            configManager.setTorch(parameterCache.edit(), newSetting);
+            // Auto focus restarts below, so the flash mode has to be in effect already.
+            parameterCache.flush();
             if (wasAutoFocusManager) {
-                autoFocusManager = new AutoFocusManager(context, theCamera.getCamera());
+                autoFocusManager = new AutoFocusManager(context, theCamera.getCamera(), getFocusMode());
                 autoFocusManager.start();
             }
         }
     }
 
+    /**
+     * Zooms in or out by {@code steps}, within what the camera supports. The change is applied
+     * with the next display frame, together with any others made before it, so a pinch gesture
+     * costs at most one parameter update per frame.
+     *
+     * @param steps zoom steps to add, negative to zoom out.
+     * @return false if the camera is closed or can't zoom.
+     */
+    public synchronized boolean zoomBy(int steps) {
+        Camera.Parameters parameters = parameterCache.get();
+        if (parameters == null || !parameters.isZoomSupported()) {
+            return false;
+        }
+        int zoom = Math.max(0, Math.min(parameters.getMaxZoom(), parameters.getZoom() + steps));
+        if (zoom != parameters.getZoom()) {
+            parameterCache.edit().setZoom(zoom);
+        }
+        return true;
+    }
+
+    /**
+     * Multiplies the zoom ratio by {@code factor}, as far as the camera's zoom ratios allow. Like
+     * {@link #zoomBy(int)}, the change is applied with the next display frame.
+     *
+     * @return whether the zoom changed.
+     */
+    public synchronized boolean zoomByRatio(float factor) {
+        Camera.Parameters parameters = parameterCache.get();
+        if (parameters == null || !parameters.isZoomSupported()) {
+            return false;
+        }
+        List<Integer> ratios = parameters.getZoomRatios();
+        int zoom = parameters.getZoom();
+        if (ratios == null || zoom >= ratios.size()) {
+            return false;
+        }
+        double targetRatio = ratios.get(zoom) / 100.0 * factor;
+        CameraConfigurationUtils.setZoom(parameterCache.edit(), targetRatio);
+        return parameters.getZoom() != zoom;
+    }
+
+    /**
+     * @return the zoom step the camera is at, or will be with the next display frame; 0 if it is
+     * closed or can't zoom.
+     */
+    public synchronized int getZoom() {
+        Camera.Parameters parameters = parameterCache.get();
+        return parameters == null || !parameters.isZoomSupported() ? 0 : parameters.getZoom();
+    }
+
+    /**
+     * Focuses and meters once on the given areas, in the camera's -1000 to 1000 coordinates, then
+     * goes back to the focus mode in use.
+     *
+     * @param focusArea where to focus, or null.
+     * @param meteringArea where to meter, or null.
+     */
+    public synchronized void focusOnArea(Rect focusArea, Rect meteringArea) {
+        final OpenCamera theCamera = camera;
+        if (theCamera == null) {
+            return;
+        }
+        Camera.Parameters parameters = parameterCache.edit();
+        if (parameters == null) {
+            return;
+        }
+        if (focusArea != null && parameters.getMaxNumFocusAreas() > 0) {
+            List<Camera.Area> focusAreas = new ArrayList<>();
+            focusAreas.add(new Camera.Area(focusArea, 600));
+            parameters.setFocusAreas(focusAreas);
+        }
+        if (meteringArea != null && parameters.getMaxNumMeteringAreas() > 0) {
+            List<Camera.Area> meteringAreas = new ArrayList<>();
+            meteringAreas.add(new Camera.Area(meteringArea, 600));
+            parameters.setMeteringAreas(meteringAreas);
+        }
+        final String currentFocusMode = parameters.getFocusMode();
+        parameters.setFocusMode(Camera.Parameters.FOCUS_MODE_MACRO);
+        // The camera has to be in the new mode before it focuses.
+        parameterCache.flush();
+        try {
+            theCamera.getCamera().autoFocus(new Camera.AutoFocusCallback() {
+                @Override
+                public void onAutoFocus(boolean success, Camera camera) {
+                    restoreFocusMode(theCamera, currentFocusMode);
+                }
+            });
+        } catch (RuntimeException re) {
+            Log.w(TAG, "Unexpected exception while focusing", re);
+            restoreFocusMode(theCamera, currentFocusMode);
+        }
+    }
+
+    /**
+     * Puts the camera back in {@code focusMode} right away, unless it was closed or replaced
+     * meanwhile.
+     */
+    private synchronized void restoreFocusMode(OpenCamera focusedCamera, String focusMode) {
+        if (camera != focusedCamera) {
+            return;
+        }
+        Camera.Parameters parameters = parameterCache.edit();
+        if (parameters != null) {
+            parameters.setFocusMode(focusMode);
+            // Continuous focus only resumes once the camera is back in that mode.
+            parameterCache.flush();
+        }
+    }
+
+    private String getFocusMode() {
+        Camera.Parameters parameters = parameterCache.get();
+        return parameters == null ? null : parameters.getFocusMode();
+    }
+
+    /**
+     * Passes the quality of a decoded frame on to auto focus, which refocuses early on a blurred,
+     * steady scene.
+     */
+    public synchronized void onFrameQuality(FrameQuality quality) {
+        if (autoFocusManager != null) {
+            autoFocusManager.onFrameQuality(quality);
+        }
+    }
+
     /**
      * A single preview frame will be returned to the handler supplied. The data will arrive as byte[]
      * in the message.obj field, with width and height encoded as message.arg1 and message.arg2,
@@ -206,10 +495,60 @@ public final class CameraManager {
         OpenCamera theCamera = camera;
         if (theCamera != null && previewing) {
             previewCallback.setHandler(handler, message);
-            theCamera.getCamera().setOneShotPreviewCallback(previewCallback);
+            PreviewBufferRing ring = previewBufferRing;
+            if (ring != null) {
+                // The camera fills exactly one frame per buffer it is given.
+                theCamera.getCamera().addCallbackBuffer(ring.acquire());
+            } else {
+                theCamera.getCamera().setOneShotPreviewCallback(previewCallback);
+            }
         }
     }
 
+    /**
+     * Hands a preview frame delivered by {@link #requestPreviewFrame(Handler, int)} back for reuse
+     * once nothing reads it any more. May be called from any thread; does nothing when preview
+     * buffers are not in use.
+     *
+     * @param data The preview frame.
+     */
+    public void releasePreviewFrame(byte[] data) {
+        PreviewBufferRing ring = previewBufferRing;
+        if (ring != null) {
+            ring.release(data);
+        }
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when the camera delivered the last preview frame, taken
+     * before the frame is passed on to the handler.
+     */
+    public long getPreviewFrameNanos() {
+        return previewCallback.getFrameNanos();
+    }
+
+    /**
+     * Makes the camera deliver preview frames into a ring of preallocated buffers, rather than a
+     * newly allocated array per frame. Takes effect on the next {@link #startPreview()}.
+     *
+     * @param count Number of buffers; at least the number of frames in flight at once. Zero uses
+     *              one-shot preview callbacks.
+     */
+    public synchronized void setPreviewBufferCount(int count) {
+        previewBufferCount = count;
+        if (count <= 0) {
+            previewBufferRing = null;
+        }
+    }
+
+    /**
+     * @return the preview buffer ring and its reuse counters, or {@code null} if one-shot preview
+     * callbacks are in use.
+     */
+    public PreviewBufferRing getPreviewBufferRing() {
+        return previewBufferRing;
+    }
+
     /**
      * Calculates the framing rect which the UI should draw to show the user where to place the
      * barcode. This target helps with alignment as well as forces the user to hold the device
@@ -228,10 +567,7 @@ public final class CameraManager {
                 return null;
             }
 
-            int width = findDesiredDimensionInRange(screenResolution.x, MIN_FRAME_WIDTH, MAX_FRAME_WIDTH);
-            int height = findDesiredDimensionInRange(screenResolution.y, MIN_FRAME_HEIGHT, MAX_FRAME_HEIGHT);
-
-            int size = Math.min(width,height);
+            int size = findFramingSize(screenResolution);
 
             int leftOffset = (screenResolution.x - size) / 2;
             int topOffset = (screenResolution.y - size) / 2;
@@ -241,6 +577,15 @@ public final class CameraManager {
         return framingRect;
     }
 
+    /**
+     * @return side of the square framing rect for a screen, in screen pixels.
+     */
+    static int findFramingSize(Point screenResolution) {
+        int width = findDesiredDimensionInRange(screenResolution.x, MIN_FRAME_WIDTH, MAX_FRAME_WIDTH);
+        int height = findDesiredDimensionInRange(screenResolution.y, MIN_FRAME_HEIGHT, MAX_FRAME_HEIGHT);
+        return Math.min(width, height);
+    }
+
     private static int findDesiredDimensionInRange(int resolution, int hardMin, int hardMax) {
         int dim = 5 * resolution / 8; // Target 5/8 of each dimension
         if (dim < hardMin) {
@@ -287,6 +632,18 @@ public final class CameraManager {
     }
 
 
+    private void updateFrameGeometry() {
+        frameGeometry = configManager.createFrameGeometry(getFramingRectInPreview());
+    }
+
+    /**
+     * @return how preview frames map onto the screen, or null while the camera is not configured.
+     * Unlike the other getters this takes no lock, so it is cheap enough to call for every frame.
+     */
+    public FrameGeometry getFrameGeometry() {
+        return frameGeometry;
+    }
+
     /**
      * Allows third party apps to specify the camera ID, rather than determine
      * it automatically based on available cameras and their orientation.
@@ -297,6 +654,16 @@ public final class CameraManager {
         requestedCameraId = cameraId;
     }
 
+    /**
+     * Picks the preview size by decode cost, see {@link PreviewSizeSelector}, rather than by
+     * closeness to the screen size. Must be called before {@link #openDriver(SurfaceHolder)}.
+     *
+     * @param selector the cost model, or null to pick by screen size.
+     */
+    public synchronized void setPreviewSizeSelector(PreviewSizeSelector selector) {
+        configManager.setPreviewSizeSelector(selector);
+    }
+
     /**
      * Allows third party apps to specify the scanning rectangle dimensions, rather than determine
      * them automatically based on screen resolution.
@@ -318,32 +685,13 @@ public final class CameraManager {
             framingRect = new Rect(leftOffset, topOffset, leftOffset + width, topOffset + height);
             Log.d(TAG, "Calculated manual framing rect: " + framingRect);
             framingRectInPreview = null;
+            if (camera != null) {
+                updateFrameGeometry();
+            }
         } else {
             requestedFramingRectWidth = width;
             requestedFramingRectHeight = height;
         }
     }
 
-    /**
-     * A factory method to build the appropriate LuminanceSource object based on the format
-     * of the preview buffers, as described by Camera.Parameters.
-     *
-     * @param data A preview frame.
-     * @param width The width of the image.
-     * @param height The height of the image.
-     * @return A PlanarYUVLuminanceSource instance.
-     */
-    public PlanarYUVLuminanceSource buildLuminanceSource(byte[] data, int width, int height) {
-        Rect rect = getFramingRectInPreview();
-        if (rect == null) {
-            return null;
-        }
-        int size = Math.min(width,height);
-        int left = (width-size)/2;
-        int top = (height-size)/2;
-        // Go ahead and assume it's YUV rather than die.
-        return new PlanarYUVLuminanceSource(data, width, height, left, top,
-                left + size, top + size, false);
-    }
-
 }
\ No newline at end of file
@@ -0,0 +1,121 @@
+package com.rhino.zxing.camera;
+
+import android.hardware.Camera;
+import android.util.Log;
+import android.view.Choreographer;
+
+/**
+ * A copy of the camera's parameters as last applied, read once when the camera is configured.
+ * {@code getParameters()} and {@code setParameters()} each go to the camera service and
+ * flatten or parse every parameter, which a pinch gesture would otherwise do for every touch
+ * event. Reads come from the copy, and changes are made to it and applied together with the next
+ * display frame, so a gesture costs at most one {@code setParameters()} per frame.
+ *
+ * <p>All methods must be called holding {@code lock}, which the flush takes too; that is the
+ * {@link CameraManager}. It must be created on the main thread.</p>
+ */
+@SuppressWarnings("deprecation") // camera APIs
+final class CameraParameterCache implements Choreographer.FrameCallback {
+
+    private static final String TAG = CameraParameterCache.class.getSimpleName();
+
+    private final Object lock;
+    private final Choreographer choreographer;
+    private Camera camera;
+    private Camera.Parameters parameters;
+    private boolean dirty;
+    private boolean scheduled;
+    private long editCount;
+    private long flushCount;
+
+    CameraParameterCache(Object lock) {
+        this.lock = lock;
+        choreographer = Choreographer.getInstance();
+    }
+
+    /**
+     * Starts caching {@code camera}'s parameters, once it has been configured.
+     *
+     * @param applied its parameters as they are now.
+     */
+    void attach(Camera camera, Camera.Parameters applied) {
+        this.camera = camera;
+        parameters = applied;
+        dirty = false;
+    }
+
+    /**
+     * Stops caching, dropping changes which have not been applied yet.
+     */
+    void detach() {
+        camera = null;
+        parameters = null;
+        dirty = false;
+        if (scheduled) {
+            choreographer.removeFrameCallback(this);
+            scheduled = false;
+        }
+    }
+
+    /**
+     * @return the parameters as they will be once pending changes are applied, not to be modified;
+     * null if no camera is attached.
+     */
+    Camera.Parameters get() {
+        return parameters;
+    }
+
+    /**
+     * @return the parameters to change, applied with the next display frame; null if no camera is
+     * attached.
+     */
+    Camera.Parameters edit() {
+        if (parameters == null) {
+            return null;
+        }
+        editCount++;
+        dirty = true;
+        if (!scheduled) {
+            scheduled = true;
+            choreographer.postFrameCallback(this);
+        }
+        return parameters;
+    }
+
+    /**
+     * Applies pending changes now, for callers which need them in effect before their next camera
+     * call, such as {@code autoFocus()}.
+     */
+    void flush() {
+        if (!dirty || camera == null) {
+            return;
+        }
+        dirty = false;
+        flushCount++;
+        try {
+            camera.setParameters(parameters);
+        } catch (RuntimeException re) {
+            // Some value was rejected; start again from what the camera has.
+            Log.w(TAG, "Camera rejected parameters", re);
+            try {
+                parameters = camera.getParameters();
+            } catch (RuntimeException re2) {
+                Log.w(TAG, "Could not read camera parameters", re2);
+            }
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        synchronized (lock) {
+            scheduled = false;
+            flush();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CameraParameterCache{edits=" + editCount + ", flushes=" + flushCount + '}';
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.rhino.zxing.camera;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.IOException;
+
+/**
+ * Opens and configures the camera on a background thread, so that the main thread can build the
+ * decode threads and create the preview surface meanwhile. The result is delivered on the main
+ * thread; the surface is bound afterwards with {@link CameraManager#setPreviewDisplay}.
+ *
+ * <p>The thread has no {@link Looper} on purpose: the camera delivers its callbacks on the looper
+ * of the thread which opened it, or the main looper if that thread has none, which is where the
+ * rest of this code expects them.</p>
+ *
+ * <p>Starts run one at a time, so a camera still opening for a cancelled start is closed again
+ * before the next start tries to open it.</p>
+ */
+public final class CameraStarter {
+
+    private static final String TAG = CameraStarter.class.getSimpleName();
+
+    private static final Object OPEN_LOCK = new Object();
+
+    /**
+     * Receives the result of {@link #start(Callback)} on the main thread, unless the start was
+     * cancelled first.
+     */
+    public interface Callback {
+
+        void onCameraOpened();
+
+        void onCameraOpenFailed(Exception e);
+
+    }
+
+    private final CameraManager cameraManager;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private Thread thread;
+    private volatile boolean cancelled;
+
+    public CameraStarter(CameraManager cameraManager) {
+        this.cameraManager = cameraManager;
+    }
+
+    /**
+     * Starts opening the camera. Must be called from the main thread, at most once.
+     */
+    public void start(final Callback callback) {
+        if (thread != null) {
+            throw new IllegalStateException("Already started");
+        }
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Exception failure = null;
+                synchronized (OPEN_LOCK) {
+                    if (!cancelled) {
+                        try {
+                            cameraManager.openDriver();
+                        } catch (IOException | RuntimeException e) {
+                            failure = e;
+                        }
+                    }
+                    if (cancelled) {
+                        // Nobody takes this camera over; closing twice is harmless if the
+                        // main thread got to it first.
+                        cameraManager.closeDriver();
+                        return;
+                    }
+                }
+                final Exception result = failure;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (cancelled) {
+                            return;
+                        }
+                        if (result == null) {
+                            callback.onCameraOpened();
+                        } else {
+                            callback.onCameraOpenFailed(result);
+                        }
+                    }
+                });
+            }
+        }, TAG);
+        thread.start();
+    }
+
+    /**
+     * Drops the result of {@link #start(Callback)} without waiting for it. A camera still being
+     * opened is closed by the opening thread once it is open. Must be called from the main thread,
+     * before {@link CameraManager#closeDriver()}.
+     */
+    public void cancel() {
+        cancelled = true;
+        mainHandler.removeCallbacksAndMessages(null);
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.rhino.zxing.camera;
+
+import android.graphics.Rect;
+
+/**
+ * An immutable snapshot of how preview frames map onto the screen: the rotation which turns them
+ * upright, the preview size, and the framing rect in preview coordinates. It is built by
+ * {@link CameraConfigurationManager} whenever the camera is configured, and replaced as a whole,
+ * so decode workers can read it for every frame without locking or asking the window manager.
+ */
+public final class FrameGeometry {
+
+    private final int rotation;
+    private final int previewWidth;
+    private final int previewHeight;
+    private final int framingLeft;
+    private final int framingTop;
+    private final int framingRight;
+    private final int framingBottom;
+    private final int cropLeft;
+    private final int cropTop;
+    private final int cropSize;
+
+    FrameGeometry(int rotation, int previewWidth, int previewHeight, Rect framingRectInPreview) {
+        this.rotation = rotation;
+        this.previewWidth = previewWidth;
+        this.previewHeight = previewHeight;
+        framingLeft = framingRectInPreview.left;
+        framingTop = framingRectInPreview.top;
+        framingRight = framingRectInPreview.right;
+        framingBottom = framingRectInPreview.bottom;
+        // A centred square is the same crop in either orientation.
+        cropSize = Math.min(previewWidth, previewHeight);
+        cropLeft = (previewWidth - cropSize) / 2;
+        cropTop = (previewHeight - cropSize) / 2;
+    }
+
+    /**
+     * @return clockwise rotation which turns preview frames upright on screen: 0 or 90.
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
+    public boolean isScreenPortrait() {
+        return rotation % 180 != 0;
+    }
+
+    public int getPreviewWidth() {
+        return previewWidth;
+    }
+
+    public int getPreviewHeight() {
+        return previewHeight;
+    }
+
+    /**
+     * @return side of the centred square decoded from each frame, in preview pixels.
+     */
+    public int getCropSize() {
+        return cropSize;
+    }
+
+    /**
+     * @return a new copy of the framing rect, in preview coordinates.
+     */
+    public Rect getFramingRectInPreview() {
+        return new Rect(framingLeft, framingTop, framingRight, framingBottom);
+    }
+
+    /**
+     * Builds the source decoders read a preview frame through: the centred square of the frame,
+     * turned upright by this snapshot's rotation. The source reads the preview buffer in place, so
+     * the frame is neither copied nor transposed. A frame of another size, still in flight from
+     * before the camera was reconfigured, is cropped the same way from its own dimensions.
+     *
+     * @param data A preview frame, in the camera's orientation.
+     * @param width The width of the preview frame.
+     * @param height The height of the preview frame.
+     * @return A RotatedYUVLuminanceSource instance.
+     */
+    public RotatedYUVLuminanceSource buildLuminanceSource(byte[] data, int width, int height) {
+        if (width == previewWidth && height == previewHeight) {
+            return new RotatedYUVLuminanceSource(data, width, height, cropLeft, cropTop, cropSize, cropSize, rotation);
+        }
+        return buildCentredSquare(data, width, height, rotation);
+    }
+
+    /**
+     * @param data A preview frame, in the camera's orientation.
+     * @param width The width of the preview frame.
+     * @param height The height of the preview frame.
+     * @param rotation Clockwise rotation to apply: 0, 90, 180 or 270.
+     * @return a source reading the centred square of the frame, as wide as the frame's shorter
+     * side, rotated in place.
+     */
+    static RotatedYUVLuminanceSource buildCentredSquare(byte[] data, int width, int height, int rotation) {
+        int size = Math.min(width, height);
+        return new RotatedYUVLuminanceSource(data, width, height,
+                (width - size) / 2, (height - size) / 2, size, size, rotation);
+    }
+
+    @Override
+    public String toString() {
+        return "FrameGeometry{rotation=" + rotation +
+                ", preview=" + previewWidth + 'x' + previewHeight +
+                ", framing=[" + framingLeft + ',' + framingTop + "][" + framingRight + ',' + framingBottom + ']' +
+                '}';
+    }
+
+}
@@ -0,0 +1,146 @@
+package com.rhino.zxing.camera;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A fixed set of preallocated preview frame buffers which are handed to the camera with
+ * {@code Camera.addCallbackBuffer()} and come back once the frame has been decoded. The counters
+ * show whether the frame path allocates anything: in steady state only the reuse count grows.
+ *
+ * <p>The ring knows who holds each of its buffers, so a buffer released twice, or one that is
+ * not its own, is ignored rather than handed out twice.</p>
+ */
+public final class PreviewBufferRing {
+
+    private enum Owner {
+        /** Free to hand to the camera. */
+        RING,
+        /** Queued in the camera, waiting for a frame. */
+        CAMERA,
+        /** Holding a delivered frame until it is released. */
+        CALLER
+    }
+
+    private final int bufferSize;
+    private final ArrayDeque<byte[]> free;
+    private final Map<byte[],Owner> owners = new IdentityHashMap<>();
+    private int allocationCount;
+    private long acquireCount;
+    private long reuseCount;
+    private long reclaimCount;
+
+    PreviewBufferRing(int capacity, int bufferSize) {
+        this.bufferSize = bufferSize;
+        free = new ArrayDeque<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            byte[] buffer = new byte[bufferSize];
+            free.add(buffer);
+            owners.put(buffer, Owner.RING);
+        }
+        allocationCount = capacity;
+    }
+
+    /**
+     * @return a free buffer, or a newly allocated one if every buffer is still being decoded, to
+     * be queued in the camera.
+     */
+    synchronized byte[] acquire() {
+        acquireCount++;
+        byte[] buffer = free.poll();
+        if (buffer == null) {
+            allocationCount++;
+            buffer = new byte[bufferSize];
+        } else {
+            reuseCount++;
+        }
+        owners.put(buffer, Owner.CAMERA);
+        return buffer;
+    }
+
+    /**
+     * Marks a buffer the camera has filled as held by the caller until {@link #release(byte[])}.
+     *
+     * @return false if the camera was not meant to have the buffer, say because it was reclaimed
+     * already; the frame must then be dropped without releasing it.
+     */
+    synchronized boolean onDelivered(byte[] buffer) {
+        if (owners.get(buffer) != Owner.CAMERA) {
+            return false;
+        }
+        owners.put(buffer, Owner.CALLER);
+        return true;
+    }
+
+    /**
+     * Returns a delivered buffer to the ring. Buffers the ring doesn't consider delivered, such as
+     * one released a second time or one of another size left over from a previous preview
+     * configuration, are ignored.
+     */
+    synchronized void release(byte[] buffer) {
+        if (buffer != null && owners.get(buffer) == Owner.CALLER) {
+            owners.put(buffer, Owner.RING);
+            free.add(buffer);
+        }
+    }
+
+    /**
+     * Takes back every buffer still queued in the camera, which drops them without a callback
+     * when its preview callback is cleared or it is released.
+     */
+    synchronized void reclaimQueued() {
+        for (Iterator<Map.Entry<byte[],Owner>> it = owners.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<byte[],Owner> entry = it.next();
+            if (entry.getValue() == Owner.CAMERA) {
+                entry.setValue(Owner.RING);
+                free.add(entry.getKey());
+                reclaimCount++;
+            }
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @return number of buffers allocated so far, which in steady state is the ring size.
+     */
+    public synchronized int getAllocationCount() {
+        return allocationCount;
+    }
+
+    public synchronized int getFreeCount() {
+        return free.size();
+    }
+
+    /**
+     * @return number of frames requested from the camera.
+     */
+    public synchronized long getAcquireCount() {
+        return acquireCount;
+    }
+
+    /**
+     * @return number of frames that were delivered into an already allocated buffer.
+     */
+    public synchronized long getReuseCount() {
+        return reuseCount;
+    }
+
+    /**
+     * @return number of buffers taken back from the camera by {@link #reclaimQueued()}.
+     */
+    public synchronized long getReclaimCount() {
+        return reclaimCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PreviewBufferRing{allocated=" + allocationCount + ", free=" + free.size() +
+                ", acquired=" + acquireCount + ", reused=" + reuseCount + ", reclaimed=" + reclaimCount + '}';
+    }
+
+}
@@ -31,6 +31,8 @@ final class PreviewCallback implements Camera.PreviewCallback {
     private final CameraConfigurationManager configManager;
     private Handler previewHandler;
     private int previewMessage;
+    private PreviewBufferRing bufferRing;
+    private volatile long frameNanos;
 
     PreviewCallback(CameraConfigurationManager configManager) {
         this.configManager = configManager;
@@ -41,8 +43,25 @@ final class PreviewCallback implements Camera.PreviewCallback {
         this.previewMessage = previewMessage;
     }
 
+    void setBufferRing(PreviewBufferRing bufferRing) {
+        this.bufferRing = bufferRing;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when the last frame was delivered.
+     */
+    long getFrameNanos() {
+        return frameNanos;
+    }
+
     @Override
     public void onPreviewFrame(byte[] data, Camera camera) {
+        frameNanos = System.nanoTime();
+        PreviewBufferRing theBufferRing = bufferRing;
+        if (theBufferRing != null && !theBufferRing.onDelivered(data)) {
+            Log.d(TAG, "Got preview frame in a buffer already taken back; dropping it");
+            return;
+        }
         Point cameraResolution = configManager.getCameraResolution();
         Handler thePreviewHandler = previewHandler;
         if (cameraResolution != null && thePreviewHandler != null) {
@@ -52,6 +71,9 @@ final class PreviewCallback implements Camera.PreviewCallback {
             previewHandler = null;
         } else {
             Log.d(TAG, "Got preview callback, but no handler or resolution available");
+            if (theBufferRing != null) {
+                theBufferRing.release(data);
+            }
         }
     }
 
@@ -0,0 +1,124 @@
+package com.rhino.zxing.camera;
+
+/**
+ * A cost model for choosing the preview size by what the decoder needs rather than by the screen.
+ * The decoder reads the centred square of each frame, and the user holds the code inside the
+ * framing rect, a share of that square. The smallest code to be read spans
+ * {@code minCodeFraction} of the framing rect and has {@code targetModules} modules across, each
+ * of which needs at least {@code minModulePixels} pixels. That gives the smallest square, and so
+ * the smallest preview, which resolves the code; anything larger only costs decode time.
+ *
+ * <p>Decode time grows with the pixels of the square. The time per pixel starts from an estimate
+ * and is replaced by what the decoder measured, see {@link #recordDecodeNanos(long, int)}, so the
+ * next camera start of the same activity uses the real figure. If no preview size resolves the
+ * code, the largest one which still decodes within {@code maxDecodeNanos} is used.</p>
+ */
+public final class PreviewSizeSelector {
+
+    /** Modules across a version 10 QR code. */
+    public static final int DEFAULT_TARGET_MODULES = 57;
+    public static final float DEFAULT_MIN_MODULE_PIXELS = 3.0f;
+    public static final float DEFAULT_MIN_CODE_FRACTION = 0.4f;
+    /** About 40 ms per megapixel, for a mid-range phone before anything is measured. */
+    public static final float DEFAULT_NANOS_PER_PIXEL = 40.0f;
+
+    private final int targetModules;
+    private final float minModulePixels;
+    private final float minCodeFraction;
+    private final long maxDecodeNanos;
+    private float nanosPerPixel = DEFAULT_NANOS_PER_PIXEL;
+    private boolean measured;
+
+    /**
+     * @param targetModules modules across the densest code to be read.
+     * @param minModulePixels preview pixels each module needs to be read reliably.
+     * @param minCodeFraction share of the framing rect's side the smallest code spans.
+     * @param maxDecodeNanos decode time per frame a size too small to resolve the code may cost,
+     *                       or 0 for no limit.
+     */
+    public PreviewSizeSelector(int targetModules, float minModulePixels, float minCodeFraction, long maxDecodeNanos) {
+        this.targetModules = targetModules;
+        this.minModulePixels = minModulePixels;
+        this.minCodeFraction = minCodeFraction;
+        this.maxDecodeNanos = maxDecodeNanos;
+    }
+
+    /**
+     * @param framingFraction share of the decoded square's side the framing rect takes up.
+     * @return side of the smallest decoded square, in preview pixels, which resolves the code.
+     */
+    public int getRequiredCropSide(float framingFraction) {
+        return (int) Math.ceil(targetModules * minModulePixels / (framingFraction * minCodeFraction));
+    }
+
+    /**
+     * @return expected time to decode a square of {@code cropSide} preview pixels.
+     */
+    public synchronized long estimateDecodeNanos(int cropSide) {
+        return (long) ((long) cropSide * cropSide * nanosPerPixel);
+    }
+
+    public long getMaxDecodeNanos() {
+        return maxDecodeNanos;
+    }
+
+    /**
+     * @param cropSides sides of the squares the candidate preview sizes would be decoded in,
+     *                  i.e. their shorter sides.
+     * @param framingFraction share of the decoded square's side the framing rect takes up.
+     * @return index of the smallest side which resolves the code, or else of the largest one
+     * which decodes within the time limit, or -1 if there is neither.
+     */
+    public int chooseCropSide(int[] cropSides, float framingFraction) {
+        int requiredSide = getRequiredCropSide(framingFraction);
+        int cheapest = -1;
+        int largestAffordable = -1;
+        for (int i = 0; i < cropSides.length; i++) {
+            int side = cropSides[i];
+            if (side >= requiredSide) {
+                if (cheapest < 0 || side < cropSides[cheapest]) {
+                    cheapest = i;
+                }
+            } else if (maxDecodeNanos <= 0L || estimateDecodeNanos(side) <= maxDecodeNanos) {
+                if (largestAffordable < 0 || side > cropSides[largestAffordable]) {
+                    largestAffordable = i;
+                }
+            }
+        }
+        return cheapest >= 0 ? cheapest : largestAffordable;
+    }
+
+    /**
+     * Learns the decode time per pixel from frames decoded at one size. The first measurement
+     * replaces the estimate, later ones are averaged in.
+     *
+     * @param decodeNanos typical time to decode a frame, such as the median of
+     *                    {@code DecodeStage.DECODE}.
+     * @param cropSide side of the square those frames were decoded in.
+     */
+    public synchronized void recordDecodeNanos(long decodeNanos, int cropSide) {
+        if (decodeNanos <= 0L || cropSide <= 0) {
+            return;
+        }
+        float sample = (float) decodeNanos / ((long) cropSide * cropSide);
+        nanosPerPixel = measured ? (nanosPerPixel + sample) / 2.0f : sample;
+        measured = true;
+    }
+
+    /**
+     * @return the measured decode time per preview pixel, or the estimate until one is recorded.
+     */
+    public synchronized float getNanosPerPixel() {
+        return nanosPerPixel;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PreviewSizeSelector{modules=" + targetModules +
+                ", minModulePixels=" + minModulePixels +
+                ", minCodeFraction=" + minCodeFraction +
+                ", nanosPerPixel=" + nanosPerPixel + (measured ? "" : " (estimate)") +
+                '}';
+    }
+
+}
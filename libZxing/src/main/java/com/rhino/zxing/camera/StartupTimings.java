@@ -0,0 +1,81 @@
+package com.rhino.zxing.camera;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * When each phase of a camera start finished, counted from the start, which is when the activity
+ * resumed. The camera is opened and configured on a background thread while the decode threads
+ * are built and the preview surface is created on the main thread, so the phases overlap; the
+ * time to the first frame is what the user waits for.
+ *
+ * <p>Each phase is recorded once, the first time it is marked, and may be marked from any
+ * thread.</p>
+ */
+public final class StartupTimings {
+
+    public enum Phase {
+        /** {@code Camera.open()} returned. */
+        CAMERA_OPENED,
+        /** The camera parameters were set. */
+        CAMERA_CONFIGURED,
+        /** The decode threads were started. */
+        DECODER_STARTED,
+        /** The preview surface exists. */
+        SURFACE_READY,
+        /** The preview was bound to the surface and started. */
+        PREVIEW_STARTED,
+        /** The first preview frame arrived. */
+        FIRST_FRAME
+    }
+
+    private final long startNanos;
+    private final long[] elapsedNanos = new long[Phase.values().length];
+
+    public StartupTimings() {
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Records that {@code phase} finished now, unless it already has.
+     *
+     * @return whether this call recorded it.
+     */
+    public synchronized boolean mark(Phase phase) {
+        if (elapsedNanos[phase.ordinal()] != 0L) {
+            return false;
+        }
+        elapsedNanos[phase.ordinal()] = Math.max(1L, System.nanoTime() - startNanos);
+        return true;
+    }
+
+    public synchronized boolean isMarked(Phase phase) {
+        return elapsedNanos[phase.ordinal()] != 0L;
+    }
+
+    /**
+     * @return milliseconds from the start until {@code phase} finished, or -1 if it hasn't.
+     */
+    public synchronized long getMillis(Phase phase) {
+        long nanos = elapsedNanos[phase.ordinal()];
+        return nanos == 0L ? -1L : TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder result = new StringBuilder("StartupTimings{");
+        for (Phase phase : Phase.values()) {
+            if (phase.ordinal() > 0) {
+                result.append(", ");
+            }
+            result.append(phase.name().toLowerCase()).append('=');
+            long nanos = elapsedNanos[phase.ordinal()];
+            if (nanos == 0L) {
+                result.append('-');
+            } else {
+                result.append(TimeUnit.NANOSECONDS.toMillis(nanos)).append("ms");
+            }
+        }
+        return result.append('}').toString();
+    }
+
+}
@@ -0,0 +1,155 @@
+package com.rhino.zxing.camera;
+
+import android.hardware.Camera;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.rhino.zxing.camera.open.OpenCamera;
+
+/**
+ * Keeps the camera of the last scan open, configured, for a while after the scanner is paused, so
+ * that the next {@link CameraManager#openDriver()} in this process can take it over rather than
+ * open and configure the camera again. Like the {@code InactivityTimer}, it gives up after a
+ * period of inactivity: a camera nobody takes within its idle time is released, so other apps can
+ * have it.
+ *
+ * <p>There is one session per process. Only one camera is kept; parking another releases it.</p>
+ */
+@SuppressWarnings("deprecation") // camera APIs
+public final class WarmCameraSession {
+
+    private static final String TAG = WarmCameraSession.class.getSimpleName();
+
+    private static final WarmCameraSession INSTANCE = new WarmCameraSession();
+
+    /**
+     * A camera handed back by {@link #take(int)}, with how {@link CameraManager} had configured it.
+     */
+    static final class Parked {
+
+        private final OpenCamera camera;
+        private final String configurationKey;
+        private final String configuredParameters;
+        private final boolean torchOn;
+
+        /**
+         * @param torchOn whether the torch was on before it was switched off for parking.
+         */
+        Parked(OpenCamera camera, String configurationKey, String configuredParameters, boolean torchOn) {
+            this.camera = camera;
+            this.configurationKey = configurationKey;
+            this.configuredParameters = configuredParameters;
+            this.torchOn = torchOn;
+        }
+
+        OpenCamera getCamera() {
+            return camera;
+        }
+
+        String getConfigurationKey() {
+            return configurationKey;
+        }
+
+        String getConfiguredParameters() {
+            return configuredParameters;
+        }
+
+        boolean isTorchOn() {
+            return torchOn;
+        }
+
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable releaseTask = new Runnable() {
+        @Override
+        public void run() {
+            Log.i(TAG, "Releasing idle camera");
+            release();
+        }
+    };
+    private Parked parked;
+    private int parkedCameraId;
+    private long reattachCount;
+
+    private WarmCameraSession() {
+    }
+
+    public static WarmCameraSession getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Keeps {@code camera}, which must not be previewing and must have its torch off, open for
+     * {@code idleMs}.
+     *
+     * @param requestedCameraId the camera id it was opened for, which {@link #take(int)} must ask for.
+     */
+    synchronized void park(int requestedCameraId, Parked camera, long idleMs) {
+        release();
+        Camera cameraObject = camera.getCamera().getCamera();
+        try {
+            // Let go of the old activity's surface and callbacks.
+            cameraObject.setPreviewCallback(null);
+            cameraObject.setPreviewDisplay(null);
+        } catch (Exception e) {
+            Log.w(TAG, "Could not detach camera; releasing it", e);
+            cameraObject.release();
+            return;
+        }
+        parked = camera;
+        parkedCameraId = requestedCameraId;
+        handler.postDelayed(releaseTask, idleMs);
+    }
+
+    /**
+     * @return the parked camera if it was opened for {@code requestedCameraId} and still works,
+     * or null; either way the session no longer holds a camera.
+     */
+    synchronized Parked take(int requestedCameraId) {
+        Parked result = parked;
+        if (result == null) {
+            return null;
+        }
+        handler.removeCallbacks(releaseTask);
+        parked = null;
+        if (parkedCameraId != requestedCameraId) {
+            result.getCamera().getCamera().release();
+            return null;
+        }
+        try {
+            // Fails if another app has taken the camera away meanwhile.
+            result.getCamera().getCamera().getParameters();
+        } catch (RuntimeException re) {
+            Log.w(TAG, "Parked camera is no longer usable", re);
+            result.getCamera().getCamera().release();
+            return null;
+        }
+        reattachCount++;
+        return result;
+    }
+
+    /**
+     * Releases the parked camera, if any, right away.
+     */
+    public synchronized void release() {
+        handler.removeCallbacks(releaseTask);
+        if (parked != null) {
+            parked.getCamera().getCamera().release();
+            parked = null;
+        }
+    }
+
+    public synchronized boolean isWarm() {
+        return parked != null;
+    }
+
+    /**
+     * @return how often a parked camera was taken over rather than opened again.
+     */
+    public synchronized long getReattachCount() {
+        return reattachCount;
+    }
+
+}
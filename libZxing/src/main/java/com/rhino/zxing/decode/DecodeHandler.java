@@ -16,29 +16,18 @@ package com.rhino.zxing.decode;
  */
 
 
-import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.Point;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
 import android.util.Log;
-import android.view.Display;
-import android.view.WindowManager;
 
 import com.rhino.zxing.CaptureActivity;
 import com.rhino.zxing.R;
-import com.google.zxing.BinaryBitmap;
+import com.rhino.zxing.camera.FrameGeometry;
+import com.rhino.zxing.camera.RotatedYUVLuminanceSource;
 import com.google.zxing.DecodeHintType;
-import com.google.zxing.MultiFormatReader;
-import com.google.zxing.NotFoundException;
-import com.google.zxing.PlanarYUVLuminanceSource;
-import com.google.zxing.Result;
-import com.google.zxing.common.GlobalHistogramBinarizer;
-import com.google.zxing.common.HybridBinarizer;
-
-import java.io.ByteArrayOutputStream;
+
 import java.util.Map;
 
 public final class DecodeHandler extends Handler {
@@ -46,13 +35,27 @@ public final class DecodeHandler extends Handler {
     private static final String TAG = DecodeHandler.class.getSimpleName();
 
     private final CaptureActivity activity;
-    private final MultiFormatReader multiFormatReader;
+    private final BarcodeDecoder decoder;
+    private final DecodeMetrics metrics;
+    private final DecodeBudget budget;
+    private final DecodeThreadPool pool;
+    private final int index;
     private boolean running = true;
 
-    public DecodeHandler(CaptureActivity activity, Map<DecodeHintType, Object> hints) {
-        multiFormatReader = new MultiFormatReader();
-        multiFormatReader.setHints(hints);
+    DecodeHandler(CaptureActivity activity, Map<DecodeHintType, Object> hints, DecodeThreadPool pool, int index) {
+        metrics = activity.getDecodeMetrics();
+        decoder = new BarcodeDecoder(hints, activity.getDecodeStatistics(), metrics,
+                pool.getFrameQualityGate(), pool.isRegionTracking() ? new RegionTracker() : null,
+                pool.isMultiDecode());
+        decoder.setBinarizerStrategy(pool.getBinarizerStrategy());
+        decoder.setPyramidDecode(pool.isPyramidDecode());
+        decoder.setInvertedDecode(pool.getInvertedDecode());
+        decoder.setHintEscalation(pool.getHintEscalation());
+        budget = pool.getBudget(index);
+        decoder.setBudget(budget);
         this.activity = activity;
+        this.pool = pool;
+        this.index = index;
     }
 
     @Override
@@ -61,7 +64,16 @@ public final class DecodeHandler extends Handler {
             return;
         }
         if (message.what == R.id.decode) {
-            decode((byte[]) message.obj, message.arg1, message.arg2, isScreenPortrait());
+            byte[] data = (byte[]) message.obj;
+            long start = System.nanoTime();
+            metrics.record(DecodeStage.QUEUE, start - pool.getFrameNanos(index));
+            try {
+                decode(data, message.arg1, message.arg2);
+            } finally {
+                // Nothing holds on to the frame past decode(), so its buffer can be refilled.
+                activity.getCameraManager().releasePreviewFrame(data);
+                metrics.record(DecodeStage.DECODE, System.nanoTime() - start);
+            }
 
         } else if (message.what == R.id.quit) {
             running = false;
@@ -70,14 +82,6 @@ public final class DecodeHandler extends Handler {
         }
     }
 
-    private boolean isScreenPortrait() {
-        WindowManager manager = (WindowManager) activity.getSystemService(Context.WINDOW_SERVICE);
-        Display display = manager.getDefaultDisplay();
-        Point screenResolution = new Point();
-        display.getSize(screenResolution);
-        return screenResolution.x < screenResolution.y;
-    }
-
     /**
      * Decode the data within the viewfinder rectangle, and time how long it took. For efficiency,
      * reuse the same reader objects from one decode to the next.
@@ -86,68 +90,84 @@ public final class DecodeHandler extends Handler {
      * @param width  The width of the preview frame.
      * @param height The height of the preview frame.
      */
-    private void decode(byte[] data, int width, int height, boolean isScreenPortrait) {
-        long start = System.currentTimeMillis();
-        Result rawResult = null;
-        PlanarYUVLuminanceSource source;
-        if (isScreenPortrait) {
-            byte[] rotatedData = new byte[data.length];
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++)
-                    rotatedData[x * height + height - y - 1] = data[x + y * width];
+    private void decode(byte[] data, int width, int height) {
+        Handler handler = activity.getHandler();
+        // Started before the check, so a cancel from now on is seen, and one from before is
+        // caught by the check.
+        budget.start(pool.getDecodeBudgetNanos());
+        if (!pool.isCurrent(index)) {
+            // Another worker already decoded a frame from this scan; don't bother.
+            if (handler != null) {
+                Message.obtain(handler, R.id.decode_failed, index, DecodeThread.FRAME_SKIPPED).sendToTarget();
             }
-            int tmp = width;
-            width = height;
-            height = tmp;
-            source = activity.getCameraManager().buildLuminanceSource(rotatedData, width, height);
-        } else {
-            source = activity.getCameraManager().buildLuminanceSource(data, width, height);
+            return;
         }
-        if (source != null) {
-            BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
-            try {
-                rawResult = multiFormatReader.decodeWithState(bitmap);
-            } catch (Exception e) {
-                BinaryBitmap bitmap1 = new BinaryBitmap(new GlobalHistogramBinarizer(source));
-                try {
-                    rawResult = multiFormatReader.decode(bitmap1);
-                } catch (NotFoundException ne) {
-
-                }
-            } finally {
-                multiFormatReader.reset();
+        long start = System.nanoTime();
+        if (pool.isExpired(index, start)) {
+            // The camera has most likely moved on; a result from this frame would not be shown.
+            if (handler != null) {
+                Message.obtain(handler, R.id.decode_failed, index, DecodeThread.FRAME_EXPIRED).sendToTarget();
             }
+            return;
+        }
+        DecodeOutcome outcome = null;
+        // Portrait frames are read rotated in place rather than copied into a rotated buffer.
+        FrameGeometry geometry = activity.getCameraManager().getFrameGeometry();
+        RotatedYUVLuminanceSource source = geometry == null ? null : geometry.buildLuminanceSource(data, width, height);
+        metrics.record(DecodeStage.LUMINANCE, System.nanoTime() - start);
+        if (source != null && isWorthDecoding(source, handler)) {
+            outcome = decoder.decode(source);
         }
 
-        Handler handler = activity.getHandler();
-        if (rawResult != null) {
+        if (outcome != null && outcome.isFound()) {
             // Don't log the barcode contents for security.
-            long end = System.currentTimeMillis();
-            Log.d(TAG, "Found barcode in " + (end - start) + " ms");
+            long end = System.nanoTime();
+            Log.d(TAG, "Found " + (decoder.isMultiDecode() ? outcome.getResults().length : 1) + " barcode(s) in " + (end - start) / 1000000L + " ms");
             if (handler != null) {
-                Message message = Message.obtain(handler, R.id.decode_succeeded, rawResult);
-                Bundle bundle = new Bundle();
-                bundleThumbnail(source, bundle);
-                message.setData(bundle);
+                Message message = decoder.isMultiDecode() ?
+                        Message.obtain(handler, R.id.decode_multi_succeeded, index, 0, outcome.getResults()) :
+                        Message.obtain(handler, R.id.decode_succeeded, index, 0, outcome.getResult());
+                if (pool.isResultThumbnail()) {
+                    // The frame buffer goes back to the camera after this, so render now.
+                    long thumbnailStart = System.nanoTime();
+                    Bundle bundle = new Bundle();
+                    bundleThumbnail(source, bundle);
+                    message.setData(bundle);
+                    metrics.record(DecodeStage.THUMBNAIL, System.nanoTime() - thumbnailStart);
+                }
+                pool.setResultNanos(index, System.nanoTime());
                 message.sendToTarget();
             }
         } else {
             if (handler != null) {
-                Message message = Message.obtain(handler, R.id.decode_failed);
+                // Only a frame decoded to the end is a real miss.
+                boolean skipped = outcome == null || outcome.isAbandoned();
+                Message message = Message.obtain(handler, R.id.decode_failed, index,
+                        skipped ? DecodeThread.FRAME_SKIPPED : 0);
                 message.sendToTarget();
             }
         }
     }
 
-    private static void bundleThumbnail(PlanarYUVLuminanceSource source, Bundle bundle) {
-        int[] pixels = source.renderThumbnail();
+    /**
+     * @return false if the frame quality gate expects the readers to find nothing in the frame.
+     */
+    private boolean isWorthDecoding(RotatedYUVLuminanceSource source, Handler handler) {
+        FrameQuality quality = decoder.evaluate(source);
+        if (quality == null) {
+            return true;
+        }
+        if (handler != null) {
+            Message.obtain(handler, R.id.frame_quality, quality).sendToTarget();
+        }
+        return quality.isAccepted();
+    }
+
+    private static void bundleThumbnail(RotatedYUVLuminanceSource source, Bundle bundle) {
         int width = source.getThumbnailWidth();
-        int height = source.getThumbnailHeight();
-        Bitmap bitmap = Bitmap.createBitmap(pixels, 0, width, width, height, Bitmap.Config.ARGB_8888);
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        bitmap.compress(Bitmap.CompressFormat.JPEG, 50, out);
-        bundle.putByteArray(DecodeThread.BARCODE_BITMAP, out.toByteArray());
+        bundle.putIntArray(DecodeThread.BARCODE_PIXELS, source.renderThumbnail());
+        bundle.putInt(DecodeThread.BARCODE_WIDTH, width);
         bundle.putFloat(DecodeThread.BARCODE_SCALED_FACTOR, (float) width / source.getWidth());
     }
 
-}
\ No newline at end of file
+}
@@ -17,83 +17,57 @@ package com.rhino.zxing.decode;
  */
 
 
-import android.content.SharedPreferences;
 import android.os.Handler;
 import android.os.Looper;
-import android.preference.PreferenceManager;
-import android.util.Log;
 
-import com.google.zxing.BarcodeFormat;
 import com.google.zxing.DecodeHintType;
-import com.google.zxing.ResultPointCallback;
 import com.rhino.zxing.CaptureActivity;
-import com.rhino.zxing.Preferences;
 
-import java.util.Collection;
-import java.util.EnumMap;
-import java.util.EnumSet;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 
 /**
- * This thread does all the heavy lifting of decoding the images.
+ * This thread does all the heavy lifting of decoding the images. Several of them may run at once,
+ * see {@link DecodeThreadPool}.
  *
  * @author dswitkin@google.com (Daniel Switkin)
  */
 public final class DecodeThread extends Thread {
 
+    /**
+     * @deprecated the thumbnail is no longer sent as compressed bytes; read
+     * {@link #BARCODE_PIXELS} and {@link #BARCODE_WIDTH} instead.
+     */
+    @Deprecated
     public static final String BARCODE_BITMAP = "barcode_bitmap";
+    public static final String BARCODE_PIXELS = "barcode_pixels";
+    public static final String BARCODE_WIDTH = "barcode_width";
     public static final String BARCODE_SCALED_FACTOR = "barcode_scaled_factor";
+    /** arg2 of a decode_failed message whose frame was past the deadline and not decoded. */
+    public static final int FRAME_EXPIRED = 1;
+    /**
+     * arg2 of a decode_failed message whose frame was not decoded to the end: another worker had
+     * already decoded a newer frame, the quality gate rejected it or its budget ran out.
+     */
+    public static final int FRAME_SKIPPED = 2;
 
     private final CaptureActivity activity;
     private final Map<DecodeHintType,Object> hints;
+    private final DecodeThreadPool pool;
+    private final int index;
     private Handler handler;
     private final CountDownLatch handlerInitLatch;
 
-    public DecodeThread(CaptureActivity activity,
-                 Collection<BarcodeFormat> decodeFormats,
-                 Map<DecodeHintType,?> baseHints,
-                 String characterSet,
-                 ResultPointCallback resultPointCallback) {
-
+    DecodeThread(CaptureActivity activity,
+                 Map<DecodeHintType,Object> hints,
+                 DecodeThreadPool pool,
+                 int index) {
+        super("DecodeThread-" + index);
         this.activity = activity;
+        this.hints = hints;
+        this.pool = pool;
+        this.index = index;
         handlerInitLatch = new CountDownLatch(1);
-
-        hints = new EnumMap<>(DecodeHintType.class);
-        if (baseHints != null) {
-            hints.putAll(baseHints);
-        }
-
-        // The prefs can't change while the thread is running, so pick them up once here.
-        if (decodeFormats == null || decodeFormats.isEmpty()) {
-            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(activity);
-            decodeFormats = EnumSet.noneOf(BarcodeFormat.class);
-            if (prefs.getBoolean(Preferences.KEY_DECODE_1D_PRODUCT, true)) {
-                decodeFormats.addAll(DecodeFormatManager.PRODUCT_FORMATS);
-            }
-            if (prefs.getBoolean(Preferences.KEY_DECODE_1D_INDUSTRIAL, true)) {
-                decodeFormats.addAll(DecodeFormatManager.INDUSTRIAL_FORMATS);
-            }
-            if (prefs.getBoolean(Preferences.KEY_DECODE_QR, true)) {
-                decodeFormats.addAll(DecodeFormatManager.QR_CODE_FORMATS);
-            }
-            if (prefs.getBoolean(Preferences.KEY_DECODE_DATA_MATRIX, true)) {
-                decodeFormats.addAll(DecodeFormatManager.DATA_MATRIX_FORMATS);
-            }
-            if (prefs.getBoolean(Preferences.KEY_DECODE_AZTEC, false)) {
-                decodeFormats.addAll(DecodeFormatManager.AZTEC_FORMATS);
-            }
-            if (prefs.getBoolean(Preferences.KEY_DECODE_PDF417, false)) {
-                decodeFormats.addAll(DecodeFormatManager.PDF417_FORMATS);
-            }
-        }
-        hints.put(DecodeHintType.POSSIBLE_FORMATS, decodeFormats);
-
-        if (characterSet != null) {
-            hints.put(DecodeHintType.CHARACTER_SET, characterSet);
-        }
-        hints.put(DecodeHintType.NEED_RESULT_POINT_CALLBACK, resultPointCallback);
-        Log.i("DecodeThread", "Hints: " + hints);
     }
 
     public Handler getHandler() {
@@ -108,7 +82,7 @@ public final class DecodeThread extends Thread {
     @Override
     public void run() {
         Looper.prepare();
-        handler = new DecodeHandler(activity, hints);
+        handler = new DecodeHandler(activity, hints, pool, index);
         handlerInitLatch.countDown();
         Looper.loop();
     }
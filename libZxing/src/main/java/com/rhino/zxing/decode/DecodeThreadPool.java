@@ -0,0 +1,322 @@
+package com.rhino.zxing.decode;
+
+import android.content.SharedPreferences;
+import android.os.Message;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.ResultPointCallback;
+import com.rhino.zxing.CaptureActivity;
+import com.rhino.zxing.Preferences;
+import com.rhino.zxing.R;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+
+/**
+ * A fixed set of {@link DecodeThread}s, each with its own reader, so that several preview frames
+ * can be decoded at once. Frames are handed to whichever worker is idle.
+ *
+ * <p>All methods except {@link #isCurrent(int)} must be called from the thread that owns the
+ * {@link com.rhino.zxing.CaptureActivityHandler}, which is also where workers report back.</p>
+ */
+public final class DecodeThreadPool {
+
+    private static final String TAG = DecodeThreadPool.class.getSimpleName();
+
+    private final DecodeThread[] workers;
+    private final boolean[] busy;
+    private final int[] dispatchGeneration;
+    // Written before the message to the worker or handler is sent, which makes them visible there.
+    private final long[] frameNanos;
+    private final long[] resultNanos;
+    private final DecodeBudget[] budgets;
+    private final BinarizerStrategy binarizerStrategy;
+    private final FrameQualityGate frameQualityGate;
+    private final boolean regionTracking;
+    private final HintEscalation hintEscalation;
+    private final boolean multiDecode;
+    private final boolean pyramidDecode;
+    private final InvertedDecode invertedDecode;
+    private final long decodeBudgetNanos;
+    private final boolean resultThumbnail;
+    private long frameDeadlineNanos;
+    private volatile int generation;
+
+    public DecodeThreadPool(CaptureActivity activity,
+                            Collection<BarcodeFormat> decodeFormats,
+                            Map<DecodeHintType,?> baseHints,
+                            String characterSet,
+                            ResultPointCallback resultPointCallback,
+                            int size) {
+        Map<DecodeHintType,Object> hints = new EnumMap<>(DecodeHintType.class);
+        if (baseHints != null) {
+            hints.putAll(baseHints);
+        }
+
+        // The prefs can't change while the threads are running, so pick them up once here.
+        if (decodeFormats == null || decodeFormats.isEmpty()) {
+            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(activity);
+            decodeFormats = EnumSet.noneOf(BarcodeFormat.class);
+            if (prefs.getBoolean(Preferences.KEY_DECODE_1D_PRODUCT, true)) {
+                decodeFormats.addAll(DecodeFormatManager.PRODUCT_FORMATS);
+            }
+            if (prefs.getBoolean(Preferences.KEY_DECODE_1D_INDUSTRIAL, true)) {
+                decodeFormats.addAll(DecodeFormatManager.INDUSTRIAL_FORMATS);
+            }
+            if (prefs.getBoolean(Preferences.KEY_DECODE_QR, true)) {
+                decodeFormats.addAll(DecodeFormatManager.QR_CODE_FORMATS);
+            }
+            if (prefs.getBoolean(Preferences.KEY_DECODE_DATA_MATRIX, true)) {
+                decodeFormats.addAll(DecodeFormatManager.DATA_MATRIX_FORMATS);
+            }
+            if (prefs.getBoolean(Preferences.KEY_DECODE_AZTEC, false)) {
+                decodeFormats.addAll(DecodeFormatManager.AZTEC_FORMATS);
+            }
+            if (prefs.getBoolean(Preferences.KEY_DECODE_PDF417, false)) {
+                decodeFormats.addAll(DecodeFormatManager.PDF417_FORMATS);
+            }
+        }
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, decodeFormats);
+
+        if (characterSet != null) {
+            hints.put(DecodeHintType.CHARACTER_SET, characterSet);
+        }
+        hints.put(DecodeHintType.NEED_RESULT_POINT_CALLBACK, resultPointCallback);
+        binarizerStrategy = activity.createBinarizerStrategy();
+        frameQualityGate = activity.isFrameQualityGate() ? new FrameQualityGate() : null;
+        regionTracking = activity.isRegionTracking();
+        hintEscalation = activity.createHintEscalation(hints);
+        multiDecode = activity.isMultiDecode();
+        pyramidDecode = activity.isPyramidDecode();
+        invertedDecode = activity.getInvertedDecode();
+        decodeBudgetNanos = Math.max(0L, activity.getDecodeBudgetMs()) * 1000000L;
+        resultThumbnail = activity.isResultThumbnail();
+        Log.i(TAG, "Hints: " + hints + ", escalation steps: " +
+                (hintEscalation == null ? 0 : hintEscalation.getStepCount()) + ", workers: " + size);
+
+        if (size < 1) {
+            size = 1;
+        }
+        workers = new DecodeThread[size];
+        busy = new boolean[size];
+        dispatchGeneration = new int[size];
+        frameNanos = new long[size];
+        resultNanos = new long[size];
+        budgets = new DecodeBudget[size];
+        for (int i = 0; i < size; i++) {
+            budgets[i] = new DecodeBudget();
+            // The hints are only read by the readers, so all workers can share them.
+            workers[i] = new DecodeThread(activity, hints, this, i);
+        }
+    }
+
+    /**
+     * Makes workers skip frames older than {@code deadlineNanos} by the time they get to them.
+     * Must be called before {@link #start()}.
+     *
+     * @param deadlineNanos maximum frame age, or 0 to decode every frame.
+     */
+    public void setFrameDeadlineNanos(long deadlineNanos) {
+        frameDeadlineNanos = deadlineNanos;
+    }
+
+    public void start() {
+        for (DecodeThread worker : workers) {
+            worker.start();
+        }
+    }
+
+    /**
+     * @return the binarizer strategy shared by all workers, or null if they use the engine's
+     * default.
+     */
+    public BinarizerStrategy getBinarizerStrategy() {
+        return binarizerStrategy;
+    }
+
+    /**
+     * @return the gate shared by all workers, or null if frames are not scored.
+     */
+    public FrameQualityGate getFrameQualityGate() {
+        return frameQualityGate;
+    }
+
+    /**
+     * @return whether each worker tracks the barcode's position with its own {@link RegionTracker},
+     * rather than always decoding whole frames.
+     */
+    public boolean isRegionTracking() {
+        return regionTracking;
+    }
+
+    /**
+     * @return the ladder of hints shared by all workers, or null if they always use the full hints.
+     */
+    public HintEscalation getHintEscalation() {
+        return hintEscalation;
+    }
+
+    /**
+     * @return whether workers report every barcode in a frame, with decode_multi_succeeded.
+     */
+    public boolean isMultiDecode() {
+        return multiDecode;
+    }
+
+    /**
+     * @return whether workers decode large frames at half resolution first.
+     */
+    public boolean isPyramidDecode() {
+        return pyramidDecode;
+    }
+
+    /**
+     * @return when workers also look for light codes on a dark background.
+     */
+    public InvertedDecode getInvertedDecode() {
+        return invertedDecode;
+    }
+
+    /**
+     * @return the budget the worker decodes its frames within, which the pool cancels when the
+     * frame goes stale.
+     */
+    DecodeBudget getBudget(int index) {
+        return budgets[index];
+    }
+
+    /**
+     * @return how long a worker may spend on one frame, or 0 for no limit.
+     */
+    public long getDecodeBudgetNanos() {
+        return decodeBudgetNanos;
+    }
+
+    /**
+     * @return whether workers attach a thumbnail of the decoded crop to their results.
+     */
+    public boolean isResultThumbnail() {
+        return resultThumbnail;
+    }
+
+    public int size() {
+        return workers.length;
+    }
+
+    public boolean hasIdleWorker() {
+        for (boolean b : busy) {
+            if (!b) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Hands a preview frame to an idle worker.
+     *
+     * @param frameNanos {@link System#nanoTime()} when the frame arrived.
+     * @return {@code false} if every worker is busy, in which case the frame is dropped.
+     */
+    public boolean dispatch(byte[] data, int width, int height, long frameNanos) {
+        for (int i = 0; i < workers.length; i++) {
+            if (!busy[i]) {
+                busy[i] = true;
+                dispatchGeneration[i] = generation;
+                this.frameNanos[i] = frameNanos;
+                Message.obtain(workers[i].getHandler(), R.id.decode, width, height, data).sendToTarget();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when the frame last dispatched to the worker arrived.
+     */
+    public long getFrameNanos(int index) {
+        return frameNanos[index];
+    }
+
+    /**
+     * @return whether the frame last dispatched to the worker is past the deadline.
+     */
+    boolean isExpired(int index, long now) {
+        return frameDeadlineNanos > 0L && now - frameNanos[index] > frameDeadlineNanos;
+    }
+
+    /**
+     * Called by a worker right before it sends a result.
+     */
+    void setResultNanos(int index, long nanos) {
+        resultNanos[index] = nanos;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when the worker sent its last result.
+     */
+    public long getResultNanos(int index) {
+        return resultNanos[index];
+    }
+
+    /**
+     * Marks a worker idle again once its decode_succeeded or decode_failed message arrives.
+     *
+     * @param index the worker index, as sent in the result message's arg1.
+     */
+    public void release(int index) {
+        if (index >= 0 && index < busy.length) {
+            busy[index] = false;
+        }
+    }
+
+    /**
+     * Called once a frame has decoded. Frames already handed to other workers become stale: those
+     * not yet started are skipped, and those running stop at their next budget check.
+     */
+    public void cancelInFlight() {
+        generation++;
+        for (DecodeBudget budget : budgets) {
+            budget.cancel();
+        }
+    }
+
+    /**
+     * @return whether the frame last dispatched to this worker still belongs to the current scan.
+     */
+    public boolean isCurrent(int index) {
+        return dispatchGeneration[index] == generation;
+    }
+
+    /**
+     * Stops all workers, waiting at most {@code timeoutMs} in total for them to finish.
+     */
+    public void quit(long timeoutMs) {
+        cancelInFlight();
+        if (hintEscalation != null) {
+            Log.i(TAG, String.valueOf(hintEscalation));
+        }
+        for (DecodeThread worker : workers) {
+            Message.obtain(worker.getHandler(), R.id.quit).sendToTarget();
+        }
+        long deadline = SystemClock.uptimeMillis() + timeoutMs;
+        for (DecodeThread worker : workers) {
+            long remaining = deadline - SystemClock.uptimeMillis();
+            if (remaining <= 0L) {
+                break;
+            }
+            try {
+                worker.join(remaining);
+            } catch (InterruptedException e) {
+                // continue
+            }
+        }
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.rhino.zxing.decode;
+
+/**
+ * How a {@link FrameScheduler} deals with preview frames that arrive while every decode worker is
+ * busy.
+ */
+public enum FramePolicy {
+
+    /**
+     * Keep only the newest frame waiting; an older waiting frame is dropped when a new one
+     * arrives. Workers always start on the freshest scene.
+     */
+    LATEST_ONLY,
+
+    /**
+     * Keep up to the queue capacity of frames waiting, dropping the oldest when full, so bursts
+     * are smoothed over at the cost of some latency.
+     */
+    BOUNDED_QUEUE,
+
+    /**
+     * Take at most one frame per sample interval, keeping only the newest, to save CPU and
+     * battery when fast reaction is not needed.
+     */
+    FIXED_RATE
+
+}
@@ -0,0 +1,224 @@
+package com.rhino.zxing.decode;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which preview frames reach the decode workers. Frames that arrive are queued according
+ * to a {@link FramePolicy}, handed out to idle workers as they free up, and discarded if they
+ * are older than the deadline by the time a worker gets to them. The deadline only applies before
+ * decoding: a barcode found in a frame is always delivered, however long its decode took, since
+ * dropping it would cost the user a scan.
+ *
+ * <p>Frame times are {@link System#nanoTime()} when the camera delivered the frame. Not thread
+ * safe; used on the thread of {@code CaptureActivityHandler}.</p>
+ */
+public final class FrameScheduler {
+
+    /**
+     * Gives a dropped frame's buffer back to the camera.
+     */
+    public interface FrameReleaser {
+        void release(byte[] data);
+    }
+
+    private final FramePolicy policy;
+    private final long sampleIntervalNanos;
+    private final long deadlineNanos;
+
+    // A ring of waiting frames, oldest at head.
+    private final byte[][] frames;
+    private final int[] widths;
+    private final int[] heights;
+    private final long[] frameNanos;
+    private int head;
+    private int count;
+    private long lastAcceptedNanos = Long.MIN_VALUE;
+
+    private long offeredCount;
+    private long dispatchedCount;
+    private long replacedCount;
+    private long sampledOutCount;
+    private long expiredCount;
+
+    /**
+     * Keeps the newest frame only, and drops frames older than {@code deadlineMs} before decoding.
+     */
+    public FrameScheduler(long deadlineMs) {
+        this(FramePolicy.LATEST_ONLY, 1, 0L, deadlineMs);
+    }
+
+    /**
+     * @param policy how to deal with frames that arrive while every worker is busy.
+     * @param queueCapacity how many frames may wait with {@link FramePolicy#BOUNDED_QUEUE}; the
+     *                      other policies keep one.
+     * @param sampleIntervalMs minimum time between accepted frames with
+     *                         {@link FramePolicy#FIXED_RATE}.
+     * @param deadlineMs age past which a frame is not decoded; 0 for none.
+     */
+    public FrameScheduler(FramePolicy policy, int queueCapacity, long sampleIntervalMs, long deadlineMs) {
+        if (policy == FramePolicy.BOUNDED_QUEUE && queueCapacity < 1) {
+            throw new IllegalArgumentException("Bad queue capacity: " + queueCapacity);
+        }
+        int capacity = policy == FramePolicy.BOUNDED_QUEUE ? queueCapacity : 1;
+        this.policy = policy;
+        this.sampleIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, sampleIntervalMs));
+        this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, deadlineMs));
+        frames = new byte[capacity][];
+        widths = new int[capacity];
+        heights = new int[capacity];
+        frameNanos = new long[capacity];
+    }
+
+    /**
+     * @return how long to wait before asking the camera for another frame; 0 to ask now.
+     */
+    public long getRequestDelayNanos(long now) {
+        if (policy != FramePolicy.FIXED_RATE || lastAcceptedNanos == Long.MIN_VALUE) {
+            return 0L;
+        }
+        return Math.max(0L, lastAcceptedNanos + sampleIntervalNanos - now);
+    }
+
+    /**
+     * Queues a frame the camera delivered. Frames displaced by it, or arriving too soon for a
+     * fixed rate, go back through {@code releaser}.
+     */
+    public void offer(byte[] data, int width, int height, long nanos, FrameReleaser releaser) {
+        offeredCount++;
+        if (policy == FramePolicy.FIXED_RATE && lastAcceptedNanos != Long.MIN_VALUE
+                && nanos - lastAcceptedNanos < sampleIntervalNanos) {
+            sampledOutCount++;
+            releaser.release(data);
+            return;
+        }
+        lastAcceptedNanos = nanos;
+        if (count == frames.length) {
+            replacedCount++;
+            releaser.release(frames[head]);
+            frames[head] = null;
+            head = (head + 1) % frames.length;
+            count--;
+        }
+        int tail = (head + count) % frames.length;
+        frames[tail] = data;
+        widths[tail] = width;
+        heights[tail] = height;
+        frameNanos[tail] = nanos;
+        count++;
+    }
+
+    /**
+     * Hands waiting frames to idle workers in order of arrival, releasing those that have expired
+     * on the way.
+     *
+     * @return number of frames handed out.
+     */
+    public int dispatch(DecodeThreadPool pool, long now, FrameReleaser releaser) {
+        int dispatched = 0;
+        while (count > 0 && pool.hasIdleWorker()) {
+            byte[] data = frames[head];
+            long nanos = frameNanos[head];
+            int width = widths[head];
+            int height = heights[head];
+            frames[head] = null;
+            head = (head + 1) % frames.length;
+            count--;
+            if (isExpired(nanos, now)) {
+                expiredCount++;
+                releaser.release(data);
+            } else if (pool.dispatch(data, width, height, nanos)) {
+                dispatchedCount++;
+                dispatched++;
+            } else {
+                releaser.release(data);
+            }
+        }
+        return dispatched;
+    }
+
+    /**
+     * Releases every waiting frame, as when a result has been delivered or scanning stops.
+     */
+    public void clear(FrameReleaser releaser) {
+        while (count > 0) {
+            releaser.release(frames[head]);
+            frames[head] = null;
+            head = (head + 1) % frames.length;
+            count--;
+        }
+        lastAcceptedNanos = Long.MIN_VALUE;
+    }
+
+    /**
+     * @return whether a frame delivered at {@code frameNanos} is past the deadline.
+     */
+    public boolean isExpired(long frameNanos, long now) {
+        return deadlineNanos > 0L && now - frameNanos > deadlineNanos;
+    }
+
+    /**
+     * Counts a frame a worker skipped because it expired while waiting for the worker.
+     */
+    public void onFrameExpired() {
+        expiredCount++;
+    }
+
+    public FramePolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return how many frames may wait for a worker.
+     */
+    public int getCapacity() {
+        return frames.length;
+    }
+
+    /**
+     * @return the deadline in nanoseconds, or 0 if frames never expire.
+     */
+    public long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+
+    public int getWaitingCount() {
+        return count;
+    }
+
+    public long getOfferedCount() {
+        return offeredCount;
+    }
+
+    public long getDispatchedCount() {
+        return dispatchedCount;
+    }
+
+    /**
+     * @return frames dropped because newer ones arrived while they waited.
+     */
+    public long getReplacedCount() {
+        return replacedCount;
+    }
+
+    /**
+     * @return frames dropped because they arrived within the sample interval.
+     */
+    public long getSampledOutCount() {
+        return sampledOutCount;
+    }
+
+    /**
+     * @return frames dropped because they were older than the deadline before being decoded.
+     */
+    public long getExpiredCount() {
+        return expiredCount;
+    }
+
+    @Override
+    public String toString() {
+        return "FrameScheduler{" + policy + ", offered=" + offeredCount + ", dispatched=" + dispatchedCount +
+                ", replaced=" + replacedCount + ", sampledOut=" + sampledOutCount +
+                ", expired=" + expiredCount + '}';
+    }
+
+}
@@ -25,21 +25,15 @@ import android.support.annotation.NonNull;
 import android.text.TextPaint;
 import android.text.TextUtils;
 
+import com.rhino.zxing.decode.BarcodeDecoder;
 import com.rhino.zxing.decode.DecodeFormatManager;
+import com.rhino.zxing.decode.DecodeOutcome;
 import com.google.zxing.BarcodeFormat;
-import com.google.zxing.BinaryBitmap;
 import com.google.zxing.DecodeHintType;
 import com.google.zxing.EncodeHintType;
-import com.google.zxing.MultiFormatReader;
 import com.google.zxing.MultiFormatWriter;
-import com.google.zxing.NotFoundException;
-import com.google.zxing.RGBLuminanceSource;
-import com.google.zxing.Result;
 import com.google.zxing.WriterException;
 import com.google.zxing.common.BitMatrix;
-import com.google.zxing.common.GlobalHistogramBinarizer;
-import com.google.zxing.common.HybridBinarizer;
-import com.google.zxing.qrcode.QRCodeReader;
 import com.google.zxing.qrcode.QRCodeWriter;
 import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
 
@@ -189,32 +183,12 @@ public class CodeUtils {
      * @return
      */
     public static String parseQRCode(String bitmapPath, Map<DecodeHintType,?> hints){
-        try {
-            QRCodeReader reader = new QRCodeReader();
-
-            Result result = null;
-            RGBLuminanceSource source = getRGBLuminanceSource(compressBitmap(bitmapPath));
-            if (source != null) {
-                BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
-                try {
-                    result = reader.decode(bitmap,hints);
-                } catch (Exception e) {//解析失败则通过GlobalHistogramBinarizer 再试一次
-                    BinaryBitmap bitmap1 = new BinaryBitmap(new GlobalHistogramBinarizer(source));
-                    try {
-                        result = reader.decode(bitmap1);
-                    } catch (NotFoundException ne) {
-
-                    }
-                } finally {
-                    reader.reset();
-                }
-            }
-            return result.getText();
-        } catch (Exception e) {
-            e.printStackTrace();
-
+        Map<DecodeHintType,Object> qrHints = new HashMap<>();
+        if (hints != null) {
+            qrHints.putAll(hints);
         }
-        return null;
+        qrHints.put(DecodeHintType.POSSIBLE_FORMATS, DecodeFormatManager.QR_CODE_FORMATS);
+        return parseCode(bitmapPath,qrHints);
     }
 
     /**
@@ -243,32 +217,23 @@ public class CodeUtils {
      * @return
      */
     public static String parseCode(String bitmapPath, Map<DecodeHintType,Object> hints){
-
-        try {
-            MultiFormatReader reader = new MultiFormatReader();
-            reader.setHints(hints);
-            Result result = null;
-            RGBLuminanceSource source = getRGBLuminanceSource(compressBitmap(bitmapPath));
-            if (source != null) {
-                BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
-                try {
-                    result = reader.decodeWithState(bitmap);
-                } catch (Exception e) {//解析失败则通过GlobalHistogramBinarizer 再试一次
-                    BinaryBitmap bitmap1 = new BinaryBitmap(new GlobalHistogramBinarizer(source));
-                    try {
-                        result = reader.decodeWithState(bitmap1);
-                    } catch (NotFoundException ne) {
-
-                    }
-                } finally {
-                    reader.reset();
-                }
-            }
-            return result.getText();
-        } catch (Exception e) {
-            e.printStackTrace();
+        Bitmap bitmap = compressBitmap(bitmapPath);
+        if (bitmap == null) {
+            return null;
         }
-        return null;
+        DecodeOutcome outcome = decodeBitmap(bitmap, hints);
+        return outcome.isFound() ? outcome.getResult().getText() : null;
+    }
+
+    /**
+     * 解析图片中的一维码/二维码，由不依赖 Android 的 {@link BarcodeDecoder} 完成
+     * @param bitmap
+     * @param hints 解析编码类型
+     * @return 解析结果，失败原因通过 {@link DecodeOutcome#getStatus()} 给出，不抛出异常
+     */
+    public static DecodeOutcome decodeBitmap(@NonNull Bitmap bitmap, Map<DecodeHintType,?> hints){
+        //HybridBinarizer 未找到时由引擎通过 GlobalHistogramBinarizer 再试一次
+        return new BarcodeDecoder(hints).decodeArgb(getPixels(bitmap), bitmap.getWidth(), bitmap.getHeight());
     }
 
 
@@ -304,17 +269,17 @@ public class CodeUtils {
     }
 
     /**
-     * 获取RGBLuminanceSource
+     * 获取图片的ARGB像素
      * @param bitmap
      * @return
      */
-    private static RGBLuminanceSource getRGBLuminanceSource(@NonNull Bitmap bitmap){
+    private static int[] getPixels(@NonNull Bitmap bitmap){
         int width = bitmap.getWidth();
         int height = bitmap.getHeight();
 
         int[] pixels = new int[width * height];
         bitmap.getPixels(pixels, 0, bitmap.getWidth(), 0, 0, bitmap.getWidth(), bitmap.getHeight());
-        return new RGBLuminanceSource(width, height, pixels);
+        return pixels;
 
     }
 
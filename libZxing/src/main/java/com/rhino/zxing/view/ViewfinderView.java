@@ -101,7 +101,8 @@ public final class ViewfinderView extends View {
     private float cornerLineHeight;
 
 
-    private List<ResultPoint> possibleResultPoints;
+    // Added to by every decode thread, under the list's lock; swapped for a new list on each draw.
+    private volatile List<ResultPoint> possibleResultPoints;
     private List<ResultPoint> lastPossibleResultPoints;
 
     public enum TextLocation {
@@ -349,8 +350,12 @@ public final class ViewfinderView extends View {
 
         List<ResultPoint> currentPossible = possibleResultPoints;
         List<ResultPoint> currentLast = lastPossibleResultPoints;
+        boolean empty;
+        synchronized (currentPossible) {
+            empty = currentPossible.isEmpty();
+        }
 
-        if (currentPossible.isEmpty()) {
+        if (empty) {
             lastPossibleResultPoints = null;
         } else {
             possibleResultPoints = new ArrayList<>(5);
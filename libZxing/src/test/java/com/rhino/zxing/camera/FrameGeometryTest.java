@@ -0,0 +1,62 @@
+package com.rhino.zxing.camera;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameGeometryTest {
+
+    // A 1920x1080 preview, scaled down by 10.
+    private static final int WIDTH = 192;
+    private static final int HEIGHT = 108;
+
+    @Test
+    public void landscapeFrameIsCroppedToCentredSquare() {
+        byte[] frame = frame();
+        RotatedYUVLuminanceSource source = FrameGeometry.buildCentredSquare(frame, WIDTH, HEIGHT, 0);
+        assertEquals(HEIGHT, source.getWidth());
+        assertEquals(HEIGHT, source.getHeight());
+        byte[] matrix = source.getMatrix();
+        int left = (WIDTH - HEIGHT) / 2;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < HEIGHT; x++) {
+                assertEquals(frame[y * WIDTH + left + x], matrix[y * HEIGHT + x]);
+            }
+        }
+    }
+
+    @Test
+    public void portraitFrameIsCroppedToCentredSquareThenRotated() {
+        byte[] frame = frame();
+        RotatedYUVLuminanceSource source = FrameGeometry.buildCentredSquare(frame, WIDTH, HEIGHT, 90);
+        // Not the 108x150 from row 42 of the upright frame which the old rotate-then-crop path
+        // read, having passed the crop's right and bottom edges as its width and height.
+        assertEquals(HEIGHT, source.getWidth());
+        assertEquals(HEIGHT, source.getHeight());
+        byte[] matrix = source.getMatrix();
+        int left = (WIDTH - HEIGHT) / 2;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < HEIGHT; x++) {
+                // Turned clockwise: the upright row y is frame column left + y, read bottom up.
+                assertEquals(frame[(HEIGHT - 1 - x) * WIDTH + left + y], matrix[y * HEIGHT + x]);
+            }
+        }
+    }
+
+    @Test
+    public void squareFrameIsKeptWhole() {
+        byte[] frame = new byte[64 * 64 * 3 / 2];
+        RotatedYUVLuminanceSource source = FrameGeometry.buildCentredSquare(frame, 64, 64, 270);
+        assertEquals(64, source.getWidth());
+        assertEquals(64, source.getHeight());
+    }
+
+    private static byte[] frame() {
+        byte[] frame = new byte[WIDTH * HEIGHT * 3 / 2];
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            frame[i] = (byte) (i * 31 % 251);
+        }
+        return frame;
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.rhino.zxing.camera;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PreviewBufferRingTest {
+
+    @Test
+    public void releasedBuffersAreReused() {
+        PreviewBufferRing ring = new PreviewBufferRing(2, 16);
+        byte[] first = ring.acquire();
+        assertTrue(ring.onDelivered(first));
+        ring.release(first);
+        ring.acquire();
+        ring.acquire();
+        assertEquals(2, ring.getAllocationCount());
+        assertEquals(3, ring.getReuseCount());
+        assertEquals(0, ring.getFreeCount());
+    }
+
+    @Test
+    public void emptyRingAllocates() {
+        PreviewBufferRing ring = new PreviewBufferRing(1, 16);
+        ring.acquire();
+        byte[] extra = ring.acquire();
+        assertEquals(16, extra.length);
+        assertEquals(2, ring.getAllocationCount());
+        assertTrue(ring.onDelivered(extra));
+        ring.release(extra);
+        assertEquals(1, ring.getFreeCount());
+    }
+
+    @Test
+    public void doubleReleaseIsIgnored() {
+        PreviewBufferRing ring = new PreviewBufferRing(2, 16);
+        byte[] buffer = ring.acquire();
+        assertTrue(ring.onDelivered(buffer));
+        ring.release(buffer);
+        ring.release(buffer);
+        assertEquals(2, ring.getFreeCount());
+        assertNotSame(ring.acquire(), ring.acquire());
+    }
+
+    @Test
+    public void undeliveredAndForeignBuffersAreIgnored() {
+        PreviewBufferRing ring = new PreviewBufferRing(1, 16);
+        byte[] queued = ring.acquire();
+        ring.release(queued);
+        ring.release(new byte[16]);
+        ring.release(null);
+        assertEquals(0, ring.getFreeCount());
+        assertFalse(ring.onDelivered(new byte[16]));
+    }
+
+    @Test
+    public void queuedBuffersAreReclaimed() {
+        PreviewBufferRing ring = new PreviewBufferRing(3, 16);
+        byte[] decoding = ring.acquire();
+        assertTrue(ring.onDelivered(decoding));
+        byte[] queued = ring.acquire();
+        ring.reclaimQueued();
+        assertEquals(1, ring.getReclaimCount());
+        assertEquals(2, ring.getFreeCount());
+        // A late frame in a reclaimed buffer is dropped.
+        assertFalse(ring.onDelivered(queued));
+        // The frame being decoded still comes back.
+        ring.release(decoding);
+        assertEquals(3, ring.getFreeCount());
+        assertEquals(3, ring.getAllocationCount());
+    }
+
+}
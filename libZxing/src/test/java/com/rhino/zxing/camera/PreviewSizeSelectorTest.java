@@ -0,0 +1,69 @@
+package com.rhino.zxing.camera;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PreviewSizeSelectorTest {
+
+    private static final long MS = 1000000L;
+
+    @Test
+    public void requiredSideGrowsAsFramingRectShrinks() {
+        PreviewSizeSelector selector = selector(0L);
+        // 57 modules of 3 px across 40% of the framing rect.
+        assertEquals(713, selector.getRequiredCropSide(0.6f));
+        assertEquals(855, selector.getRequiredCropSide(0.5f));
+    }
+
+    @Test
+    public void smallestResolvingSizeWins() {
+        PreviewSizeSelector selector = selector(0L);
+        int[] sides = {1080, 480, 720, 960};
+        assertEquals(2, selector.chooseCropSide(sides, 0.6f));
+        assertEquals(3, selector.chooseCropSide(sides, 0.5f));
+        assertEquals(-1, selector.chooseCropSide(new int[0], 0.5f));
+    }
+
+    @Test
+    public void largestAffordableSizeWhenNoneResolves() {
+        int[] sides = {480, 600};
+        // 40 ns per pixel: 9.2 ms for 480, 14.4 ms for 600.
+        assertEquals(1, selector(0L).chooseCropSide(sides, 0.5f));
+        assertEquals(1, selector(15 * MS).chooseCropSide(sides, 0.5f));
+        assertEquals(0, selector(10 * MS).chooseCropSide(sides, 0.5f));
+        assertEquals(-1, selector(5 * MS).chooseCropSide(sides, 0.5f));
+    }
+
+    @Test
+    public void measuredCostReplacesEstimate() {
+        PreviewSizeSelector selector = selector(10 * MS);
+        assertEquals(PreviewSizeSelector.DEFAULT_NANOS_PER_PIXEL, selector.getNanosPerPixel(), 0.0f);
+        assertEquals(0, selector.chooseCropSide(new int[] {480, 600}, 0.5f));
+
+        selector.recordDecodeNanos(9 * MS, 600);
+        assertEquals(25.0f, selector.getNanosPerPixel(), 0.001f);
+        assertEquals(9 * MS, selector.estimateDecodeNanos(600), MS / 100);
+        assertEquals(1, selector.chooseCropSide(new int[] {480, 600}, 0.5f));
+
+        // Later measurements are averaged in.
+        selector.recordDecodeNanos(18 * MS, 600);
+        assertEquals(37.5f, selector.getNanosPerPixel(), 0.001f);
+        assertEquals(0, selector.chooseCropSide(new int[] {480, 600}, 0.5f));
+    }
+
+    @Test
+    public void emptyMeasurementsAreIgnored() {
+        PreviewSizeSelector selector = selector(0L);
+        selector.recordDecodeNanos(0L, 600);
+        selector.recordDecodeNanos(9 * MS, 0);
+        assertEquals(PreviewSizeSelector.DEFAULT_NANOS_PER_PIXEL, selector.getNanosPerPixel(), 0.0f);
+    }
+
+    private static PreviewSizeSelector selector(long maxDecodeNanos) {
+        return new PreviewSizeSelector(PreviewSizeSelector.DEFAULT_TARGET_MODULES,
+                PreviewSizeSelector.DEFAULT_MIN_MODULE_PIXELS, PreviewSizeSelector.DEFAULT_MIN_CODE_FRACTION,
+                maxDecodeNanos);
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.rhino.zxing.decode;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * The queueing side of {@link FrameScheduler}; handing frames to workers needs a running
+ * {@link DecodeThreadPool}.
+ */
+public class FrameSchedulerTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1L);
+
+    private final List<byte[]> released = new ArrayList<>();
+    private final FrameScheduler.FrameReleaser releaser = new FrameScheduler.FrameReleaser() {
+        @Override
+        public void release(byte[] data) {
+            released.add(data);
+        }
+    };
+
+    @Test
+    public void latestOnlyKeepsNewestFrame() {
+        FrameScheduler scheduler = new FrameScheduler(300L);
+        byte[] first = new byte[1];
+        byte[] second = new byte[1];
+        scheduler.offer(first, 640, 480, 0L, releaser);
+        scheduler.offer(second, 640, 480, 10 * MS, releaser);
+        assertEquals(1, scheduler.getWaitingCount());
+        assertEquals(1, released.size());
+        assertSame(first, released.get(0));
+        assertEquals(2, scheduler.getOfferedCount());
+        assertEquals(1, scheduler.getReplacedCount());
+    }
+
+    @Test
+    public void boundedQueueDropsOldestWhenFull() {
+        FrameScheduler scheduler = new FrameScheduler(FramePolicy.BOUNDED_QUEUE, 2, 0L, 0L);
+        byte[][] frames = {new byte[1], new byte[1], new byte[1], new byte[1]};
+        for (int i = 0; i < frames.length; i++) {
+            scheduler.offer(frames[i], 640, 480, i * MS, releaser);
+        }
+        assertEquals(2, scheduler.getCapacity());
+        assertEquals(2, scheduler.getWaitingCount());
+        assertEquals(2, released.size());
+        assertSame(frames[0], released.get(0));
+        assertSame(frames[1], released.get(1));
+        assertEquals(2, scheduler.getReplacedCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void boundedQueueNeedsCapacity() {
+        new FrameScheduler(FramePolicy.BOUNDED_QUEUE, 0, 0L, 0L);
+    }
+
+    @Test
+    public void fixedRateSamplesFrames() {
+        FrameScheduler scheduler = new FrameScheduler(FramePolicy.FIXED_RATE, 1, 200L, 0L);
+        assertEquals(0L, scheduler.getRequestDelayNanos(0L));
+        byte[] accepted = new byte[1];
+        byte[] early = new byte[1];
+        scheduler.offer(accepted, 640, 480, 1000 * MS, releaser);
+        assertEquals(150 * MS, scheduler.getRequestDelayNanos(1050 * MS));
+        scheduler.offer(early, 640, 480, 1100 * MS, releaser);
+        assertEquals(1, released.size());
+        assertSame(early, released.get(0));
+        assertEquals(1, scheduler.getSampledOutCount());
+        assertEquals(0L, scheduler.getRequestDelayNanos(1200 * MS));
+        scheduler.offer(new byte[1], 640, 480, 1200 * MS, releaser);
+        assertEquals(1, scheduler.getSampledOutCount());
+        assertEquals(1, scheduler.getReplacedCount());
+    }
+
+    @Test
+    public void otherPoliciesNeverDelayRequests() {
+        FrameScheduler scheduler = new FrameScheduler(FramePolicy.LATEST_ONLY, 1, 200L, 0L);
+        scheduler.offer(new byte[1], 640, 480, 0L, releaser);
+        assertEquals(0L, scheduler.getRequestDelayNanos(MS));
+    }
+
+    @Test
+    public void clearReleasesWaitingFrames() {
+        FrameScheduler scheduler = new FrameScheduler(FramePolicy.BOUNDED_QUEUE, 3, 0L, 0L);
+        scheduler.offer(new byte[1], 640, 480, 0L, releaser);
+        scheduler.offer(new byte[1], 640, 480, MS, releaser);
+        scheduler.clear(releaser);
+        assertEquals(0, scheduler.getWaitingCount());
+        assertEquals(2, released.size());
+    }
+
+    @Test
+    public void framesExpireAfterDeadline() {
+        FrameScheduler scheduler = new FrameScheduler(300L);
+        assertEquals(300 * MS, scheduler.getDeadlineNanos());
+        assertFalse(scheduler.isExpired(0L, 300 * MS));
+        assertTrue(scheduler.isExpired(0L, 300 * MS + 1L));
+        scheduler.onFrameExpired();
+        assertEquals(1, scheduler.getExpiredCount());
+    }
+
+    @Test
+    public void noDeadlineNeverExpires() {
+        FrameScheduler scheduler = new FrameScheduler(0L);
+        assertEquals(0L, scheduler.getDeadlineNanos());
+        assertFalse(scheduler.isExpired(0L, Long.MAX_VALUE / 2));
+    }
+
+}
@@ -0,0 +1,291 @@
+package com.rhino.zxing.camera;
+
+/*
+ * Copyright (C) 2009 ZXing authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import com.google.zxing.LuminanceSource;
+
+/**
+ * A {@link LuminanceSource} over the Y plane of a camera preview frame, like
+ * {@link com.google.zxing.PlanarYUVLuminanceSource}, which additionally presents a crop of the
+ * frame rotated clockwise by 0, 90, 180 or 270 degrees. The preview buffer is read in place:
+ * {@link #getRow(int, byte[])} and {@link #getMatrix()} map each rotated coordinate back to the
+ * original landscape frame, so no rotated copy of the frame is ever made. Likewise
+ * {@link #invert()} returns a view which inverts pixels as they are read.
+ */
+public final class RotatedYUVLuminanceSource extends LuminanceSource {
+
+    private static final int THUMBNAIL_SCALE_FACTOR = 2;
+
+    private final byte[] yuvData;
+    private final int dataWidth;
+    private final int dataHeight;
+    private final int left;
+    private final int top;
+    private final int cropWidth;
+    private final int cropHeight;
+    private final int rotation;
+    // XORed into every pixel read: 0, or 0xff for an inverted view.
+    private final int invertMask;
+
+    // Offset of rotated pixel (0, 0) in yuvData, and the offset steps for x + 1 and y + 1.
+    private final int origin;
+    private final int xStep;
+    private final int yStep;
+
+    /**
+     * @param yuvData The preview frame, in the camera's orientation.
+     * @param dataWidth The width of the preview frame.
+     * @param dataHeight The height of the preview frame.
+     * @param left Left edge of the crop, in preview frame coordinates.
+     * @param top Top edge of the crop, in preview frame coordinates.
+     * @param width Width of the crop, in preview frame coordinates.
+     * @param height Height of the crop, in preview frame coordinates.
+     * @param rotation Clockwise rotation applied to the crop: 0, 90, 180 or 270.
+     */
+    public RotatedYUVLuminanceSource(byte[] yuvData,
+                                     int dataWidth,
+                                     int dataHeight,
+                                     int left,
+                                     int top,
+                                     int width,
+                                     int height,
+                                     int rotation) {
+        this(yuvData, dataWidth, dataHeight, left, top, width, height, rotation, 0);
+    }
+
+    private RotatedYUVLuminanceSource(byte[] yuvData,
+                                      int dataWidth,
+                                      int dataHeight,
+                                      int left,
+                                      int top,
+                                      int width,
+                                      int height,
+                                      int rotation,
+                                      int invertMask) {
+        super(rotation % 180 == 0 ? width : height, rotation % 180 == 0 ? height : width);
+
+        if (left + width > dataWidth || top + height > dataHeight) {
+            throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+        }
+
+        this.yuvData = yuvData;
+        this.dataWidth = dataWidth;
+        this.dataHeight = dataHeight;
+        this.left = left;
+        this.top = top;
+        this.cropWidth = width;
+        this.cropHeight = height;
+        this.rotation = rotation;
+        this.invertMask = invertMask;
+
+        switch (rotation) {
+            case 0:
+                origin = top * dataWidth + left;
+                xStep = 1;
+                yStep = dataWidth;
+                break;
+            case 90:
+                origin = (top + height - 1) * dataWidth + left;
+                xStep = -dataWidth;
+                yStep = 1;
+                break;
+            case 180:
+                origin = (top + height - 1) * dataWidth + left + width - 1;
+                xStep = -1;
+                yStep = -dataWidth;
+                break;
+            case 270:
+                origin = top * dataWidth + left + width - 1;
+                xStep = dataWidth;
+                yStep = -1;
+                break;
+            default:
+                throw new IllegalArgumentException("Bad rotation: " + rotation);
+        }
+    }
+
+    @Override
+    public byte[] getRow(int y, byte[] row) {
+        if (y < 0 || y >= getHeight()) {
+            throw new IllegalArgumentException("Requested row is outside the image: " + y);
+        }
+        int width = getWidth();
+        if (row == null || row.length < width) {
+            row = new byte[width];
+        }
+        int offset = origin + y * yStep;
+        if (xStep == 1 && invertMask == 0) {
+            System.arraycopy(yuvData, offset, row, 0, width);
+        } else {
+            for (int x = 0; x < width; x++) {
+                row[x] = (byte) (yuvData[offset] ^ invertMask);
+                offset += xStep;
+            }
+        }
+        return row;
+    }
+
+    @Override
+    public byte[] getMatrix() {
+        int width = getWidth();
+        int height = getHeight();
+        byte[] matrix = new byte[width * height];
+
+        if (xStep == 1 && invertMask == 0) {
+            int inputOffset = origin;
+            for (int y = 0; y < height; y++) {
+                System.arraycopy(yuvData, inputOffset, matrix, y * width, width);
+                inputOffset += yStep;
+            }
+        } else if (yStep == 1 || yStep == -1) {
+            // Each rotated column is a run of one source row: read the source sequentially and
+            // scatter into the column.
+            for (int x = 0; x < width; x++) {
+                int inputOffset = origin + x * xStep;
+                int outputOffset = x;
+                for (int y = 0; y < height; y++) {
+                    matrix[outputOffset] = (byte) (yuvData[inputOffset] ^ invertMask);
+                    inputOffset += yStep;
+                    outputOffset += width;
+                }
+            }
+        } else {
+            int outputOffset = 0;
+            for (int y = 0; y < height; y++) {
+                int inputOffset = origin + y * yStep;
+                for (int x = 0; x < width; x++) {
+                    matrix[outputOffset++] = (byte) (yuvData[inputOffset] ^ invertMask);
+                    inputOffset += xStep;
+                }
+            }
+        }
+        return matrix;
+    }
+
+    @Override
+    public boolean isCropSupported() {
+        return true;
+    }
+
+    @Override
+    public LuminanceSource crop(int left, int top, int width, int height) {
+        // Map the requested rectangle, given in rotated coordinates, back to the preview frame.
+        int sourceLeft;
+        int sourceTop;
+        int sourceWidth = rotation % 180 == 0 ? width : height;
+        int sourceHeight = rotation % 180 == 0 ? height : width;
+        switch (rotation) {
+            case 0:
+                sourceLeft = left;
+                sourceTop = top;
+                break;
+            case 90:
+                sourceLeft = top;
+                sourceTop = cropHeight - left - width;
+                break;
+            case 180:
+                sourceLeft = cropWidth - left - width;
+                sourceTop = cropHeight - top - height;
+                break;
+            default:
+                sourceLeft = cropWidth - top - height;
+                sourceTop = left;
+                break;
+        }
+        return new RotatedYUVLuminanceSource(yuvData, dataWidth, dataHeight,
+                this.left + sourceLeft, this.top + sourceTop, sourceWidth, sourceHeight, rotation, invertMask);
+    }
+
+    @Override
+    public boolean isRotateSupported() {
+        return true;
+    }
+
+    @Override
+    public LuminanceSource rotateCounterClockwise() {
+        return new RotatedYUVLuminanceSource(yuvData, dataWidth, dataHeight,
+                left, top, cropWidth, cropHeight, (rotation + 270) % 360, invertMask);
+    }
+
+    @Override
+    public LuminanceSource invert() {
+        return new RotatedYUVLuminanceSource(yuvData, dataWidth, dataHeight,
+                left, top, cropWidth, cropHeight, rotation, invertMask ^ 0xff);
+    }
+
+    public boolean isInverted() {
+        return invertMask != 0;
+    }
+
+    /**
+     * @return the same crop and rotation at half the resolution, each pixel the average of 2x2.
+     * The frame is read in its own row order, which is far faster than reading rotated rows.
+     */
+    public RotatedYUVLuminanceSource downsample() {
+        int width = cropWidth / 2;
+        int height = cropHeight / 2;
+        byte[] pixels = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            int upper = (top + y * 2) * dataWidth + left;
+            int lower = upper + dataWidth;
+            int offset = y * width;
+            for (int x = 0; x < width; x++, upper += 2, lower += 2) {
+                int sum = (yuvData[upper] & 0xff) + (yuvData[upper + 1] & 0xff) +
+                        (yuvData[lower] & 0xff) + (yuvData[lower + 1] & 0xff);
+                pixels[offset + x] = (byte) ((sum + 2) >> 2);
+            }
+        }
+        return new RotatedYUVLuminanceSource(pixels, width, height, 0, 0, width, height, rotation, invertMask);
+    }
+
+    /**
+     * @return the crop as it looks on screen, not inverted even for an inverted view.
+     */
+    public int[] renderThumbnail() {
+        int width = getThumbnailWidth();
+        int height = getThumbnailHeight();
+        int[] pixels = new int[width * height];
+        int stepX = xStep * THUMBNAIL_SCALE_FACTOR;
+        int stepY = yStep * THUMBNAIL_SCALE_FACTOR;
+        for (int y = 0; y < height; y++) {
+            int outputOffset = y * width;
+            int inputOffset = origin + y * stepY;
+            for (int x = 0; x < width; x++) {
+                int grey = yuvData[inputOffset] & 0xff;
+                pixels[outputOffset + x] = 0xFF000000 | (grey * 0x00010101);
+                inputOffset += stepX;
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * @return width of image from {@link #renderThumbnail()}
+     */
+    public int getThumbnailWidth() {
+        return getWidth() / THUMBNAIL_SCALE_FACTOR;
+    }
+
+    /**
+     * @return height of image from {@link #renderThumbnail()}
+     */
+    public int getThumbnailHeight() {
+        return getHeight() / THUMBNAIL_SCALE_FACTOR;
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.rhino.zxing.decode;
+
+/**
+ * Default {@link BinarizerStrategy}. It looks at the frame's contrast and brightness and at which
+ * binarizer has been decoding lately:
+ *
+ * <ul>
+ *   <li>A nearly flat histogram leaves {@link com.google.zxing.common.GlobalHistogramBinarizer}
+ *   without two peaks to separate, so such frames only get the hybrid binarizer.</li>
+ *   <li>Whichever binarizer has recently decoded most goes first; with no clear winner, dim frames
+ *   start with the global histogram and the rest with the hybrid binarizer.</li>
+ *   <li>Once the fallback has been tried often enough and hardly ever rescues a frame, it is only
+ *   tried on every {@value #PROBE_INTERVAL}th frame so the strategy notices if that changes.</li>
+ * </ul>
+ *
+ * <p>The counters cover one scan session, as {@code DecodeThreadPool} creates a new instance for
+ * each.</p>
+ */
+public final class AdaptiveBinarizerStrategy implements BinarizerStrategy {
+
+    // GlobalHistogramBinarizer needs its two peaks 1/16 of the 32 buckets apart, i.e. 16 levels;
+    // below twice that it almost never finds them.
+    private static final int MIN_GLOBAL_SPREAD = 32;
+    private static final int DARK_MEAN = 48;
+    private static final int MIN_WINS = 4;
+    private static final int MIN_FALLBACK_TRIES = 64;
+    private static final int MIN_RESCUE_PERCENT = 1;
+    private static final int PROBE_INTERVAL = 8;
+    // Recent counts are halved when they reach this, so old frames fade out.
+    private static final int HISTORY = 256;
+
+    private final int[] recentWins = new int[BinarizerType.values().length];
+    private int recentFallbacks;
+    private int recentRescues;
+
+    private final long[] wins = new long[BinarizerType.values().length];
+    private long frames;
+    private long fallbacks;
+    private long rescues;
+    private long skippedFallbacks;
+
+    @Override
+    public synchronized BinarizerPlan choose(LuminanceStatistics statistics) {
+        frames++;
+        if (statistics.getSpread() < MIN_GLOBAL_SPREAD) {
+            return BinarizerPlan.HYBRID_ONLY;
+        }
+
+        BinarizerType first;
+        int hybrid = recentWins[BinarizerType.HYBRID.ordinal()];
+        int global = recentWins[BinarizerType.GLOBAL_HISTOGRAM.ordinal()];
+        if (global >= MIN_WINS && global > 2 * hybrid) {
+            first = BinarizerType.GLOBAL_HISTOGRAM;
+        } else if (hybrid >= MIN_WINS && hybrid > 2 * global) {
+            first = BinarizerType.HYBRID;
+        } else {
+            first = statistics.getMean() < DARK_MEAN ? BinarizerType.GLOBAL_HISTOGRAM : BinarizerType.HYBRID;
+        }
+
+        boolean skipFallback = recentFallbacks >= MIN_FALLBACK_TRIES &&
+                recentRescues * 100 < recentFallbacks * MIN_RESCUE_PERCENT &&
+                frames % PROBE_INTERVAL != 0;
+        if (skipFallback) {
+            skippedFallbacks++;
+            return first == BinarizerType.HYBRID ? BinarizerPlan.HYBRID_ONLY : BinarizerPlan.GLOBAL_ONLY;
+        }
+        return first == BinarizerType.HYBRID ? BinarizerPlan.HYBRID_THEN_GLOBAL : BinarizerPlan.GLOBAL_THEN_HYBRID;
+    }
+
+    @Override
+    public synchronized void onDecoded(BinarizerPlan plan, DecodeOutcome first, DecodeOutcome second) {
+        if (first.isFound()) {
+            win(plan.getFirst());
+        } else if (second != null) {
+            fallbacks++;
+            recentFallbacks++;
+            if (second.isFound()) {
+                rescues++;
+                recentRescues++;
+                win(plan.getSecond());
+            }
+            if (recentFallbacks >= HISTORY) {
+                recentFallbacks /= 2;
+                recentRescues /= 2;
+            }
+        }
+    }
+
+    private void win(BinarizerType type) {
+        wins[type.ordinal()]++;
+        if (++recentWins[type.ordinal()] >= HISTORY) {
+            for (int i = 0; i < recentWins.length; i++) {
+                recentWins[i] /= 2;
+            }
+        }
+    }
+
+    public synchronized long getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * @return number of frames decoded by the given binarizer, whether it went first or second.
+     */
+    public synchronized long getWinCount(BinarizerType type) {
+        return wins[type.ordinal()];
+    }
+
+    /**
+     * @return number of frames on which the second binarizer was tried.
+     */
+    public synchronized long getFallbackCount() {
+        return fallbacks;
+    }
+
+    /**
+     * @return number of frames the second binarizer decoded after the first found nothing.
+     */
+    public synchronized long getRescueCount() {
+        return rescues;
+    }
+
+    /**
+     * @return number of frames on which the second binarizer was skipped as unlikely to help.
+     */
+    public synchronized long getSkippedFallbackCount() {
+        return skippedFallbacks;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "AdaptiveBinarizerStrategy{frames=" + frames +
+                ", hybridWins=" + wins[BinarizerType.HYBRID.ordinal()] +
+                ", globalWins=" + wins[BinarizerType.GLOBAL_HISTOGRAM.ordinal()] +
+                ", fallbacks=" + fallbacks + ", rescues=" + rescues +
+                ", skippedFallbacks=" + skippedFallbacks + '}';
+    }
+
+}
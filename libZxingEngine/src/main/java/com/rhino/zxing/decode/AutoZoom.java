@@ -0,0 +1,206 @@
+package com.rhino.zxing.decode;
+
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.qrcode.detector.FinderPattern;
+
+import java.util.Arrays;
+
+/**
+ * Decides when to zoom in on a code which decodes only now and then, because its modules are
+ * barely large enough at the current zoom, as with labels on a far away shelf, and when to give
+ * the zoom back once nothing is found any more.
+ *
+ * <p>The finder patterns of a decoded QR code carry the detector's estimate of the module size,
+ * in pixels of the frame crop. Only decoded results are used: the points readers report while
+ * searching include candidates in text and textures, whose sizes mean nothing. Once
+ * {@code missesToZoom} frames in a row decode nothing while the median of the estimates of the
+ * last {@value #WINDOW_MS} ms is below {@code minModulePixels}, {@link #onMissed()} asks for the
+ * zoom ratio which brings it to {@code targetModulePixels}, at most {@code maxStep} times the
+ * current one, so the code stays in view. After {@code missesToZoomOut} misses in a row it zooms
+ * back out by as much as it zoomed in, in steps of at most {@code maxStep}. Results of other
+ * formats carry no module size and are ignored.</p>
+ *
+ * <p>Only frames decoded to the end count as misses; frames skipped as stale, rejected by the
+ * quality gate or abandoned by their budget say nothing about the code. Estimates taken before a
+ * zoom change no longer hold, so they are dropped with every change.</p>
+ */
+public final class AutoZoom {
+
+    public static final float DEFAULT_MIN_MODULE_PIXELS = 3.0f;
+    public static final float DEFAULT_TARGET_MODULE_PIXELS = 4.5f;
+    public static final int DEFAULT_MISSES_TO_ZOOM = 3;
+    public static final int DEFAULT_MISSES_TO_ZOOM_OUT = 30;
+    public static final float DEFAULT_MAX_STEP = 2.0f;
+
+    private static final int MAX_SAMPLES = 16;
+    private static final long WINDOW_MS = 1000L;
+
+    private final float minModulePixels;
+    private final float targetModulePixels;
+    private final int missesToZoom;
+    private final int missesToZoomOut;
+    private final float maxStep;
+    private final float[] sizes = new float[MAX_SAMPLES];
+    private final long[] times = new long[MAX_SAMPLES];
+    private int count;
+    private int next;
+    private int misses;
+    // How far this has zoomed in since the last reset, which zooming out gives back.
+    private float zoomedBy = 1.0f;
+    private long zoomInCount;
+    private long zoomOutCount;
+
+    /**
+     * @param minModulePixels module size, in pixels of the frame crop, below which a code that
+     *                        stops decoding is zoomed in on.
+     * @param targetModulePixels module size to zoom to.
+     * @param missesToZoom frames in a row without a barcode before zooming in.
+     * @param missesToZoomOut frames in a row without a barcode before zooming back out.
+     * @param maxStep largest factor by which one change may zoom in or out.
+     */
+    public AutoZoom(float minModulePixels, float targetModulePixels, int missesToZoom,
+                    int missesToZoomOut, float maxStep) {
+        this.minModulePixels = minModulePixels;
+        this.targetModulePixels = targetModulePixels;
+        this.missesToZoom = Math.max(1, missesToZoom);
+        this.missesToZoomOut = Math.max(this.missesToZoom, missesToZoomOut);
+        this.maxStep = Math.max(1.0f, maxStep);
+    }
+
+    /**
+     * Called with each barcode decoded from a frame, with its points in frame crop coordinates.
+     */
+    public synchronized void onFound(Result result) {
+        misses = 0;
+        ResultPoint[] points = result.getResultPoints();
+        if (points == null) {
+            return;
+        }
+        for (ResultPoint point : points) {
+            float size = getEstimatedModuleSize(point);
+            if (size > 0.0f) {
+                addSample(size);
+            }
+        }
+    }
+
+    private void addSample(float size) {
+        sizes[next] = size;
+        times[next] = now();
+        next = (next + 1) % MAX_SAMPLES;
+        if (count < MAX_SAMPLES) {
+            count++;
+        }
+    }
+
+    /**
+     * Called once a frame has been decoded to the end without finding a barcode.
+     *
+     * @return the factor to multiply the zoom ratio by, or 1 to leave it.
+     */
+    public synchronized float onMissed() {
+        misses++;
+        float factor = 1.0f;
+        if (misses >= missesToZoom) {
+            float moduleSize = getRecentModuleSize();
+            if (moduleSize > 0.0f && moduleSize < minModulePixels) {
+                factor = Math.min(maxStep, targetModulePixels / moduleSize);
+                zoomInCount++;
+            }
+        }
+        if (factor == 1.0f && misses >= missesToZoomOut && zoomedBy > 1.0f) {
+            factor = Math.max(1.0f / maxStep, 1.0f / zoomedBy);
+            zoomOutCount++;
+        }
+        if (factor != 1.0f) {
+            zoomedBy *= factor;
+            clearSamples();
+        }
+        return factor;
+    }
+
+    /**
+     * @return the median module size estimated in the last {@value #WINDOW_MS} ms, or 0 if none was.
+     */
+    public synchronized float getRecentModuleSize() {
+        long oldest = now() - WINDOW_MS;
+        float[] recent = new float[count];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (times[i] >= oldest) {
+                recent[n++] = sizes[i];
+            }
+        }
+        if (n == 0) {
+            return 0.0f;
+        }
+        Arrays.sort(recent, 0, n);
+        return recent[n / 2];
+    }
+
+    private void clearSamples() {
+        count = 0;
+        next = 0;
+        misses = 0;
+    }
+
+    /**
+     * Forgets the estimates and misses so far, and how far this zoomed in, as after the user
+     * changed the zoom: zooming out never undoes the user's zoom.
+     */
+    public synchronized void reset() {
+        clearSamples();
+        zoomedBy = 1.0f;
+    }
+
+    public synchronized long getZoomInCount() {
+        return zoomInCount;
+    }
+
+    public synchronized long getZoomOutCount() {
+        return zoomOutCount;
+    }
+
+    /**
+     * @return the module size the detector estimated for {@code point}, or 0 if it carries none.
+     */
+    static float getEstimatedModuleSize(ResultPoint point) {
+        if (point instanceof FinderPattern) {
+            return ((FinderPattern) point).getEstimatedModuleSize();
+        }
+        if (point instanceof ModuleSizedPoint) {
+            return ((ModuleSizedPoint) point).getModuleSize();
+        }
+        return 0.0f;
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1000000L;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "AutoZoom{in=" + zoomInCount + ", out=" + zoomOutCount + ", zoomedBy=" + zoomedBy + '}';
+    }
+
+    /**
+     * A result point mapped from a crop or scaled down copy of the frame, which keeps the module
+     * size estimate of the point it was mapped from, scaled the same way.
+     */
+    static final class ModuleSizedPoint extends ResultPoint {
+
+        private final float moduleSize;
+
+        ModuleSizedPoint(float x, float y, float moduleSize) {
+            super(x, y);
+            this.moduleSize = moduleSize;
+        }
+
+        float getModuleSize() {
+            return moduleSize;
+        }
+
+    }
+
+}
@@ -0,0 +1,513 @@
+package com.rhino.zxing.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.ResultPointCallback;
+import com.rhino.zxing.camera.RotatedYUVLuminanceSource;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Decodes raw buffers with no Android classes involved: camera frames, in NV21 or as a bare Y
+ * plane, and ARGB images such as those from {@code Bitmap.getPixels()}. The capture screen, the
+ * gallery picker and {@code CodeUtils} are adapters over this class, and it runs just as well on
+ * a server.
+ *
+ * <p>Camera frames can optionally go through a {@link FrameQualityGate} first, and be decoded
+ * only in the region a {@link RegionTracker} expects the barcode in. The gate may be shared by
+ * several decoders, the tracker may not. Large sources can be decoded at half resolution first, see
+ * {@link #setPyramidDecode(boolean)}, and inverted codes can be looked for as well, see
+ * {@link #setInvertedDecode(InvertedDecode)}. A {@link DecodeBudget} bounds the time all of this
+ * may take; see {@link #setBudget(DecodeBudget)}. With a {@link HintEscalation}, the hints are
+ * taken from its current step instead of the constructor's.</p>
+ *
+ * <p>Not thread safe: each thread needs its own decoder.</p>
+ */
+public final class BarcodeDecoder {
+
+    /** Shorter side of the half resolution level below which sources are only decoded in full. */
+    public static final int PYRAMID_MIN_SIZE = 300;
+
+    // Once frames where half resolution did not pay off outnumber those where it did by this
+    // much, half resolution is only tried every PYRAMID_PROBE_INTERVAL frames, in case a larger
+    // 2D code comes into view.
+    private static final int PYRAMID_SKIP_RATIO = 3;
+    private static final int PYRAMID_PROBE_INTERVAL = 8;
+    private static final int PYRAMID_HISTORY = 64;
+
+    private final DecodeEngine baseEngine;
+    private final DecodeStatistics statistics;
+    private final DecodeMetrics metrics;
+    private DecodeBudget budget;
+    private BinarizerStrategy binarizerStrategy;
+    private HintEscalation hintEscalation;
+    private DecodeEngine[] stepEngines;
+    // The engine for the source being decoded.
+    private DecodeEngine engine;
+    private final FrameQualityGate frameQualityGate;
+    // This decoder's frames follow one another, so motion is measured between them.
+    private final FrameQualityGate.Sampler frameSampler;
+    private final RegionTracker regionTracker;
+    private final MappingResultPointCallback pointCallback;
+    private final boolean multiDecode;
+    private final LuminanceStatistics luminanceStatistics = new LuminanceStatistics();
+    private InvertedDecode invertedDecode = InvertedDecode.OFF;
+    private boolean nextInverted;
+    private boolean pyramidDecode;
+    private int pyramidSavedCount;
+    private int pyramidWastedCount;
+    private int framesSinceProbe;
+
+    /**
+     * @param hints decode hints, used as for {@link com.google.zxing.MultiFormatReader#setHints(Map)}.
+     */
+    public BarcodeDecoder(Map<DecodeHintType,?> hints) {
+        this(hints, null, null, null, null, false);
+    }
+
+    /**
+     * @param hints decode hints, used as for {@link com.google.zxing.MultiFormatReader#setHints(Map)}.
+     * @param statistics where to count outcomes, or null.
+     * @param metrics where to record stage latencies, or null.
+     * @param frameQualityGate gate for {@link #evaluate(LuminanceSource)}, which may be shared with
+     *                         other decoders, or null to score nothing.
+     * @param regionTracker tracker for the barcode's position, used by this decoder only, or null
+     *                      to always decode the whole source.
+     * @param multiDecode whether to report every barcode in a source rather than the first.
+     */
+    public BarcodeDecoder(Map<DecodeHintType,?> hints,
+                          DecodeStatistics statistics,
+                          DecodeMetrics metrics,
+                          FrameQualityGate frameQualityGate,
+                          RegionTracker regionTracker,
+                          boolean multiDecode) {
+        ResultPointCallback callback = hints == null ? null :
+                (ResultPointCallback) hints.get(DecodeHintType.NEED_RESULT_POINT_CALLBACK);
+        if (callback != null) {
+            // Points found in a region or a lower pyramid level have to be mapped back into source
+            // coordinates, and the mapping differs per decoder, so each gets its own callback.
+            pointCallback = new MappingResultPointCallback(callback);
+            Map<DecodeHintType,Object> decoderHints = new EnumMap<>(DecodeHintType.class);
+            decoderHints.putAll(hints);
+            decoderHints.put(DecodeHintType.NEED_RESULT_POINT_CALLBACK, pointCallback);
+            hints = decoderHints;
+        } else {
+            pointCallback = null;
+        }
+        this.baseEngine = new DecodeEngine(hints, statistics, metrics);
+        this.engine = baseEngine;
+        this.statistics = statistics;
+        this.metrics = metrics;
+        this.frameQualityGate = frameQualityGate;
+        this.frameSampler = frameQualityGate == null ? null : new FrameQualityGate.Sampler();
+        this.regionTracker = regionTracker;
+        this.multiDecode = multiDecode;
+    }
+
+    /**
+     * @param data A camera frame in NV21, or just its Y plane.
+     * @param dataWidth The width of the frame.
+     * @param dataHeight The height of the frame.
+     * @param left Left edge of the crop, in frame coordinates.
+     * @param top Top edge of the crop, in frame coordinates.
+     * @param width Width of the crop, in frame coordinates.
+     * @param height Height of the crop, in frame coordinates.
+     * @param rotation Clockwise rotation applied to the crop: 0, 90, 180 or 270.
+     * @return a source reading the frame in place.
+     */
+    public static RotatedYUVLuminanceSource yuvSource(byte[] data, int dataWidth, int dataHeight,
+                                                      int left, int top, int width, int height, int rotation) {
+        return new RotatedYUVLuminanceSource(data, dataWidth, dataHeight, left, top, width, height, rotation);
+    }
+
+    /**
+     * @param pixels ARGB pixels, row by row, such as those from {@code Bitmap.getPixels()}.
+     */
+    public static LuminanceSource argbSource(int[] pixels, int width, int height) {
+        return new RGBLuminanceSource(width, height, pixels);
+    }
+
+    /**
+     * Decodes the whole of a camera frame, after the quality gate if there is one.
+     *
+     * @param data A camera frame in NV21, or just its Y plane.
+     * @param rotation Clockwise rotation which turns the frame upright: 0, 90, 180 or 270.
+     */
+    public DecodeOutcome decodeYuv(byte[] data, int width, int height, int rotation) {
+        LuminanceSource source = yuvSource(data, width, height, 0, 0, width, height, rotation);
+        FrameQuality quality = evaluate(source);
+        if (quality != null && !quality.isAccepted()) {
+            return DecodeOutcome.NOT_FOUND;
+        }
+        return decode(source);
+    }
+
+    /**
+     * Decodes an image. The quality gate, which looks for blur and motion between camera frames,
+     * is not applied.
+     *
+     * @param pixels ARGB pixels, row by row, such as those from {@code Bitmap.getPixels()}.
+     */
+    public DecodeOutcome decodeArgb(int[] pixels, int width, int height) {
+        return decode(argbSource(pixels, width, height));
+    }
+
+    /**
+     * Scores a camera frame with the quality gate, measuring motion against the frame this
+     * decoder scored before.
+     *
+     * @return the frame's quality, or null if this decoder has no gate.
+     */
+    public FrameQuality evaluate(LuminanceSource source) {
+        if (frameQualityGate == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        FrameQuality quality = frameQualityGate.evaluate(source, frameSampler);
+        if (metrics != null) {
+            metrics.record(DecodeStage.QUALITY_GATE, System.nanoTime() - start);
+        }
+        return quality;
+    }
+
+    /**
+     * Decodes {@code source}, every barcode in it in multi decode mode, and otherwise first the
+     * region the tracker expects the barcode in, then the whole source if there is no such region
+     * or nothing was found in it. Depending on {@link #setInvertedDecode(InvertedDecode)}, the
+     * source is also or instead decoded inverted. Result points are always in {@code source}
+     * coordinates.
+     */
+    public DecodeOutcome decode(LuminanceSource source) {
+        if (hintEscalation == null) {
+            return decodeTracked(source);
+        }
+        int step = hintEscalation.getStep();
+        engine = getStepEngine(step);
+        DecodeOutcome outcome = decodeTracked(source);
+        if (!outcome.isAbandoned()) {
+            hintEscalation.onDecoded(step, outcome.isFound());
+        }
+        return outcome;
+    }
+
+    private DecodeEngine getStepEngine(int step) {
+        if (stepEngines[step] == null) {
+            Map<DecodeHintType,Object> hints = new EnumMap<>(DecodeHintType.class);
+            hints.putAll(hintEscalation.getHints(step));
+            if (pointCallback != null) {
+                hints.put(DecodeHintType.NEED_RESULT_POINT_CALLBACK, pointCallback);
+            }
+            stepEngines[step] = new DecodeEngine(hints, statistics, metrics);
+            stepEngines[step].setBudget(budget);
+            stepEngines[step].setBinarizerStrategy(binarizerStrategy);
+        }
+        return stepEngines[step];
+    }
+
+    /**
+     * Asks the tracker once per source for a region, and decodes the whole source right away if
+     * there is none or the region misses, so a lost code costs no extra frame.
+     */
+    private DecodeOutcome decodeTracked(LuminanceSource source) {
+        if (regionTracker == null || multiDecode) {
+            // Several codes may be anywhere in the source, so the region tracker is not used.
+            return decodePolarities(source, 0, 0);
+        }
+        RegionTracker.Region region = regionTracker.predict(source.getWidth(), source.getHeight());
+        DecodeOutcome outcome = null;
+        if (region != null) {
+            outcome = decodePolarities(source.crop(region.getLeft(), region.getTop(),
+                    region.getWidth(), region.getHeight()), region.getLeft(), region.getTop());
+            if (outcome.isAbandoned()) {
+                return outcome;
+            }
+            regionTracker.onRegionDecoded(outcome.isFound());
+        }
+        if (outcome == null || !outcome.isFound()) {
+            outcome = decodePolarities(source, 0, 0);
+        }
+        if (outcome.isFound()) {
+            regionTracker.onResult(outcome.getResult().getResultPoints());
+        }
+        return outcome;
+    }
+
+    /**
+     * Decodes a crop of the frame, or the whole of it, whose point (x, y) is at (left + x, top + y)
+     * in the frame.
+     */
+    private DecodeOutcome decodePolarities(LuminanceSource source, int left, int top) {
+        switch (invertedDecode) {
+            case WHEN_DARK:
+                luminanceStatistics.measure(source);
+                if (!InvertedDecode.looksInverted(luminanceStatistics)) {
+                    return decodePolarity(source, false, left, top);
+                }
+                // A dark frame may also just be a dim one, so fall back to reading it as it is.
+                DecodeOutcome inverted = decodePolarity(source.invert(), true, left, top);
+                return inverted.isFound() || inverted.isAbandoned() ? inverted : decodePolarity(source, false, left, top);
+            case ALTERNATE:
+                boolean invert = nextInverted;
+                DecodeOutcome outcome = decodePolarity(invert ? source.invert() : source, invert, left, top);
+                if (!outcome.isFound() && !outcome.isAbandoned()) {
+                    nextInverted = !invert;
+                }
+                return outcome;
+            default:
+                return decodeSource(source, left, top);
+        }
+    }
+
+    private DecodeOutcome decodePolarity(LuminanceSource source, boolean inverted, int left, int top) {
+        DecodeOutcome outcome = decodeSource(source, left, top);
+        if (statistics != null && !outcome.isAbandoned()) {
+            statistics.recordPolarity(inverted, outcome.isFound());
+        }
+        return outcome;
+    }
+
+    private DecodeOutcome decodeSource(LuminanceSource source, int left, int top) {
+        if (multiDecode) {
+            return engine.decodeMultiple(source);
+        }
+        return decodePyramid(source, left, top);
+    }
+
+    /**
+     * Decodes large sources at half resolution first, where a large code costs a quarter of the
+     * pixels, and in full only if that finds nothing.
+     */
+    private DecodeOutcome decodePyramid(LuminanceSource source, int left, int top) {
+        if (!pyramidDecode || Math.min(source.getWidth(), source.getHeight()) < PYRAMID_MIN_SIZE * 2
+                || !isHalfResolutionWorthTrying()) {
+            return decodeLevel(source, left, top, 0, 1);
+        }
+        PyramidLuminanceSource pyramid = new PyramidLuminanceSource(source);
+        long start = System.nanoTime();
+        LuminanceSource half = pyramid.getLevel(1);
+        if (metrics != null) {
+            metrics.record(DecodeStage.PYRAMID, System.nanoTime() - start);
+        }
+        DecodeOutcome outcome = decodeLevel(half, left, top, 1, PyramidLuminanceSource.getScale(1));
+        if (outcome.isFound()) {
+            // The 1D readers scan only a few rows until they find something, so they are about as
+            // quick in full, and computing the half resolution level was for nothing.
+            if (isOneDimensional(outcome.getResult().getBarcodeFormat())) {
+                pyramidWastedCount++;
+            } else {
+                pyramidSavedCount++;
+            }
+        } else if (!outcome.isAbandoned()) {
+            outcome = decodeLevel(source, left, top, 0, 1);
+            if (outcome.isFound()) {
+                pyramidWastedCount++;
+            }
+        }
+        if (pyramidSavedCount + pyramidWastedCount > PYRAMID_HISTORY) {
+            pyramidSavedCount /= 2;
+            pyramidWastedCount /= 2;
+        }
+        return outcome;
+    }
+
+    private boolean isHalfResolutionWorthTrying() {
+        if (pyramidWastedCount <= PYRAMID_SKIP_RATIO * (pyramidSavedCount + 1)) {
+            return true;
+        }
+        framesSinceProbe++;
+        if (framesSinceProbe >= PYRAMID_PROBE_INTERVAL) {
+            framesSinceProbe = 0;
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isOneDimensional(BarcodeFormat format) {
+        switch (format) {
+            case AZTEC:
+            case DATA_MATRIX:
+            case MAXICODE:
+            case PDF_417:
+            case QR_CODE:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private DecodeOutcome decodeLevel(LuminanceSource source, int left, int top, int level, int scale) {
+        DecodeOutcome outcome = decodeMapped(source, left, top, scale);
+        if (statistics != null && !outcome.isAbandoned()) {
+            statistics.recordLevel(level, outcome.isFound());
+        }
+        return outcome;
+    }
+
+    /**
+     * Decodes a crop or a scaled down copy of the source, whose point (x, y) is at
+     * (left + x * scale, top + y * scale) in the source.
+     */
+    private DecodeOutcome decodeMapped(LuminanceSource source, int left, int top, int scale) {
+        if (left == 0 && top == 0 && scale == 1) {
+            return engine.decode(source);
+        }
+        if (pointCallback != null) {
+            pointCallback.setMapping(left, top, scale);
+        }
+        try {
+            DecodeOutcome outcome = engine.decode(source);
+            return outcome.isFound() ? DecodeOutcome.found(map(outcome.getResult(), left, top, scale)) : outcome;
+        } finally {
+            if (pointCallback != null) {
+                pointCallback.setMapping(0, 0, 1);
+            }
+        }
+    }
+
+    /**
+     * Decodes large sources at half resolution first; see {@link #PYRAMID_MIN_SIZE}. Codes found
+     * only at full resolution make this back off, so small codes cost little extra.
+     */
+    public void setPyramidDecode(boolean pyramidDecode) {
+        this.pyramidDecode = pyramidDecode;
+    }
+
+    public boolean isPyramidDecode() {
+        return pyramidDecode;
+    }
+
+    /**
+     * Looks for inverted codes too, as {@code invertedDecode} says; {@link DecodeStatistics}
+     * then shows the hit rate of each polarity.
+     */
+    public void setInvertedDecode(InvertedDecode invertedDecode) {
+        this.invertedDecode = invertedDecode == null ? InvertedDecode.OFF : invertedDecode;
+    }
+
+    public InvertedDecode getInvertedDecode() {
+        return invertedDecode;
+    }
+
+    public boolean isMultiDecode() {
+        return multiDecode;
+    }
+
+    /**
+     * @param budget checked throughout each decode, or null to always decode to the end. The
+     *               caller starts it for each source and may cancel it from another thread.
+     */
+    public void setBudget(DecodeBudget budget) {
+        this.budget = budget;
+        baseEngine.setBudget(budget);
+        if (stepEngines != null) {
+            for (DecodeEngine stepEngine : stepEngines) {
+                if (stepEngine != null) {
+                    stepEngine.setBudget(budget);
+                }
+            }
+        }
+    }
+
+    public DecodeBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * @param binarizerStrategy picks the binarizers for each source, which may be shared with
+     *                          other decoders, or null for the engine's default.
+     */
+    public void setBinarizerStrategy(BinarizerStrategy binarizerStrategy) {
+        this.binarizerStrategy = binarizerStrategy;
+        baseEngine.setBinarizerStrategy(binarizerStrategy);
+        if (stepEngines != null) {
+            for (DecodeEngine stepEngine : stepEngines) {
+                if (stepEngine != null) {
+                    stepEngine.setBinarizerStrategy(binarizerStrategy);
+                }
+            }
+        }
+    }
+
+    public BinarizerStrategy getBinarizerStrategy() {
+        return binarizerStrategy;
+    }
+
+    /**
+     * @param hintEscalation the ladder of hints to decode with, which may be shared with other
+     *                       decoders, or null to always use the constructor's hints.
+     */
+    public void setHintEscalation(HintEscalation hintEscalation) {
+        this.hintEscalation = hintEscalation;
+        stepEngines = hintEscalation == null ? null : new DecodeEngine[hintEscalation.getStepCount()];
+        engine = baseEngine;
+    }
+
+    public HintEscalation getHintEscalation() {
+        return hintEscalation;
+    }
+
+    /**
+     * @return the engine for the constructor's hints, which decodes unless there is a
+     * {@link HintEscalation}.
+     */
+    public DecodeEngine getEngine() {
+        return baseEngine;
+    }
+
+    private static Result map(Result result, int left, int top, int scale) {
+        ResultPoint[] points = result.getResultPoints();
+        ResultPoint[] mapped = null;
+        if (points != null) {
+            mapped = new ResultPoint[points.length];
+            for (int i = 0; i < points.length; i++) {
+                if (points[i] != null) {
+                    // Keep the module size of QR finder patterns for AutoZoom.
+                    float moduleSize = AutoZoom.getEstimatedModuleSize(points[i]);
+                    float x = left + points[i].getX() * scale;
+                    float y = top + points[i].getY() * scale;
+                    mapped[i] = moduleSize > 0.0f ? new AutoZoom.ModuleSizedPoint(x, y, moduleSize * scale) : new ResultPoint(x, y);
+                }
+            }
+        }
+        Result moved = new Result(result.getText(), result.getRawBytes(), mapped,
+                result.getBarcodeFormat(), result.getTimestamp());
+        moved.putAllMetadata(result.getResultMetadata());
+        return moved;
+    }
+
+    /**
+     * Maps result points found in a region or a lower pyramid level back into source coordinates,
+     * and passes them to the original callback.
+     */
+    private static final class MappingResultPointCallback implements ResultPointCallback {
+
+        private final ResultPointCallback delegate;
+        private int left;
+        private int top;
+        private int scale = 1;
+
+        MappingResultPointCallback(ResultPointCallback delegate) {
+            this.delegate = delegate;
+        }
+
+        void setMapping(int left, int top, int scale) {
+            this.left = left;
+            this.top = top;
+            this.scale = scale;
+        }
+
+        @Override
+        public void foundPossibleResultPoint(ResultPoint point) {
+            if (left != 0 || top != 0 || scale != 1) {
+                point = new ResultPoint(left + point.getX() * scale, top + point.getY() * scale);
+            }
+            delegate.foundPossibleResultPoint(point);
+        }
+    }
+
+}
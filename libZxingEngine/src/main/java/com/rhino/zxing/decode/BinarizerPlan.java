@@ -0,0 +1,33 @@
+package com.rhino.zxing.decode;
+
+/**
+ * Which binarizers to try on a frame, and in what order. The second is only tried when the first
+ * finds nothing.
+ */
+public enum BinarizerPlan {
+
+    HYBRID_ONLY(BinarizerType.HYBRID, null),
+    HYBRID_THEN_GLOBAL(BinarizerType.HYBRID, BinarizerType.GLOBAL_HISTOGRAM),
+    GLOBAL_ONLY(BinarizerType.GLOBAL_HISTOGRAM, null),
+    GLOBAL_THEN_HYBRID(BinarizerType.GLOBAL_HISTOGRAM, BinarizerType.HYBRID);
+
+    private final BinarizerType first;
+    private final BinarizerType second;
+
+    BinarizerPlan(BinarizerType first, BinarizerType second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    public BinarizerType getFirst() {
+        return first;
+    }
+
+    /**
+     * @return the fallback binarizer, or null if there is none.
+     */
+    public BinarizerType getSecond() {
+        return second;
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.rhino.zxing.decode;
+
+/**
+ * Picks the {@link BinarizerPlan} for each frame a {@link DecodeEngine} decodes.
+ *
+ * <p>It is set with {@link DecodeEngine#setBinarizerStrategy(BinarizerStrategy)} or
+ * {@link BarcodeDecoder#setBinarizerStrategy(BinarizerStrategy)}; the capture screen takes it from
+ * {@code CaptureActivity.createBinarizerStrategy()}, an {@link AdaptiveBinarizerStrategy} by
+ * default. One strategy is shared by all decode threads of a scan session, so implementations
+ * must be thread safe.</p>
+ */
+public interface BinarizerStrategy {
+
+    /**
+     * @param statistics luminance statistics sampled from the frame about to be decoded.
+     * @return the binarizers to try on it.
+     */
+    BinarizerPlan choose(LuminanceStatistics statistics);
+
+    /**
+     * Called once a frame decoded with the plan from {@link #choose(LuminanceStatistics)} is done.
+     *
+     * @param plan the plan that was used.
+     * @param first outcome of the first binarizer.
+     * @param second outcome of the second binarizer, or null if it was not tried.
+     */
+    void onDecoded(BinarizerPlan plan, DecodeOutcome first, DecodeOutcome second);
+
+}
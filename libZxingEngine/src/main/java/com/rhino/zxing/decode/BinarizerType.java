@@ -0,0 +1,31 @@
+package com.rhino.zxing.decode;
+
+import com.google.zxing.Binarizer;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.common.HybridBinarizer;
+
+/**
+ * The binarizers a {@link DecodeEngine} can run a frame through.
+ */
+public enum BinarizerType {
+
+    /** Local thresholds per block; copes with shadows and gradients, costs more. */
+    HYBRID {
+        @Override
+        public Binarizer create(LuminanceSource source) {
+            return new HybridBinarizer(source);
+        }
+    },
+
+    /** One threshold from the frame histogram; cheaper, and steadier on dim, noisy frames. */
+    GLOBAL_HISTOGRAM {
+        @Override
+        public Binarizer create(LuminanceSource source) {
+            return new GlobalHistogramBinarizer(source);
+        }
+    };
+
+    public abstract Binarizer create(LuminanceSource source);
+
+}
@@ -0,0 +1,45 @@
+package com.rhino.zxing.decode;
+
+import com.google.zxing.Binarizer;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * Wraps a binarizer and reports every row and the matrix as not found once the
+ * {@link DecodeBudget} is exhausted, which is where the readers can be made to stop.
+ */
+final class BudgetedBinarizer extends Binarizer {
+
+    private final Binarizer delegate;
+    private final DecodeBudget budget;
+
+    BudgetedBinarizer(Binarizer delegate, DecodeBudget budget) {
+        super(delegate.getLuminanceSource());
+        this.delegate = delegate;
+        this.budget = budget;
+    }
+
+    @Override
+    public BitArray getBlackRow(int y, BitArray row) throws NotFoundException {
+        if (budget.isExhausted()) {
+            throw NotFoundException.getNotFoundInstance();
+        }
+        return delegate.getBlackRow(y, row);
+    }
+
+    @Override
+    public BitMatrix getBlackMatrix() throws NotFoundException {
+        if (budget.isExhausted()) {
+            throw NotFoundException.getNotFoundInstance();
+        }
+        return delegate.getBlackMatrix();
+    }
+
+    @Override
+    public Binarizer createBinarizer(LuminanceSource source) {
+        return new BudgetedBinarizer(delegate.createBinarizer(source), budget);
+    }
+
+}
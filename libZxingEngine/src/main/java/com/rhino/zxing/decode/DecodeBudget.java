@@ -0,0 +1,56 @@
+package com.rhino.zxing.decode;
+
+/**
+ * How long a {@link BarcodeDecoder} may spend on one source, and a way to stop it early from
+ * another thread. The core readers can't be interrupted, so the budget is checked wherever the
+ * engine gets control back: before each binarizer and reader, and for every row or matrix a
+ * reader asks the binarizer for. A 1D reader then skips its remaining rows, and a 2D reader gives
+ * up before detection; the decode ends with {@link DecodeOutcome.Status#ABANDONED}.
+ *
+ * <p>The budget is a soft limit. Nothing is checked inside a detector, so once a 2D reader has its
+ * matrix, it runs detection and decoding to the end. A decode may thus overrun by the matrix
+ * binarization plus one full pass of the slowest 2D reader, or by one row for a 1D reader. On a
+ * mid-range phone that is tens of milliseconds for a preview frame, and more with
+ * {@link com.google.zxing.DecodeHintType#TRY_HARDER}. Budgets much shorter than that cut off few
+ * decodes in practice.</p>
+ *
+ * <p>{@link #start(long)} and {@link #isExhausted()} are called by the decoding thread,
+ * {@link #cancel()} by any thread.</p>
+ */
+public final class DecodeBudget {
+
+    private volatile boolean cancelled;
+    private long deadlineNanos;
+    private boolean limited;
+
+    /**
+     * Starts the budget for a new source, and clears an earlier {@link #cancel()}. A caller which
+     * may be cancelled concurrently should check its own cancellation state after this.
+     *
+     * @param budgetNanos time the decode may take from now, or 0 for no limit.
+     */
+    public void start(long budgetNanos) {
+        cancelled = false;
+        limited = budgetNanos > 0L;
+        deadlineNanos = System.nanoTime() + budgetNanos;
+    }
+
+    /**
+     * Makes the current decode stop at the next check.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return whether the decode was cancelled or ran out of time.
+     */
+    public boolean isExhausted() {
+        return cancelled || limited && System.nanoTime() - deadlineNanos > 0L;
+    }
+
+}
@@ -0,0 +1,415 @@
+package com.rhino.zxing.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Binarizer;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.ChecksumException;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.FormatException;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Reader;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.aztec.AztecReader;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.datamatrix.DataMatrixReader;
+import com.google.zxing.maxicode.MaxiCodeReader;
+import com.google.zxing.multi.GenericMultipleBarcodeReader;
+import com.google.zxing.multi.MultipleBarcodeReader;
+import com.google.zxing.multi.qrcode.QRCodeMultiReader;
+import com.google.zxing.oned.MultiFormatOneDReader;
+import com.google.zxing.pdf417.PDF417Reader;
+import com.google.zxing.qrcode.QRCodeReader;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes a {@link LuminanceSource} and reports a {@link DecodeOutcome} instead of throwing.
+ *
+ * <p>Like {@link com.google.zxing.MultiFormatReader}, it picks its readers once from the hints and
+ * tries each in turn, first on a {@link HybridBinarizer} and then on a
+ * {@link GlobalHistogramBinarizer}, unless a {@link BinarizerStrategy} picks the binarizers per
+ * frame; see {@link #setBinarizerStrategy(BinarizerStrategy)}. Unlike MultiFormatReader, the engine keeps why each reader gave up, so a
+ * located but damaged barcode is told apart from an empty frame. The readers signal a miss with
+ * the core library's shared exception instances, which are caught right at each reader call;
+ * no exception is created or passed on by the engine itself. A reader which fails with a
+ * {@link RuntimeException}, as some do on odd images, counts as a miss with
+ * {@link DecodeOutcome.Status#ERROR}, and the next reader is tried.</p>
+ *
+ * <p>{@link #decodeMultiple(LuminanceSource)} finds every barcode in the image instead, using
+ * {@link QRCodeMultiReader} for QR codes and {@link GenericMultipleBarcodeReader} for the other
+ * formats. Those report every miss as not found, or as an error if a reader failed.</p>
+ *
+ * <p>With a {@link DecodeBudget}, the engine stops between binarizers and readers once the budget
+ * is exhausted, and readers are cut short through a {@link BudgetedBinarizer}. The decode then
+ * ends with {@link DecodeOutcome#isAbandoned()}, and the binarizer strategy learns nothing from
+ * it.</p>
+ *
+ * <p>Not thread safe: each decode thread needs its own engine. The statistics may be shared.</p>
+ */
+public final class DecodeEngine {
+
+    private final Map<DecodeHintType,?> hints;
+    private final Reader[] readers;
+    private final DecodeStatistics statistics;
+    private BinarizerStrategy binarizerStrategy;
+    private final LuminanceStatistics luminanceStatistics = new LuminanceStatistics();
+    private MultipleBarcodeReader[] multiReaders;
+    private final DecodeMetrics metrics;
+    private DecodeBudget budget;
+    private long binarizeNanos;
+    private long readNanos;
+
+    /**
+     * @param hints decode hints, used as for {@link com.google.zxing.MultiFormatReader#setHints(Map)}.
+     * @param statistics where to count outcomes, or null.
+     */
+    public DecodeEngine(Map<DecodeHintType,?> hints, DecodeStatistics statistics) {
+        this(hints, statistics, null);
+    }
+
+    /**
+     * @param hints decode hints, used as for {@link com.google.zxing.MultiFormatReader#setHints(Map)}.
+     * @param statistics where to count outcomes, or null.
+     * @param metrics where to record {@link DecodeStage#BINARIZE} and {@link DecodeStage#READ}
+     *                times, or null.
+     */
+    public DecodeEngine(Map<DecodeHintType,?> hints, DecodeStatistics statistics, DecodeMetrics metrics) {
+        this(hints, buildReaders(hints), statistics, metrics);
+    }
+
+    /**
+     * Uses {@code readers}, in this order, rather than those the hints ask for.
+     */
+    DecodeEngine(Map<DecodeHintType,?> hints, Reader[] readers, DecodeStatistics statistics, DecodeMetrics metrics) {
+        this.hints = hints;
+        this.readers = readers;
+        this.statistics = statistics;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param binarizerStrategy picks the binarizers for each source, which may be shared with
+     *                          other engines, or null to use the hybrid one falling back to the
+     *                          global histogram one.
+     */
+    public void setBinarizerStrategy(BinarizerStrategy binarizerStrategy) {
+        this.binarizerStrategy = binarizerStrategy;
+    }
+
+    public BinarizerStrategy getBinarizerStrategy() {
+        return binarizerStrategy;
+    }
+
+    /**
+     * @param budget checked throughout each decode, or null to always decode to the end.
+     */
+    public void setBudget(DecodeBudget budget) {
+        this.budget = budget;
+    }
+
+    public DecodeBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Decodes the whole of {@code source} with the binarizers the strategy picks, by default the
+     * hybrid one falling back to the global histogram one.
+     */
+    public DecodeOutcome decode(LuminanceSource source) {
+        return decode(source, false);
+    }
+
+    /**
+     * Decodes every barcode in {@code source}, binarizing it as {@link #decode(LuminanceSource)}
+     * does. A barcode found by more than one reader or binarizer is reported once.
+     */
+    public DecodeOutcome decodeMultiple(LuminanceSource source) {
+        if (multiReaders == null) {
+            multiReaders = buildMultiReaders(readers);
+        }
+        return decode(source, true);
+    }
+
+    private DecodeOutcome decode(LuminanceSource source, boolean multiple) {
+        if (isExhausted()) {
+            return abandon();
+        }
+        BinarizerPlan plan = BinarizerPlan.HYBRID_THEN_GLOBAL;
+        if (binarizerStrategy != null) {
+            luminanceStatistics.measure(source);
+            plan = binarizerStrategy.choose(luminanceStatistics);
+        }
+        binarizeNanos = 0L;
+        readNanos = 0L;
+        DecodeOutcome first = decode(source, plan.getFirst(), multiple);
+        DecodeOutcome second = null;
+        if (!first.isFound() && plan.getSecond() != null && !first.isAbandoned()) {
+            second = isExhausted() ? DecodeOutcome.ABANDONED : decode(source, plan.getSecond(), multiple);
+        }
+        if (metrics != null) {
+            metrics.record(DecodeStage.BINARIZE, binarizeNanos);
+            metrics.record(DecodeStage.READ, readNanos);
+        }
+        if (first.isAbandoned() || second != null && second.isAbandoned()) {
+            return abandon();
+        }
+        if (binarizerStrategy != null) {
+            binarizerStrategy.onDecoded(plan, first, second);
+        }
+        DecodeOutcome outcome = second == null ? first : mostSpecific(first, second);
+        if (statistics != null) {
+            statistics.record(outcome);
+        }
+        return outcome;
+    }
+
+    private DecodeOutcome decode(LuminanceSource source, BinarizerType type, boolean multiple) {
+        Binarizer binarizer = type.create(source);
+        if (budget != null) {
+            binarizer = new BudgetedBinarizer(binarizer, budget);
+        }
+        if (metrics == null) {
+            return decode(new BinaryBitmap(binarizer), multiple);
+        }
+        // The binarizers work lazily, as the readers ask for rows or the matrix, so their time is
+        // measured from inside and the rest is the readers'.
+        TimedBinarizer timed = new TimedBinarizer(binarizer);
+        long start = System.nanoTime();
+        DecodeOutcome outcome = decode(new BinaryBitmap(timed), multiple);
+        long binarize = timed.getNanos();
+        binarizeNanos += binarize;
+        readNanos += System.nanoTime() - start - binarize;
+        return outcome;
+    }
+
+    private DecodeOutcome decode(BinaryBitmap bitmap, boolean multiple) {
+        return multiple ? decodeMultiple(bitmap) : decode(bitmap);
+    }
+
+    private DecodeOutcome decode(BinaryBitmap bitmap) {
+        DecodeOutcome miss = DecodeOutcome.NOT_FOUND;
+        for (Reader reader : readers) {
+            DecodeOutcome outcome;
+            try {
+                outcome = DecodeOutcome.found(reader.decode(bitmap, hints));
+            } catch (NotFoundException e) {
+                outcome = DecodeOutcome.NOT_FOUND;
+            } catch (ChecksumException e) {
+                outcome = DecodeOutcome.CHECKSUM;
+            } catch (FormatException e) {
+                outcome = DecodeOutcome.FORMAT;
+            } catch (RuntimeException e) {
+                outcome = DecodeOutcome.ERROR;
+            } finally {
+                reader.reset();
+            }
+            if (outcome.isFound()) {
+                return outcome;
+            }
+            if (isExhausted()) {
+                // The reader may have been cut short, so its miss means nothing either.
+                return DecodeOutcome.ABANDONED;
+            }
+            miss = mostSpecific(miss, outcome);
+        }
+        return miss;
+    }
+
+    private DecodeOutcome decodeMultiple(BinaryBitmap bitmap) {
+        Map<String,Result> found = null;
+        boolean failed = false;
+        for (MultipleBarcodeReader reader : multiReaders) {
+            if (isExhausted()) {
+                // Report what was found before time ran out.
+                break;
+            }
+            Result[] results;
+            try {
+                results = reader.decodeMultiple(bitmap, hints);
+            } catch (NotFoundException e) {
+                continue;
+            } catch (RuntimeException e) {
+                failed = true;
+                continue;
+            }
+            if (found == null) {
+                found = new LinkedHashMap<>();
+            }
+            for (Result result : results) {
+                String key = result.getBarcodeFormat() + ":" + result.getText();
+                if (!found.containsKey(key)) {
+                    found.put(key, result);
+                }
+            }
+        }
+        if (found == null || found.isEmpty()) {
+            if (isExhausted()) {
+                return DecodeOutcome.ABANDONED;
+            }
+            return failed ? DecodeOutcome.ERROR : DecodeOutcome.NOT_FOUND;
+        }
+        return DecodeOutcome.found(found.values().toArray(new Result[found.size()]));
+    }
+
+    private boolean isExhausted() {
+        return budget != null && budget.isExhausted();
+    }
+
+    private DecodeOutcome abandon() {
+        if (statistics != null) {
+            statistics.record(DecodeOutcome.ABANDONED);
+        }
+        return DecodeOutcome.ABANDONED;
+    }
+
+    /**
+     * A checksum failure means a barcode was read all the way through, which says more about the
+     * frame than a format failure, which in turn says more than a failed reader or nothing found
+     * at all.
+     */
+    private static DecodeOutcome mostSpecific(DecodeOutcome a, DecodeOutcome b) {
+        if (a.isFound() || b.isFound()) {
+            return a.isFound() ? a : b;
+        }
+        if (a == DecodeOutcome.CHECKSUM || b == DecodeOutcome.CHECKSUM) {
+            return DecodeOutcome.CHECKSUM;
+        }
+        if (a == DecodeOutcome.FORMAT || b == DecodeOutcome.FORMAT) {
+            return DecodeOutcome.FORMAT;
+        }
+        if (a == DecodeOutcome.ERROR || b == DecodeOutcome.ERROR) {
+            return DecodeOutcome.ERROR;
+        }
+        return DecodeOutcome.NOT_FOUND;
+    }
+
+    public DecodeStatistics getStatistics() {
+        return statistics;
+    }
+
+    private static MultipleBarcodeReader[] buildMultiReaders(Reader[] readers) {
+        List<MultipleBarcodeReader> multiReaders = new ArrayList<>(2);
+        List<Reader> others = new ArrayList<>(readers.length);
+        for (Reader reader : readers) {
+            if (reader instanceof QRCodeReader) {
+                multiReaders.add(new QRCodeMultiReader());
+            } else {
+                others.add(reader);
+            }
+        }
+        if (!others.isEmpty()) {
+            multiReaders.add(new GenericMultipleBarcodeReader(
+                    new ReaderChain(others.toArray(new Reader[others.size()]))));
+        }
+        return multiReaders.toArray(new MultipleBarcodeReader[multiReaders.size()]);
+    }
+
+    /**
+     * Same reader selection and order as {@link com.google.zxing.MultiFormatReader#setHints(Map)}.
+     */
+    private static Reader[] buildReaders(Map<DecodeHintType,?> hints) {
+        boolean tryHarder = hints != null && hints.containsKey(DecodeHintType.TRY_HARDER);
+        @SuppressWarnings("unchecked")
+        Collection<BarcodeFormat> formats =
+                hints == null ? null : (Collection<BarcodeFormat>) hints.get(DecodeHintType.POSSIBLE_FORMATS);
+        List<Reader> readers = new ArrayList<>();
+        if (formats != null) {
+            boolean addOneDReader =
+                    formats.contains(BarcodeFormat.UPC_A) ||
+                    formats.contains(BarcodeFormat.UPC_E) ||
+                    formats.contains(BarcodeFormat.EAN_13) ||
+                    formats.contains(BarcodeFormat.EAN_8) ||
+                    formats.contains(BarcodeFormat.CODABAR) ||
+                    formats.contains(BarcodeFormat.CODE_39) ||
+                    formats.contains(BarcodeFormat.CODE_93) ||
+                    formats.contains(BarcodeFormat.CODE_128) ||
+                    formats.contains(BarcodeFormat.ITF) ||
+                    formats.contains(BarcodeFormat.RSS_14) ||
+                    formats.contains(BarcodeFormat.RSS_EXPANDED);
+            // Put 1D readers upfront in "normal" mode
+            if (addOneDReader && !tryHarder) {
+                readers.add(new MultiFormatOneDReader(hints));
+            }
+            if (formats.contains(BarcodeFormat.QR_CODE)) {
+                readers.add(new QRCodeReader());
+            }
+            if (formats.contains(BarcodeFormat.DATA_MATRIX)) {
+                readers.add(new DataMatrixReader());
+            }
+            if (formats.contains(BarcodeFormat.AZTEC)) {
+                readers.add(new AztecReader());
+            }
+            if (formats.contains(BarcodeFormat.PDF_417)) {
+                readers.add(new PDF417Reader());
+            }
+            if (formats.contains(BarcodeFormat.MAXICODE)) {
+                readers.add(new MaxiCodeReader());
+            }
+            // At end in "try harder" mode
+            if (addOneDReader && tryHarder) {
+                readers.add(new MultiFormatOneDReader(hints));
+            }
+        }
+        if (readers.isEmpty()) {
+            if (!tryHarder) {
+                readers.add(new MultiFormatOneDReader(hints));
+            }
+            readers.add(new QRCodeReader());
+            readers.add(new DataMatrixReader());
+            readers.add(new AztecReader());
+            readers.add(new PDF417Reader());
+            readers.add(new MaxiCodeReader());
+            if (tryHarder) {
+                readers.add(new MultiFormatOneDReader(hints));
+            }
+        }
+        return readers.toArray(new Reader[readers.size()]);
+    }
+
+    /**
+     * Tries several readers as one, for {@link GenericMultipleBarcodeReader}, which needs a single
+     * {@link Reader} to search the parts of the image with.
+     */
+    private static final class ReaderChain implements Reader {
+
+        private final Reader[] readers;
+
+        ReaderChain(Reader[] readers) {
+            this.readers = readers;
+        }
+
+        @Override
+        public Result decode(BinaryBitmap image) throws NotFoundException {
+            return decode(image, null);
+        }
+
+        @Override
+        public Result decode(BinaryBitmap image, Map<DecodeHintType,?> hints) throws NotFoundException {
+            for (Reader reader : readers) {
+                try {
+                    return reader.decode(image, hints);
+                } catch (ReaderException | RuntimeException e) {
+                    // continue
+                } finally {
+                    reader.reset();
+                }
+            }
+            throw NotFoundException.getNotFoundInstance();
+        }
+
+        @Override
+        public void reset() {
+            for (Reader reader : readers) {
+                reader.reset();
+            }
+        }
+    }
+
+}
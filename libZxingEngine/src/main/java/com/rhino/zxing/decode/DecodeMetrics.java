@@ -0,0 +1,57 @@
+package com.rhino.zxing.decode;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Latency histograms for each {@link DecodeStage}, filled in by the decode pipeline. Take a
+ * {@link #snapshot()} whenever convenient, for example to send p50/p99 scan latency to telemetry.
+ */
+public final class DecodeMetrics {
+
+    private final LatencyHistogram[] histograms;
+
+    public DecodeMetrics() {
+        DecodeStage[] stages = DecodeStage.values();
+        histograms = new LatencyHistogram[stages.length];
+        for (int i = 0; i < stages.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public void record(DecodeStage stage, long nanos) {
+        histograms[stage.ordinal()].record(nanos);
+    }
+
+    public LatencyHistogram getHistogram(DecodeStage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    /**
+     * @return a snapshot of every stage's histogram.
+     */
+    public Map<DecodeStage,LatencyHistogram.Snapshot> snapshot() {
+        Map<DecodeStage,LatencyHistogram.Snapshot> snapshots = new EnumMap<>(DecodeStage.class);
+        for (DecodeStage stage : DecodeStage.values()) {
+            snapshots.put(stage, histograms[stage.ordinal()].snapshot());
+        }
+        return Collections.unmodifiableMap(snapshots);
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("DecodeMetrics{");
+        for (DecodeStage stage : DecodeStage.values()) {
+            result.append('\n').append(stage).append(": ").append(histograms[stage.ordinal()].snapshot());
+        }
+        return result.append('}').toString();
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.rhino.zxing.decode;
+
+import com.google.zxing.Result;
+
+/**
+ * What a {@link DecodeEngine} made of one image: either a {@link Result}, or the reason it found
+ * nothing. Misses share one instance per reason, so a frame without a barcode allocates nothing.
+ */
+public final class DecodeOutcome {
+
+    public enum Status {
+        /** A barcode was decoded. */
+        FOUND,
+        /** No reader located a barcode. */
+        NOT_FOUND,
+        /** A barcode was located but its error correction or check digit failed. */
+        CHECKSUM,
+        /** A barcode was located but its contents did not fit the format. */
+        FORMAT,
+        /** A reader failed with an unexpected exception, which some do on odd images. */
+        ERROR,
+        /** Decoding stopped early because its {@link DecodeBudget} ran out or was cancelled. */
+        ABANDONED
+    }
+
+    private static final Result[] NO_RESULTS = new Result[0];
+
+    static final DecodeOutcome NOT_FOUND = new DecodeOutcome(Status.NOT_FOUND, null, NO_RESULTS);
+    static final DecodeOutcome CHECKSUM = new DecodeOutcome(Status.CHECKSUM, null, NO_RESULTS);
+    static final DecodeOutcome FORMAT = new DecodeOutcome(Status.FORMAT, null, NO_RESULTS);
+    static final DecodeOutcome ERROR = new DecodeOutcome(Status.ERROR, null, NO_RESULTS);
+    static final DecodeOutcome ABANDONED = new DecodeOutcome(Status.ABANDONED, null, NO_RESULTS);
+
+    private final Status status;
+    private final Result result;
+    private final Result[] results;
+
+    private DecodeOutcome(Status status, Result result, Result[] results) {
+        this.status = status;
+        this.result = result;
+        this.results = results;
+    }
+
+    static DecodeOutcome found(Result result) {
+        return new DecodeOutcome(Status.FOUND, result, null);
+    }
+
+    static DecodeOutcome found(Result[] results) {
+        return new DecodeOutcome(Status.FOUND, results[0], results);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isFound() {
+        return status == Status.FOUND;
+    }
+
+    /**
+     * @return whether decoding was cut short, so the miss says nothing about the image.
+     */
+    public boolean isAbandoned() {
+        return status == Status.ABANDONED;
+    }
+
+    /**
+     * @return the decoded barcode, the first one if several were found, or null unless
+     * {@link #isFound()}.
+     */
+    public Result getResult() {
+        return result;
+    }
+
+    /**
+     * @return every decoded barcode; empty unless {@link #isFound()}.
+     */
+    public Result[] getResults() {
+        return results != null ? results : new Result[] {result};
+    }
+
+    @Override
+    public String toString() {
+        if (!isFound()) {
+            return "DecodeOutcome{" + status + '}';
+        }
+        return results == null ? "DecodeOutcome{" + result.getBarcodeFormat() + '}' :
+                "DecodeOutcome{" + results.length + " barcodes}";
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.rhino.zxing.decode;
+
+/**
+ * The stages a preview frame goes through, as timed by {@link DecodeMetrics}.
+ */
+public enum DecodeStage {
+
+    /** From asking the camera for a preview frame to the camera delivering it. */
+    FRAME_WAIT,
+    /** From the camera delivering the frame to a decode thread starting on it. */
+    QUEUE,
+    /**
+     * Building the luminance source over the framing rect. The source rotates lazily, so this
+     * covers cropping and setting up the rotation; reading the rotated pixels counts as
+     * {@link #BINARIZE}.
+     */
+    LUMINANCE,
+    /** Scoring the frame in the {@link FrameQualityGate}. */
+    QUALITY_GATE,
+    /** Averaging the frame down to a lower {@link PyramidLuminanceSource} level. */
+    PYRAMID,
+    /** Time spent in binarizers, over every pass on the frame. */
+    BINARIZE,
+    /** Time spent in the readers, not counting binarization. */
+    READ,
+    /** Rendering the result thumbnail. */
+    THUMBNAIL,
+    /** From a decode thread starting on a frame to it being done with it, hit or miss. */
+    DECODE,
+    /** From a decode thread sending a result to {@code CaptureActivity.handleDecode} returning. */
+    DELIVERY,
+    /** From the camera delivering a frame to its result being handled. */
+    TOTAL
+
+}
@@ -0,0 +1,192 @@
+package com.rhino.zxing.decode;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts decode attempts by {@link DecodeOutcome.Status}, so it is visible why frames miss, and
+ * attempts and hits per {@link PyramidLuminanceSource} level and per polarity. A frame decoded at
+ * more than one level, or in both polarities, counts once for each. Several decode workers may
+ * record into one instance at once.
+ */
+public final class DecodeStatistics {
+
+    private final AtomicLong found = new AtomicLong();
+    private final AtomicLong notFound = new AtomicLong();
+    private final AtomicLong checksum = new AtomicLong();
+    private final AtomicLong format = new AtomicLong();
+    private final AtomicLong error = new AtomicLong();
+    private final AtomicLong abandoned = new AtomicLong();
+    private final AtomicLongArray levelAttempts = new AtomicLongArray(PyramidLuminanceSource.MAX_LEVELS);
+    private final AtomicLongArray levelHits = new AtomicLongArray(PyramidLuminanceSource.MAX_LEVELS);
+    // Indexed by InvertedDecode.polarityIndex(): 0 for dark on light, 1 for inverted.
+    private final AtomicLongArray polarityAttempts = new AtomicLongArray(2);
+    private final AtomicLongArray polarityHits = new AtomicLongArray(2);
+
+    void record(DecodeOutcome outcome) {
+        switch (outcome.getStatus()) {
+            case FOUND:
+                found.incrementAndGet();
+                break;
+            case NOT_FOUND:
+                notFound.incrementAndGet();
+                break;
+            case CHECKSUM:
+                checksum.incrementAndGet();
+                break;
+            case FORMAT:
+                format.incrementAndGet();
+                break;
+            case ERROR:
+                error.incrementAndGet();
+                break;
+            case ABANDONED:
+                abandoned.incrementAndGet();
+                break;
+        }
+    }
+
+    void recordLevel(int level, boolean found) {
+        levelAttempts.incrementAndGet(level);
+        if (found) {
+            levelHits.incrementAndGet(level);
+        }
+    }
+
+    void recordPolarity(boolean inverted, boolean found) {
+        int index = InvertedDecode.polarityIndex(inverted);
+        polarityAttempts.incrementAndGet(index);
+        if (found) {
+            polarityHits.incrementAndGet(index);
+        }
+    }
+
+    public long getFoundCount() {
+        return found.get();
+    }
+
+    /**
+     * @return frames in which no barcode was located.
+     */
+    public long getNotFoundCount() {
+        return notFound.get();
+    }
+
+    /**
+     * @return frames in which a barcode was located but failed error correction or its check digit.
+     */
+    public long getChecksumCount() {
+        return checksum.get();
+    }
+
+    /**
+     * @return frames in which a barcode was located but could not be parsed.
+     */
+    public long getFormatCount() {
+        return format.get();
+    }
+
+    /**
+     * @return frames on which a reader failed with an unexpected exception and none found a
+     * barcode.
+     */
+    public long getErrorCount() {
+        return error.get();
+    }
+
+    /**
+     * @return frames whose decode was stopped by its {@link DecodeBudget}.
+     */
+    public long getAbandonedCount() {
+        return abandoned.get();
+    }
+
+    public long getAttemptCount() {
+        return found.get() + notFound.get() + checksum.get() + format.get() + error.get() + abandoned.get();
+    }
+
+    /**
+     * @return decodes tried at a {@link PyramidLuminanceSource} level, 0 being full resolution.
+     */
+    public long getLevelAttemptCount(int level) {
+        return levelAttempts.get(level);
+    }
+
+    /**
+     * @return decodes that found a barcode at a {@link PyramidLuminanceSource} level.
+     */
+    public long getLevelHitCount(int level) {
+        return levelHits.get(level);
+    }
+
+    /**
+     * @return the share of decodes at {@code level} that found a barcode, or 0 if none were tried.
+     */
+    public float getLevelHitRate(int level) {
+        long attempts = levelAttempts.get(level);
+        return attempts == 0L ? 0.0f : (float) levelHits.get(level) / attempts;
+    }
+
+    /**
+     * @return decodes tried with light codes on a dark background if {@code inverted}, otherwise
+     * with dark codes on a light one.
+     */
+    public long getPolarityAttemptCount(boolean inverted) {
+        return polarityAttempts.get(InvertedDecode.polarityIndex(inverted));
+    }
+
+    /**
+     * @return decodes in the given polarity that found a barcode.
+     */
+    public long getPolarityHitCount(boolean inverted) {
+        return polarityHits.get(InvertedDecode.polarityIndex(inverted));
+    }
+
+    /**
+     * @return the share of decodes in the given polarity that found a barcode, or 0 if none were
+     * tried. A deployment whose inverted hit rate is near 0 can turn {@link InvertedDecode} off.
+     */
+    public float getPolarityHitRate(boolean inverted) {
+        long attempts = getPolarityAttemptCount(inverted);
+        return attempts == 0L ? 0.0f : (float) getPolarityHitCount(inverted) / attempts;
+    }
+
+    public void reset() {
+        found.set(0L);
+        notFound.set(0L);
+        checksum.set(0L);
+        format.set(0L);
+        error.set(0L);
+        abandoned.set(0L);
+        for (int i = 0; i < levelAttempts.length(); i++) {
+            levelAttempts.set(i, 0L);
+            levelHits.set(i, 0L);
+        }
+        for (int i = 0; i < polarityAttempts.length(); i++) {
+            polarityAttempts.set(i, 0L);
+            polarityHits.set(i, 0L);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("DecodeStatistics{found=").append(found.get())
+                .append(", notFound=").append(notFound.get())
+                .append(", checksum=").append(checksum.get())
+                .append(", format=").append(format.get())
+                .append(", error=").append(error.get())
+                .append(", abandoned=").append(abandoned.get());
+        for (int i = 0; i < levelAttempts.length(); i++) {
+            if (levelAttempts.get(i) > 0L) {
+                result.append(", level").append(i).append('=')
+                        .append(levelHits.get(i)).append('/').append(levelAttempts.get(i));
+            }
+        }
+        if (polarityAttempts.get(0) + polarityAttempts.get(1) > 0L) {
+            result.append(", normal=").append(polarityHits.get(0)).append('/').append(polarityAttempts.get(0))
+                    .append(", inverted=").append(polarityHits.get(1)).append('/').append(polarityAttempts.get(1));
+        }
+        return result.append('}').toString();
+    }
+
+}
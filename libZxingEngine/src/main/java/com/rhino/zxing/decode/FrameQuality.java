@@ -0,0 +1,66 @@
+package com.rhino.zxing.decode;
+
+/**
+ * Scores a {@link FrameQualityGate} gave one frame, and whether it let the frame through to the
+ * readers.
+ */
+public final class FrameQuality {
+
+    private final int sharpness;
+    private final int contrast;
+    private final int brightness;
+    private final int motion;
+    private final boolean accepted;
+
+    FrameQuality(int sharpness, int contrast, int brightness, int motion, boolean accepted) {
+        this.sharpness = sharpness;
+        this.contrast = contrast;
+        this.brightness = brightness;
+        this.motion = motion;
+        this.accepted = accepted;
+    }
+
+    /**
+     * @return steepness of the frame's edges relative to its contrast, 0-100: 100 for edges one
+     * pixel wide, 25 for edges spread over four pixels.
+     */
+    public int getSharpness() {
+        return sharpness;
+    }
+
+    /**
+     * @return distance between the 5th and 95th percentile luminance, 0-255.
+     */
+    public int getContrast() {
+        return contrast;
+    }
+
+    /**
+     * @return mean luminance, 0-255.
+     */
+    public int getBrightness() {
+        return brightness;
+    }
+
+    /**
+     * @return mean luminance change per region since the previous frame, 0-255, or 0 for the
+     * first frame.
+     */
+    public int getMotion() {
+        return motion;
+    }
+
+    /**
+     * @return whether the frame was passed on to the readers.
+     */
+    public boolean isAccepted() {
+        return accepted;
+    }
+
+    @Override
+    public String toString() {
+        return "FrameQuality{sharpness=" + sharpness + ", contrast=" + contrast +
+                ", brightness=" + brightness + ", motion=" + motion + ", accepted=" + accepted + '}';
+    }
+
+}
@@ -0,0 +1,248 @@
+package com.rhino.zxing.decode;
+
+import com.google.zxing.LuminanceSource;
+
+/**
+ * Scores each frame for contrast, sharpness and motion against the previous frame, and rejects
+ * frames that can't decode before any reader runs: the camera is refocusing, the user is moving
+ * the device, or there is nothing in view.
+ *
+ * <p>Everything is measured on {@value #SAMPLE_ROWS} evenly spaced rows. Sharpness is the typical
+ * edge steepness relative to contrast, so it does not depend on lighting. Motion is the mean
+ * change of a {@value #SAMPLE_ROWS}x{@value #SAMPLE_ROWS} grid of region averages. After
+ * {@value #MAX_CONSECUTIVE_REJECTIONS} rejections in a row one frame is let through anyway, so
+ * thresholds that don't suit a camera cost some speed rather than every scan.</p>
+ *
+ * <p>One gate is shared by all decode threads of a scan session, and so are its counts and the
+ * run of rejections. Frames finish in any order across threads, so comparing each frame with the
+ * last one scored would measure motion between arbitrary frames. Each thread instead keeps a
+ * {@link Sampler} and measures motion against the frame it scored before: with N threads that
+ * frame is N frames back, which at camera frame rates is still far less than a hand takes to
+ * settle. The sampler also holds the buffers, so scoring a frame allocates nothing but its
+ * {@link FrameQuality}.</p>
+ */
+public final class FrameQualityGate {
+
+    public static final int DEFAULT_MIN_CONTRAST = 24;
+    public static final int DEFAULT_MIN_SHARPNESS = 6;
+    public static final int DEFAULT_MAX_MOTION = 24;
+
+    private static final int SAMPLE_ROWS = 16;
+    private static final int MAX_CONSECUTIVE_REJECTIONS = 10;
+    // Pixel to pixel differences up to this are sensor noise, not edges.
+    private static final int NOISE = 4;
+    private static final int LUMINANCE_BITS = 5;
+    private static final int LUMINANCE_SHIFT = 8 - LUMINANCE_BITS;
+    private static final int LUMINANCE_BUCKETS = 1 << LUMINANCE_BITS;
+
+    private final int minContrast;
+    private final int minSharpness;
+    private final int maxMotion;
+
+    private final Sampler sampler = new Sampler();
+    private int consecutiveRejections;
+    private long evaluatedCount;
+    private long lowContrastCount;
+    private long blurredCount;
+    private long movingCount;
+    private long rejectedCount;
+    private volatile FrameQuality latest;
+
+    /**
+     * The row buffer, histogram and motion grids of one decode thread. Not thread safe: each
+     * thread needs its own.
+     */
+    public static final class Sampler {
+
+        private byte[] row = new byte[0];
+        private final int[] buckets = new int[LUMINANCE_BUCKETS];
+        private byte[] grid = new byte[SAMPLE_ROWS * SAMPLE_ROWS];
+        private byte[] previousGrid = new byte[SAMPLE_ROWS * SAMPLE_ROWS];
+        // Sampled rows of the previous frame, or 0 before the first.
+        private int previousRows;
+
+    }
+
+    public FrameQualityGate() {
+        this(DEFAULT_MIN_CONTRAST, DEFAULT_MIN_SHARPNESS, DEFAULT_MAX_MOTION);
+    }
+
+    /**
+     * @param minContrast frames whose contrast, see {@link FrameQuality#getContrast()}, is below
+     *                    this are rejected.
+     * @param minSharpness frames whose sharpness, see {@link FrameQuality#getSharpness()}, is below
+     *                     this are rejected.
+     * @param maxMotion frames whose motion, see {@link FrameQuality#getMotion()}, is above this are
+     *                  rejected.
+     */
+    public FrameQualityGate(int minContrast, int minSharpness, int maxMotion) {
+        this.minContrast = minContrast;
+        this.minSharpness = minSharpness;
+        this.maxMotion = maxMotion;
+    }
+
+    /**
+     * Scores the frame against the previous one passed to this method and decides whether it is
+     * worth decoding. Frames of a decode thread should go to
+     * {@link #evaluate(LuminanceSource, Sampler)} instead.
+     */
+    public FrameQuality evaluate(LuminanceSource source) {
+        synchronized (sampler) {
+            return evaluate(source, sampler);
+        }
+    }
+
+    /**
+     * Scores the frame against the previous one scored with the same sampler and decides whether
+     * it is worth decoding.
+     *
+     * @param sampler buffers and motion grid of the calling thread.
+     */
+    public FrameQuality evaluate(LuminanceSource source, Sampler sampler) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int rows = Math.min(SAMPLE_ROWS, height);
+        if (sampler.row.length < width) {
+            sampler.row = new byte[width];
+        }
+        byte[] grid = sampler.grid;
+        int[] buckets = sampler.buckets;
+        for (int i = 0; i < LUMINANCE_BUCKETS; i++) {
+            buckets[i] = 0;
+        }
+        long sum = 0L;
+        long edgeSum = 0L;
+        long edgeSquareSum = 0L;
+        for (int i = 0; i < rows; i++) {
+            byte[] r = source.getRow((2 * i + 1) * height / (2 * rows), sampler.row);
+            int previous = r[0] & 0xff;
+            for (int x = 0; x < width; x++) {
+                int pixel = r[x] & 0xff;
+                buckets[pixel >> LUMINANCE_SHIFT]++;
+                sum += pixel;
+                int edge = Math.abs(pixel - previous);
+                if (edge > NOISE) {
+                    edgeSum += edge;
+                    edgeSquareSum += edge * edge;
+                }
+                previous = pixel;
+            }
+            for (int c = 0; c < SAMPLE_ROWS; c++) {
+                int start = c * width / SAMPLE_ROWS;
+                int end = Math.max(start + 1, (c + 1) * width / SAMPLE_ROWS);
+                int cellSum = 0;
+                for (int x = start; x < end && x < width; x++) {
+                    cellSum += r[x] & 0xff;
+                }
+                grid[i * SAMPLE_ROWS + c] = (byte) (cellSum / (end - start));
+            }
+        }
+
+        int count = rows * width;
+        int brightness = count == 0 ? 0 : (int) (sum / count);
+        int contrast = percentile(buckets, count - count / 20 - 1) - percentile(buckets, count / 20);
+        // edgeSquareSum / edgeSum is the height of a typical edge step; a crisp edge covers the
+        // whole contrast in one pixel, a blurred one only a fraction of it.
+        int sharpness = edgeSum == 0L || contrast <= 0 ? 0 :
+                (int) Math.min(100L, edgeSquareSum * 100L / (edgeSum * contrast));
+
+        int motion = 0;
+        int cells = rows * SAMPLE_ROWS;
+        if (cells > 0 && sampler.previousRows == rows) {
+            byte[] previousGrid = sampler.previousGrid;
+            int diff = 0;
+            for (int i = 0; i < cells; i++) {
+                diff += Math.abs((grid[i] & 0xff) - (previousGrid[i] & 0xff));
+            }
+            motion = diff / cells;
+        }
+        sampler.grid = sampler.previousGrid;
+        sampler.previousGrid = grid;
+        sampler.previousRows = rows;
+
+        synchronized (this) {
+            evaluatedCount++;
+            boolean lowContrast = contrast < minContrast;
+            boolean blurred = sharpness < minSharpness;
+            boolean moving = motion > maxMotion;
+            if (lowContrast) {
+                lowContrastCount++;
+            }
+            if (blurred) {
+                blurredCount++;
+            }
+            if (moving) {
+                movingCount++;
+            }
+            boolean accepted = !(lowContrast || blurred || moving) ||
+                    consecutiveRejections >= MAX_CONSECUTIVE_REJECTIONS;
+            if (accepted) {
+                consecutiveRejections = 0;
+            } else {
+                consecutiveRejections++;
+                rejectedCount++;
+            }
+            FrameQuality quality = new FrameQuality(sharpness, contrast, brightness, motion, accepted);
+            latest = quality;
+            return quality;
+        }
+    }
+
+    private static int percentile(int[] buckets, int rank) {
+        int seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen > rank) {
+                return (i << LUMINANCE_SHIFT) + (1 << LUMINANCE_SHIFT) / 2;
+            }
+        }
+        return 255;
+    }
+
+    /**
+     * @return scores of the most recently evaluated frame, or null before the first.
+     */
+    public FrameQuality getLatestQuality() {
+        return latest;
+    }
+
+    public synchronized long getEvaluatedCount() {
+        return evaluatedCount;
+    }
+
+    /**
+     * @return number of frames not passed on to the readers.
+     */
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * @return number of frames below the contrast threshold, whether or not they were rejected.
+     */
+    public synchronized long getLowContrastCount() {
+        return lowContrastCount;
+    }
+
+    /**
+     * @return number of frames below the sharpness threshold, whether or not they were rejected.
+     */
+    public synchronized long getBlurredCount() {
+        return blurredCount;
+    }
+
+    /**
+     * @return number of frames above the motion threshold, whether or not they were rejected.
+     */
+    public synchronized long getMovingCount() {
+        return movingCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "FrameQualityGate{evaluated=" + evaluatedCount + ", rejected=" + rejectedCount +
+                ", lowContrast=" + lowContrastCount + ", blurred=" + blurredCount +
+                ", moving=" + movingCount + '}';
+    }
+
+}
@@ -0,0 +1,175 @@
+package com.rhino.zxing.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A ladder of decode hints, from cheap to thorough, which a scan climbs one step at a time after
+ * {@code missesToEscalate} frames in a row at the current step decode nothing, and leaves for the
+ * bottom step as soon as a frame decodes. Each {@link BarcodeDecoder} keeps a
+ * {@link DecodeEngine} per step, built when the step is first used.
+ *
+ * <p>{@link #standard(Map, Collection, int)} builds the usual ladder from the caller's hints:
+ * optionally some primary formats only, then all of the caller's formats, then those with
+ * {@link DecodeHintType#TRY_HARDER}. Every step keeps the rest of the caller's hints, so a caller
+ * who asked for {@code TRY_HARDER} gets it on every step. Any other ladder, with
+ * {@link DecodeHintType#PURE_BARCODE} say, can be passed to the constructor.</p>
+ *
+ * <p>Frames and hits are counted per step, so it is visible which step a deployment's labels
+ * need and whether the cheap steps pay off. One instance is shared by all decode threads of a
+ * scan session; misses only count towards escalation at the current step.</p>
+ */
+public final class HintEscalation {
+
+    public static final int DEFAULT_MISSES_TO_ESCALATE = 4;
+
+    private final List<Map<DecodeHintType,?>> steps;
+    private final int missesToEscalate;
+    private final long[] frames;
+    private final long[] hits;
+    private int step;
+    private int misses;
+    private long escalations;
+
+    /**
+     * @param steps decode hints for each step, cheapest first.
+     * @param missesToEscalate frames in a row without a barcode after which the next step is used.
+     */
+    public HintEscalation(List<? extends Map<DecodeHintType,?>> steps, int missesToEscalate) {
+        if (steps.isEmpty()) {
+            throw new IllegalArgumentException("No steps");
+        }
+        this.steps = Collections.unmodifiableList(new ArrayList<Map<DecodeHintType,?>>(steps));
+        this.missesToEscalate = Math.max(1, missesToEscalate);
+        frames = new long[steps.size()];
+        hits = new long[steps.size()];
+    }
+
+    /**
+     * @param hints the full decode hints, kept on every step; their
+     *              {@link DecodeHintType#POSSIBLE_FORMATS}, or every format if there are none, are
+     *              tried from the step after the primary formats on. The {@code TRY_HARDER} step is
+     *              left out if they already ask for it.
+     * @param primaryFormats formats tried on a first step, such as those most labels carry, or null
+     *                       to start with all of the caller's formats. The step is left out if it
+     *                       would be the same as the next.
+     * @param missesToEscalate frames in a row without a barcode after which the next step is used.
+     */
+    public static HintEscalation standard(Map<DecodeHintType,?> hints,
+                                          Collection<BarcodeFormat> primaryFormats,
+                                          int missesToEscalate) {
+        Map<DecodeHintType,Object> all = new EnumMap<>(DecodeHintType.class);
+        if (hints != null) {
+            all.putAll(hints);
+        }
+        @SuppressWarnings("unchecked")
+        Collection<BarcodeFormat> formats = (Collection<BarcodeFormat>) all.get(DecodeHintType.POSSIBLE_FORMATS);
+        if (formats == null || formats.isEmpty()) {
+            formats = EnumSet.allOf(BarcodeFormat.class);
+        }
+
+        List<Map<DecodeHintType,?>> steps = new ArrayList<>(3);
+        if (primaryFormats != null && !primaryFormats.isEmpty()) {
+            EnumSet<BarcodeFormat> primary = EnumSet.copyOf(primaryFormats);
+            primary.retainAll(formats);
+            if (!primary.isEmpty() && primary.size() < formats.size()) {
+                Map<DecodeHintType,Object> first = new EnumMap<>(all);
+                first.put(DecodeHintType.POSSIBLE_FORMATS, primary);
+                steps.add(first);
+            }
+        }
+        steps.add(all);
+        if (!all.containsKey(DecodeHintType.TRY_HARDER)) {
+            Map<DecodeHintType,Object> harder = new EnumMap<>(all);
+            harder.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+            steps.add(harder);
+        }
+        return new HintEscalation(steps, missesToEscalate);
+    }
+
+    public int getStepCount() {
+        return steps.size();
+    }
+
+    public Map<DecodeHintType,?> getHints(int step) {
+        return steps.get(step);
+    }
+
+    /**
+     * @return the step the next frame should be decoded with.
+     */
+    public synchronized int getStep() {
+        return step;
+    }
+
+    /**
+     * Called by a decoder once it has decoded a frame with the hints of {@code step}.
+     */
+    public synchronized void onDecoded(int step, boolean found) {
+        frames[step]++;
+        if (found) {
+            hits[step]++;
+            this.step = 0;
+            misses = 0;
+        } else if (step == this.step && ++misses >= missesToEscalate && this.step < steps.size() - 1) {
+            this.step++;
+            misses = 0;
+            escalations++;
+        }
+    }
+
+    /**
+     * Goes back to the first step, as for a new scan.
+     */
+    public synchronized void reset() {
+        step = 0;
+        misses = 0;
+    }
+
+    /**
+     * @return frames decoded with the hints of {@code step}.
+     */
+    public synchronized long getFrameCount(int step) {
+        return frames[step];
+    }
+
+    /**
+     * @return frames in which the hints of {@code step} found a barcode.
+     */
+    public synchronized long getHitCount(int step) {
+        return hits[step];
+    }
+
+    /**
+     * @return the share of frames at {@code step} that found a barcode, or 0 if none were tried.
+     */
+    public synchronized float getHitRate(int step) {
+        return frames[step] == 0L ? 0.0f : (float) hits[step] / frames[step];
+    }
+
+    /**
+     * @return how often a run of misses moved the scan up a step.
+     */
+    public synchronized long getEscalationCount() {
+        return escalations;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder result = new StringBuilder("HintEscalation{step=").append(step)
+                .append(", escalations=").append(escalations);
+        for (int i = 0; i < frames.length; i++) {
+            result.append(", step").append(i).append('=').append(hits[i]).append('/').append(frames[i]);
+        }
+        return result.append('}').toString();
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.rhino.zxing.decode;
+
+/**
+ * When a {@link BarcodeDecoder} also looks for inverted codes, light on a dark background, as
+ * shown on phone screens or laser etched into metal. The inverted source is a view of the
+ * original one, see {@link com.google.zxing.LuminanceSource#invert()}, so no frame is copied.
+ */
+public enum InvertedDecode {
+
+    /** Only dark codes on a light background are read. */
+    OFF,
+
+    /**
+     * Frames whose sampled pixels are mostly dark are decoded inverted first, and then as they
+     * are; other frames only as they are.
+     */
+    WHEN_DARK,
+
+    /**
+     * Each frame is decoded in one polarity only, switching after every miss, so a decoder stays
+     * with whichever polarity the codes in view have. Either is read at no extra cost per frame.
+     */
+    ALTERNATE;
+
+    // Frames with less contrast than this say nothing about polarity.
+    private static final int MIN_SPREAD = 32;
+
+    /**
+     * @return whether the frame looks like a light code on a dark background: most samples are
+     * closer to its darkest pixels than to its lightest ones, while a code printed on paper is
+     * mostly light.
+     */
+    static boolean looksInverted(LuminanceStatistics statistics) {
+        return statistics.getSampleCount() > 0 && statistics.getSpread() >= MIN_SPREAD
+                && statistics.getMean() < (statistics.getLow() + statistics.getHigh()) / 2;
+    }
+
+    static int polarityIndex(boolean inverted) {
+        return inverted ? 1 : 0;
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.rhino.zxing.decode;
+
+import com.google.zxing.LuminanceSource;
+
+/**
+ * Cheap luminance statistics of a frame, sampled from a few evenly spaced rows rather than every
+ * pixel. A {@link DecodeEngine} keeps one instance and refills it for each frame.
+ */
+public final class LuminanceStatistics {
+
+    private static final int SAMPLE_ROWS = 32;
+    private static final int SAMPLES_PER_ROW = 128;
+    private static final int LUMINANCE_BITS = 5;
+    private static final int LUMINANCE_SHIFT = 8 - LUMINANCE_BITS;
+    private static final int LUMINANCE_BUCKETS = 1 << LUMINANCE_BITS;
+
+    private final int[] buckets = new int[LUMINANCE_BUCKETS];
+    private byte[] row = new byte[0];
+    private int sampleCount;
+    private int mean;
+    private int low;
+    private int high;
+
+    void measure(LuminanceSource source) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        if (row.length < width) {
+            row = new byte[width];
+        }
+        for (int i = 0; i < LUMINANCE_BUCKETS; i++) {
+            buckets[i] = 0;
+        }
+        int rows = Math.min(SAMPLE_ROWS, height);
+        int xStep = Math.max(1, width / SAMPLES_PER_ROW);
+        long sum = 0L;
+        int count = 0;
+        for (int i = 0; i < rows; i++) {
+            byte[] r = source.getRow((2 * i + 1) * height / (2 * rows), row);
+            for (int x = xStep / 2; x < width; x += xStep) {
+                int pixel = r[x] & 0xff;
+                buckets[pixel >> LUMINANCE_SHIFT]++;
+                sum += pixel;
+                count++;
+            }
+        }
+        sampleCount = count;
+        if (count == 0) {
+            mean = low = high = 0;
+            return;
+        }
+        mean = (int) (sum / count);
+        low = percentile(count / 20);
+        high = percentile(count - count / 20 - 1);
+    }
+
+    /**
+     * @return the luminance below which {@code rank + 1} samples fall, to bucket precision.
+     */
+    private int percentile(int rank) {
+        int seen = 0;
+        for (int i = 0; i < LUMINANCE_BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen > rank) {
+                return (i << LUMINANCE_SHIFT) + (1 << LUMINANCE_SHIFT) / 2;
+            }
+        }
+        return 255;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * @return mean luminance, 0-255.
+     */
+    public int getMean() {
+        return mean;
+    }
+
+    /**
+     * @return 5th percentile luminance.
+     */
+    public int getLow() {
+        return low;
+    }
+
+    /**
+     * @return 95th percentile luminance.
+     */
+    public int getHigh() {
+        return high;
+    }
+
+    /**
+     * @return distance between the 5th and 95th percentile, a measure of contrast.
+     */
+    public int getSpread() {
+        return high - low;
+    }
+
+    @Override
+    public String toString() {
+        return "LuminanceStatistics{mean=" + mean + ", low=" + low + ", high=" + high + '}';
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.rhino.zxing.decode;
+
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.rhino.zxing.camera.RotatedYUVLuminanceSource;
+
+/**
+ * A {@link LuminanceSource} that reads as its base source, level 0, and also offers the same
+ * image at half, a quarter and an eighth of the resolution. Each level averages 2x2 pixels of the
+ * one above it and is only computed the first time it is asked for, so a frame decoded at one
+ * level pays for no other.
+ *
+ * <p>A point at (x, y) in level {@code n} is at (x, y) * {@link #getScale(int)} in level 0.</p>
+ */
+public final class PyramidLuminanceSource extends LuminanceSource {
+
+    public static final int MAX_LEVELS = 4;
+
+    private final LuminanceSource base;
+    private final LuminanceSource[] levels = new LuminanceSource[MAX_LEVELS];
+
+    public PyramidLuminanceSource(LuminanceSource base) {
+        super(base.getWidth(), base.getHeight());
+        this.base = base;
+        levels[0] = base;
+    }
+
+    /**
+     * @return the source at {@code level}, 0 being the base source, computing it if needed.
+     */
+    public LuminanceSource getLevel(int level) {
+        if (level < 0 || level >= MAX_LEVELS) {
+            throw new IllegalArgumentException("Bad level: " + level);
+        }
+        if (levels[level] == null) {
+            levels[level] = downsample(getLevel(level - 1));
+        }
+        return levels[level];
+    }
+
+    /**
+     * @return whether {@code level} has been computed.
+     */
+    public boolean hasLevel(int level) {
+        return levels[level] != null;
+    }
+
+    /**
+     * @return the number of levels, counting level 0, whose shorter side is at least
+     * {@code minSize}; at least 1.
+     */
+    public int getLevelCount(int minSize) {
+        int count = 1;
+        int size = Math.min(getWidth(), getHeight()) / 2;
+        while (count < MAX_LEVELS && size >= minSize) {
+            count++;
+            size /= 2;
+        }
+        return count;
+    }
+
+    /**
+     * @return how many level 0 pixels one pixel of {@code level} spans in each direction.
+     */
+    public static int getScale(int level) {
+        return 1 << level;
+    }
+
+    @Override
+    public byte[] getRow(int y, byte[] row) {
+        return base.getRow(y, row);
+    }
+
+    @Override
+    public byte[] getMatrix() {
+        return base.getMatrix();
+    }
+
+    @Override
+    public boolean isCropSupported() {
+        return base.isCropSupported();
+    }
+
+    @Override
+    public LuminanceSource crop(int left, int top, int width, int height) {
+        return base.crop(left, top, width, height);
+    }
+
+    @Override
+    public boolean isRotateSupported() {
+        return base.isRotateSupported();
+    }
+
+    @Override
+    public LuminanceSource rotateCounterClockwise() {
+        return base.rotateCounterClockwise();
+    }
+
+    private static LuminanceSource downsample(LuminanceSource source) {
+        if (source instanceof RotatedYUVLuminanceSource) {
+            return ((RotatedYUVLuminanceSource) source).downsample();
+        }
+        int width = source.getWidth() / 2;
+        int height = source.getHeight() / 2;
+        byte[] pixels = new byte[width * height];
+        byte[] upper = null;
+        byte[] lower = null;
+        for (int y = 0; y < height; y++) {
+            upper = source.getRow(y * 2, upper);
+            lower = source.getRow(y * 2 + 1, lower);
+            int offset = y * width;
+            for (int x = 0, x2 = 0; x < width; x++, x2 += 2) {
+                int sum = (upper[x2] & 0xff) + (upper[x2 + 1] & 0xff) + (lower[x2] & 0xff) + (lower[x2 + 1] & 0xff);
+                pixels[offset + x] = (byte) ((sum + 2) >> 2);
+            }
+        }
+        return new PlanarYUVLuminanceSource(pixels, width, height, 0, 0, width, height, false);
+    }
+
+}
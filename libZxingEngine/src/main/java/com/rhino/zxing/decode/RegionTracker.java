@@ -0,0 +1,245 @@
+package com.rhino.zxing.decode;
+
+import com.google.zxing.ResultPoint;
+
+/**
+ * Follows the result points of decoded barcodes and predicts the region of the next frame the
+ * barcode will be in, so that only that region needs decoding.
+ *
+ * <p>Only points of decoded results count: the points readers report while searching include
+ * finder pattern candidates in text and textures, which would steer the region away from the
+ * code. The prediction is the bounding box of the latest result's points, padded on every side by
+ * its larger side, since the points sit inside the code and the detector wants some quiet zone.
+ * It is moved along the drift of the points over the last {@value #WINDOW_MS} ms. The code counts
+ * as lost once fewer than {@value #MIN_POINTS} points are recent, or as soon as a predicted region
+ * decodes nothing, so that the caller can decode the whole frame right away.</p>
+ *
+ * <p>Points are in the coordinates of the full frame crop handed to the decoder. Each decoder
+ * needs its own tracker, since the frames a decode thread sees follow one another; the counts may
+ * be read from any thread.</p>
+ */
+public final class RegionTracker {
+
+    private static final int MAX_POINTS = 32;
+    private static final long WINDOW_MS = 500L;
+    // A 1D result has just two points, at the ends of the row it was read from.
+    private static final int MIN_POINTS = 2;
+    private static final int MIN_REGION_SIZE = 64;
+    // Points closer together in time than this come from the same frame.
+    private static final long MIN_DRIFT_INTERVAL_MS = 30L;
+
+    private final float[] xs = new float[MAX_POINTS];
+    private final float[] ys = new float[MAX_POINTS];
+    private final long[] times = new long[MAX_POINTS];
+    private int count;
+    private int next;
+
+    private long regionAttempts;
+    private long regionHits;
+    private long lostCount;
+    private long regionPixels;
+    private long framePixels;
+
+    /**
+     * A rectangle of the frame crop.
+     */
+    public static final class Region {
+
+        private final int left;
+        private final int top;
+        private final int width;
+        private final int height;
+
+        Region(int left, int top, int width, int height) {
+            this.left = left;
+            this.top = top;
+            this.width = width;
+            this.height = height;
+        }
+
+        public int getLeft() {
+            return left;
+        }
+
+        public int getTop() {
+            return top;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public String toString() {
+            return "Region{" + left + ',' + top + ' ' + width + 'x' + height + '}';
+        }
+    }
+
+    /**
+     * Records the points of a barcode decoded from the whole crop or a region of it.
+     *
+     * @param points its result points, in crop coordinates; null or missing ones are ignored.
+     */
+    public synchronized void onResult(ResultPoint[] points) {
+        if (points == null) {
+            return;
+        }
+        long now = now();
+        for (ResultPoint point : points) {
+            if (point == null) {
+                continue;
+            }
+            xs[next] = point.getX();
+            ys[next] = point.getY();
+            times[next] = now;
+            next = (next + 1) % MAX_POINTS;
+            if (count < MAX_POINTS) {
+                count++;
+            }
+        }
+    }
+
+    /**
+     * @param width width of the frame crop.
+     * @param height height of the frame crop.
+     * @return where the barcode is expected in the next frame, or null if the code is lost and
+     * the whole crop should be decoded.
+     */
+    public synchronized Region predict(int width, int height) {
+        long now = now();
+        long oldest = now - WINDOW_MS;
+        int recent = 0;
+        long newest = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            if (times[i] >= oldest) {
+                recent++;
+                newest = Math.max(newest, times[i]);
+            }
+        }
+        if (recent < MIN_POINTS) {
+            return null;
+        }
+
+        // The box comes from the newest result's points only; older points just give the drift.
+        long frameStart = newest - MIN_DRIFT_INTERVAL_MS;
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        float newX = 0f, newY = 0f, oldX = 0f, oldY = 0f;
+        long newTime = 0L, oldTime = 0L;
+        int newCount = 0, oldCount = 0;
+        for (int i = 0; i < count; i++) {
+            long t = times[i];
+            if (t < oldest) {
+                continue;
+            }
+            if (t >= frameStart) {
+                minX = Math.min(minX, xs[i]);
+                minY = Math.min(minY, ys[i]);
+                maxX = Math.max(maxX, xs[i]);
+                maxY = Math.max(maxY, ys[i]);
+                newX += xs[i];
+                newY += ys[i];
+                newTime += t - oldest;
+                newCount++;
+            } else {
+                oldX += xs[i];
+                oldY += ys[i];
+                oldTime += t - oldest;
+                oldCount++;
+            }
+        }
+        float boxWidth = maxX - minX;
+        float boxHeight = maxY - minY;
+        float side = Math.max(boxWidth, boxHeight);
+        float dx = 0f;
+        float dy = 0f;
+        if (oldCount > 0) {
+            float newMean = (float) newTime / newCount;
+            float elapsed = newMean - (float) oldTime / oldCount;
+            if (elapsed >= MIN_DRIFT_INTERVAL_MS) {
+                float lead = (now - oldest) - newMean;
+                dx = clamp((newX / newCount - oldX / oldCount) / elapsed * lead, side);
+                dy = clamp((newY / newCount - oldY / oldCount) / elapsed * lead, side);
+            }
+        }
+
+        int regionWidth = Math.min(width, Math.max(MIN_REGION_SIZE, (int) (boxWidth + 2f * side)));
+        int regionHeight = Math.min(height, Math.max(MIN_REGION_SIZE, (int) (boxHeight + 2f * side)));
+        if (regionWidth >= width && regionHeight >= height) {
+            return null;
+        }
+        float centerX = (minX + maxX) / 2f + dx;
+        float centerY = (minY + maxY) / 2f + dy;
+        int left = Math.max(0, Math.min(width - regionWidth, (int) (centerX - regionWidth / 2f)));
+        int top = Math.max(0, Math.min(height - regionHeight, (int) (centerY - regionHeight / 2f)));
+
+        regionAttempts++;
+        regionPixels += (long) regionWidth * regionHeight;
+        framePixels += (long) width * height;
+        return new Region(left, top, regionWidth, regionHeight);
+    }
+
+    private static float clamp(float value, float limit) {
+        return Math.max(-limit, Math.min(limit, value));
+    }
+
+    /**
+     * Reports whether the region from {@link #predict(int, int)} decoded. A miss loses the code,
+     * so the next prediction is null until a result is found again.
+     */
+    public synchronized void onRegionDecoded(boolean found) {
+        if (found) {
+            regionHits++;
+        } else {
+            reset();
+            lostCount++;
+        }
+    }
+
+    public synchronized void reset() {
+        count = 0;
+        next = 0;
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1000000L;
+    }
+
+    /**
+     * @return number of frames in which only a predicted region was decoded.
+     */
+    public synchronized long getRegionAttemptCount() {
+        return regionAttempts;
+    }
+
+    public synchronized long getRegionHitCount() {
+        return regionHits;
+    }
+
+    /**
+     * @return how often the code was lost after a miss in the predicted region.
+     */
+    public synchronized long getLostCount() {
+        return lostCount;
+    }
+
+    /**
+     * @return average fraction of the crop's pixels that region decodes looked at, or 1 if none.
+     */
+    public synchronized float getRegionPixelRatio() {
+        return framePixels == 0L ? 1f : (float) regionPixels / framePixels;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "RegionTracker{attempts=" + regionAttempts + ", hits=" + regionHits +
+                ", lost=" + lostCount + ", pixelRatio=" + getRegionPixelRatio() + '}';
+    }
+
+}
@@ -0,0 +1,165 @@
+package com.rhino.zxing.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sits between the decoders and {@code CaptureActivity.onResult} in continuous scan mode, so that
+ * each code held in front of the camera is reported once rather than many times a second.
+ *
+ * <ul>
+ *   <li>A result with the same text and format as one seen less than the duplicate window ago is
+ *   dropped. Every sighting restarts the window, so a code stays quiet while it stays in view.</li>
+ *   <li>Optionally, results in formats prone to misreads need {@code votes} identical reads among
+ *   the last {@code frames} reads of such formats before they are reported.</li>
+ * </ul>
+ *
+ * <p>Not thread safe; used on the thread of {@code CaptureActivityHandler}.</p>
+ */
+public final class ResultFilter {
+
+    /**
+     * 1D formats with short or optional check digits, which are the likeliest to misread.
+     */
+    public static final Set<BarcodeFormat> LOW_CONFIDENCE_FORMATS = EnumSet.of(
+            BarcodeFormat.CODABAR,
+            BarcodeFormat.CODE_39,
+            BarcodeFormat.CODE_93,
+            BarcodeFormat.ITF,
+            BarcodeFormat.EAN_8,
+            BarcodeFormat.UPC_E);
+
+    private static final int MAX_REMEMBERED = 64;
+
+    private final long duplicateWindowMs;
+    private final int votes;
+    private final Set<BarcodeFormat> votingFormats;
+    private final String[] recentReads;
+    private int nextRead;
+    private final Map<String,Long> lastSeen;
+
+    private long deliveredCount;
+    private long duplicateCount;
+    private long unconfirmedCount;
+
+    /**
+     * Drops duplicates only.
+     *
+     * @param duplicateWindowMs how long after its last sighting a code counts as a duplicate.
+     */
+    public ResultFilter(long duplicateWindowMs) {
+        this(duplicateWindowMs, 1, 1, LOW_CONFIDENCE_FORMATS);
+    }
+
+    /**
+     * @param duplicateWindowMs how long after its last sighting a code counts as a duplicate.
+     * @param votes identical reads needed before a result in one of {@code votingFormats} is
+     *              reported; 1 turns voting off.
+     * @param frames how many of the latest reads in those formats the votes are counted over.
+     * @param votingFormats formats that need votes, such as {@link #LOW_CONFIDENCE_FORMATS}.
+     */
+    public ResultFilter(long duplicateWindowMs, int votes, int frames, Collection<BarcodeFormat> votingFormats) {
+        if (votes < 1 || frames < votes) {
+            throw new IllegalArgumentException("Need 1 <= votes <= frames: " + votes + " of " + frames);
+        }
+        this.duplicateWindowMs = duplicateWindowMs;
+        this.votes = votes;
+        this.votingFormats = votingFormats == null || votingFormats.isEmpty() ?
+                EnumSet.noneOf(BarcodeFormat.class) : EnumSet.copyOf(votingFormats);
+        this.recentReads = new String[frames];
+        this.lastSeen = new LinkedHashMap<String,Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,Long> eldest) {
+                return size() > MAX_REMEMBERED;
+            }
+        };
+    }
+
+    /**
+     * @param result a freshly decoded result.
+     * @param now the current time in ms, on any monotonic clock.
+     * @return whether the result should be reported.
+     */
+    public boolean accept(Result result, long now) {
+        String key = result.getBarcodeFormat() + ":" + result.getText();
+        if (votes > 1 && votingFormats.contains(result.getBarcodeFormat()) && !vote(key)) {
+            unconfirmedCount++;
+            return false;
+        }
+        Long previous = lastSeen.put(key, now);
+        if (previous != null && now - previous < duplicateWindowMs) {
+            duplicateCount++;
+            return false;
+        }
+        deliveredCount++;
+        return true;
+    }
+
+    /**
+     * @return the results that should be reported, possibly none.
+     */
+    public Result[] accept(Result[] results, long now) {
+        List<Result> accepted = new ArrayList<>(results.length);
+        for (Result result : results) {
+            if (accept(result, now)) {
+                accepted.add(result);
+            }
+        }
+        return accepted.toArray(new Result[accepted.size()]);
+    }
+
+    private boolean vote(String key) {
+        recentReads[nextRead] = key;
+        nextRead = (nextRead + 1) % recentReads.length;
+        int count = 0;
+        for (String read : recentReads) {
+            if (key.equals(read)) {
+                count++;
+            }
+        }
+        return count >= votes;
+    }
+
+    /**
+     * Forgets every code seen, so that all are reported again.
+     */
+    public void clear() {
+        lastSeen.clear();
+        for (int i = 0; i < recentReads.length; i++) {
+            recentReads[i] = null;
+        }
+    }
+
+    public long getDeliveredCount() {
+        return deliveredCount;
+    }
+
+    /**
+     * @return number of results dropped as repeats of a code already reported.
+     */
+    public long getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    /**
+     * @return number of results held back for lack of votes.
+     */
+    public long getUnconfirmedCount() {
+        return unconfirmedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultFilter{delivered=" + deliveredCount + ", duplicates=" + duplicateCount +
+                ", unconfirmed=" + unconfirmedCount + '}';
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.rhino.zxing.decode;
+
+import com.google.zxing.Binarizer;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * Wraps a binarizer and adds up the time spent in it, including in binarizers made from it for
+ * cropped or rotated parts of the image.
+ */
+final class TimedBinarizer extends Binarizer {
+
+    private final Binarizer delegate;
+    private final long[] nanos;
+
+    TimedBinarizer(Binarizer delegate) {
+        this(delegate, new long[1]);
+    }
+
+    private TimedBinarizer(Binarizer delegate, long[] nanos) {
+        super(delegate.getLuminanceSource());
+        this.delegate = delegate;
+        this.nanos = nanos;
+    }
+
+    long getNanos() {
+        return nanos[0];
+    }
+
+    @Override
+    public BitArray getBlackRow(int y, BitArray row) throws NotFoundException {
+        long start = System.nanoTime();
+        try {
+            return delegate.getBlackRow(y, row);
+        } finally {
+            nanos[0] += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public BitMatrix getBlackMatrix() throws NotFoundException {
+        long start = System.nanoTime();
+        try {
+            return delegate.getBlackMatrix();
+        } finally {
+            nanos[0] += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public Binarizer createBinarizer(LuminanceSource source) {
+        return new TimedBinarizer(delegate.createBinarizer(source), nanos);
+    }
+
+}
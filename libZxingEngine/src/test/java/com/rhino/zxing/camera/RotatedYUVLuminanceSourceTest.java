@@ -0,0 +1,174 @@
+package com.rhino.zxing.camera;
+
+import com.google.zxing.LuminanceSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the in-place rotated source against a rotated copy of the crop, on odd sizes so that an
+ * off-by-one in the offsets shows.
+ */
+public class RotatedYUVLuminanceSourceTest {
+
+    private static final int DATA_WIDTH = 13;
+    private static final int DATA_HEIGHT = 9;
+    private static final int LEFT = 2;
+    private static final int TOP = 1;
+    private static final int WIDTH = 7;
+    private static final int HEIGHT = 5;
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+
+    @Test
+    public void getMatrixMatchesRotatedCopy() {
+        byte[] frame = frame();
+        for (int rotation : ROTATIONS) {
+            RotatedYUVLuminanceSource source = source(frame, rotation);
+            Image expected = rotatedCrop(frame, rotation);
+            assertEquals("width at " + rotation, expected.width, source.getWidth());
+            assertEquals("height at " + rotation, expected.height, source.getHeight());
+            assertArrayEquals("matrix at " + rotation, expected.pixels, source.getMatrix());
+        }
+    }
+
+    @Test
+    public void getRowMatchesRotatedCopy() {
+        byte[] frame = frame();
+        for (int rotation : ROTATIONS) {
+            RotatedYUVLuminanceSource source = source(frame, rotation);
+            Image expected = rotatedCrop(frame, rotation);
+            // A longer row array is reused, a shorter one replaced.
+            byte[] longRow = new byte[expected.width + 3];
+            for (int y = 0; y < expected.height; y++) {
+                assertRowEquals("row " + y + " at " + rotation, expected.row(y), source.getRow(y, null));
+                assertRowEquals("row " + y + " at " + rotation, expected.row(y), source.getRow(y, new byte[1]));
+                assertSame(longRow, source.getRow(y, longRow));
+                assertRowEquals("row " + y + " at " + rotation, expected.row(y), longRow);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getRowOutsideImageFails() {
+        source(frame(), 90).getRow(WIDTH, null);
+    }
+
+    @Test
+    public void cropMatchesCropOfRotatedCopy() {
+        byte[] frame = frame();
+        for (int rotation : ROTATIONS) {
+            Image rotated = rotatedCrop(frame, rotation);
+            LuminanceSource cropped = source(frame, rotation).crop(1, 2, rotated.width - 2, rotated.height - 3);
+            Image expected = rotated.crop(1, 2, rotated.width - 2, rotated.height - 3);
+            assertEquals("width at " + rotation, expected.width, cropped.getWidth());
+            assertEquals("height at " + rotation, expected.height, cropped.getHeight());
+            assertArrayEquals("matrix at " + rotation, expected.pixels, cropped.getMatrix());
+            for (int y = 0; y < expected.height; y++) {
+                assertRowEquals("row " + y + " at " + rotation, expected.row(y), cropped.getRow(y, null));
+            }
+        }
+    }
+
+    @Test
+    public void rotateCounterClockwiseMatchesRotatedCopy() {
+        byte[] frame = frame();
+        for (int rotation : ROTATIONS) {
+            LuminanceSource rotated = source(frame, rotation).rotateCounterClockwise();
+            Image expected = rotatedCrop(frame, (rotation + 270) % 360);
+            assertEquals("width at " + rotation, expected.width, rotated.getWidth());
+            assertEquals("height at " + rotation, expected.height, rotated.getHeight());
+            assertArrayEquals("matrix at " + rotation, expected.pixels, rotated.getMatrix());
+        }
+    }
+
+    @Test
+    public void invertReadsInvertedPixels() {
+        byte[] frame = frame();
+        for (int rotation : ROTATIONS) {
+            LuminanceSource inverted = source(frame, rotation).invert();
+            byte[] expected = rotatedCrop(frame, rotation).pixels;
+            byte[] matrix = inverted.getMatrix();
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals("pixel " + i + " at " + rotation, 255 - (expected[i] & 0xff), matrix[i] & 0xff);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badRotationFails() {
+        source(frame(), 45);
+    }
+
+    private static RotatedYUVLuminanceSource source(byte[] frame, int rotation) {
+        return new RotatedYUVLuminanceSource(frame, DATA_WIDTH, DATA_HEIGHT, LEFT, TOP, WIDTH, HEIGHT, rotation);
+    }
+
+    /**
+     * A Y plane where every pixel differs, followed by a chroma plane that must never be read.
+     */
+    private static byte[] frame() {
+        byte[] frame = new byte[DATA_WIDTH * DATA_HEIGHT * 3 / 2];
+        for (int i = 0; i < DATA_WIDTH * DATA_HEIGHT; i++) {
+            frame[i] = (byte) (i * 7 % 251);
+        }
+        return frame;
+    }
+
+    private static Image rotatedCrop(byte[] frame, int rotation) {
+        byte[] crop = new byte[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            System.arraycopy(frame, (TOP + y) * DATA_WIDTH + LEFT, crop, y * WIDTH, WIDTH);
+        }
+        Image image = new Image(crop, WIDTH, HEIGHT);
+        for (int i = 0; i < rotation / 90; i++) {
+            image = image.rotateClockwise();
+        }
+        return image;
+    }
+
+    private static void assertRowEquals(String message, byte[] expected, byte[] row) {
+        assertTrue(message, row.length >= expected.length);
+        for (int x = 0; x < expected.length; x++) {
+            assertEquals(message + ", x " + x, expected[x], row[x]);
+        }
+    }
+
+    private static final class Image {
+
+        final byte[] pixels;
+        final int width;
+        final int height;
+
+        Image(byte[] pixels, int width, int height) {
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+        }
+
+        Image rotateClockwise() {
+            byte[] rotated = new byte[pixels.length];
+            for (int y = 0; y < width; y++) {
+                for (int x = 0; x < height; x++) {
+                    rotated[y * height + x] = pixels[(height - 1 - x) * width + y];
+                }
+            }
+            return new Image(rotated, height, width);
+        }
+
+        Image crop(int left, int top, int cropWidth, int cropHeight) {
+            byte[] cropped = new byte[cropWidth * cropHeight];
+            for (int y = 0; y < cropHeight; y++) {
+                System.arraycopy(pixels, (top + y) * width + left, cropped, y * cropWidth, cropWidth);
+            }
+            return new Image(cropped, cropWidth, cropHeight);
+        }
+
+        byte[] row(int y) {
+            byte[] row = new byte[width];
+            System.arraycopy(pixels, y * width, row, 0, width);
+            return row;
+        }
+    }
+
+}
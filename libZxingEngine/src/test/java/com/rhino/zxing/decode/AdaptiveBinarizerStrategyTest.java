@@ -0,0 +1,141 @@
+package com.rhino.zxing.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveBinarizerStrategyTest {
+
+    private static final int SIZE = 64;
+    private static final DecodeOutcome FOUND = DecodeOutcome.found(new Result("code", null, null, BarcodeFormat.QR_CODE));
+
+    @Test
+    public void flatFrameOnlyGetsHybrid() {
+        AdaptiveBinarizerStrategy strategy = new AdaptiveBinarizerStrategy();
+        assertEquals(BinarizerPlan.HYBRID_ONLY, strategy.choose(statistics(128, 128)));
+        assertEquals(1, strategy.getFrameCount());
+    }
+
+    @Test
+    public void brightnessPicksFirstWithoutHistory() {
+        AdaptiveBinarizerStrategy strategy = new AdaptiveBinarizerStrategy();
+        assertEquals(BinarizerPlan.HYBRID_THEN_GLOBAL, strategy.choose(bright()));
+        assertEquals(BinarizerPlan.GLOBAL_THEN_HYBRID, strategy.choose(dark()));
+    }
+
+    @Test
+    public void runOfGlobalHitsPutsGlobalFirst() {
+        AdaptiveBinarizerStrategy strategy = new AdaptiveBinarizerStrategy();
+        for (int i = 0; i < 3; i++) {
+            strategy.onDecoded(BinarizerPlan.GLOBAL_THEN_HYBRID, FOUND, null);
+            assertEquals(BinarizerPlan.HYBRID_THEN_GLOBAL, strategy.choose(bright()));
+        }
+        strategy.onDecoded(BinarizerPlan.GLOBAL_THEN_HYBRID, FOUND, null);
+        assertEquals(BinarizerPlan.GLOBAL_THEN_HYBRID, strategy.choose(bright()));
+        assertEquals(4, strategy.getWinCount(BinarizerType.GLOBAL_HISTOGRAM));
+        assertEquals(0, strategy.getWinCount(BinarizerType.HYBRID));
+    }
+
+    @Test
+    public void runOfHybridHitsPutsHybridFirst() {
+        AdaptiveBinarizerStrategy strategy = new AdaptiveBinarizerStrategy();
+        for (int i = 0; i < 4; i++) {
+            strategy.onDecoded(BinarizerPlan.HYBRID_THEN_GLOBAL, FOUND, null);
+        }
+        assertEquals(BinarizerPlan.HYBRID_THEN_GLOBAL, strategy.choose(dark()));
+    }
+
+    @Test
+    public void closeRunsLeaveItToBrightness() {
+        AdaptiveBinarizerStrategy strategy = new AdaptiveBinarizerStrategy();
+        for (int i = 0; i < 6; i++) {
+            strategy.onDecoded(BinarizerPlan.HYBRID_THEN_GLOBAL, FOUND, null);
+        }
+        for (int i = 0; i < 4; i++) {
+            strategy.onDecoded(BinarizerPlan.GLOBAL_THEN_HYBRID, FOUND, null);
+        }
+        assertEquals(BinarizerPlan.GLOBAL_THEN_HYBRID, strategy.choose(dark()));
+        assertEquals(BinarizerPlan.HYBRID_THEN_GLOBAL, strategy.choose(bright()));
+    }
+
+    @Test
+    public void rescueCountsAsWinForFallback() {
+        AdaptiveBinarizerStrategy strategy = new AdaptiveBinarizerStrategy();
+        for (int i = 0; i < 4; i++) {
+            strategy.onDecoded(BinarizerPlan.HYBRID_THEN_GLOBAL, DecodeOutcome.NOT_FOUND, FOUND);
+        }
+        assertEquals(4, strategy.getFallbackCount());
+        assertEquals(4, strategy.getRescueCount());
+        assertEquals(4, strategy.getWinCount(BinarizerType.GLOBAL_HISTOGRAM));
+        assertEquals(BinarizerPlan.GLOBAL_THEN_HYBRID, strategy.choose(bright()));
+    }
+
+    @Test
+    public void uselessFallbackIsOnlyProbed() {
+        AdaptiveBinarizerStrategy strategy = new AdaptiveBinarizerStrategy();
+        for (int i = 0; i < 64; i++) {
+            strategy.onDecoded(BinarizerPlan.HYBRID_THEN_GLOBAL, DecodeOutcome.NOT_FOUND, DecodeOutcome.NOT_FOUND);
+        }
+        int probes = 0;
+        for (int i = 0; i < 16; i++) {
+            BinarizerPlan plan = strategy.choose(bright());
+            if (plan == BinarizerPlan.HYBRID_THEN_GLOBAL) {
+                probes++;
+            } else {
+                assertEquals(BinarizerPlan.HYBRID_ONLY, plan);
+            }
+        }
+        assertEquals(2, probes);
+        assertEquals(14, strategy.getSkippedFallbackCount());
+        // A rescue now and then keeps the fallback.
+        strategy.onDecoded(BinarizerPlan.HYBRID_THEN_GLOBAL, DecodeOutcome.NOT_FOUND, FOUND);
+        assertEquals(BinarizerPlan.HYBRID_THEN_GLOBAL, strategy.choose(bright()));
+    }
+
+    @Test
+    public void engineFallsBackOnMiss() {
+        AdaptiveBinarizerStrategy strategy = new AdaptiveBinarizerStrategy();
+        DecodeEngine engine = new DecodeEngine(TestImages.hints(BarcodeFormat.QR_CODE), null);
+        engine.setBinarizerStrategy(strategy);
+
+        byte[] pixels = TestImages.blank(200, 200);
+        // Some texture, so the frame is not flat enough to skip the global histogram.
+        for (int i = 0; i < pixels.length; i += 3) {
+            pixels[i] = TestImages.BLACK;
+        }
+        assertFalse(engine.decode(TestImages.source(pixels, 200, 200)).isFound());
+        assertEquals(1, strategy.getFallbackCount());
+        assertEquals(0, strategy.getRescueCount());
+
+        TestImages.drawQrCode(pixels, 200, "hit", 20, 20, 6);
+        assertTrue(engine.decode(TestImages.source(pixels, 200, 200)).isFound());
+        assertEquals(1, strategy.getFallbackCount());
+        assertEquals(1, strategy.getWinCount(BinarizerType.HYBRID) +
+                strategy.getWinCount(BinarizerType.GLOBAL_HISTOGRAM));
+    }
+
+    private static LuminanceStatistics bright() {
+        return statistics(TestImages.BLACK, TestImages.WHITE);
+    }
+
+    private static LuminanceStatistics dark() {
+        return statistics(0, 64);
+    }
+
+    /**
+     * @return statistics of a frame which is half {@code low} and half {@code high}.
+     */
+    private static LuminanceStatistics statistics(int low, int high) {
+        byte[] pixels = new byte[SIZE * SIZE];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) (i % 2 == 0 ? low : high);
+        }
+        LuminanceStatistics statistics = new LuminanceStatistics();
+        statistics.measure(TestImages.source(pixels, SIZE, SIZE));
+        return statistics;
+    }
+
+}
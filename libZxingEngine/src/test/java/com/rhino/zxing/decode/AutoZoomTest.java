@@ -0,0 +1,131 @@
+package com.rhino.zxing.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AutoZoomTest {
+
+    @Test
+    public void smallModulesZoomInAfterMisses() {
+        AutoZoom zoom = new AutoZoom(3.0f, 4.5f, 3, 30, 2.0f);
+        zoom.onFound(result(2.5f));
+        assertEquals(2.5f, zoom.getRecentModuleSize(), 0.0f);
+        assertEquals(1.0f, zoom.onMissed(), 0.0f);
+        assertEquals(1.0f, zoom.onMissed(), 0.0f);
+        assertEquals(1.8f, zoom.onMissed(), 0.001f);
+        assertEquals(1, zoom.getZoomInCount());
+        // The estimates no longer hold at the new zoom.
+        assertEquals(0.0f, zoom.getRecentModuleSize(), 0.0f);
+        assertEquals(1.0f, zoom.onMissed(), 0.0f);
+    }
+
+    @Test
+    public void zoomStepIsCapped() {
+        AutoZoom zoom = new AutoZoom(3.0f, 4.5f, 1, 30, 2.0f);
+        zoom.onFound(result(1.0f));
+        assertEquals(2.0f, zoom.onMissed(), 0.0f);
+    }
+
+    @Test
+    public void largeModulesNeverZoom() {
+        AutoZoom zoom = new AutoZoom(3.0f, 4.5f, 1, 30, 2.0f);
+        zoom.onFound(result(6.0f));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(1.0f, zoom.onMissed(), 0.0f);
+        }
+        assertEquals(0, zoom.getZoomInCount());
+        assertEquals(0, zoom.getZoomOutCount());
+    }
+
+    @Test
+    public void medianIgnoresOddEstimates() {
+        AutoZoom zoom = new AutoZoom(3.0f, 4.5f, 1, 30, 2.0f);
+        zoom.onFound(result(2.0f, 20.0f, 2.2f));
+        assertEquals(2.2f, zoom.getRecentModuleSize(), 0.0f);
+    }
+
+    @Test
+    public void foundCodeRestartsMissCount() {
+        AutoZoom zoom = new AutoZoom(3.0f, 4.5f, 3, 30, 2.0f);
+        zoom.onFound(result(2.5f));
+        zoom.onMissed();
+        zoom.onMissed();
+        zoom.onFound(result(2.5f));
+        assertEquals(1.0f, zoom.onMissed(), 0.0f);
+        assertEquals(1.0f, zoom.onMissed(), 0.0f);
+        assertEquals(0, zoom.getZoomInCount());
+    }
+
+    @Test
+    public void resultsWithoutModuleSizesAreIgnored() {
+        AutoZoom zoom = new AutoZoom(3.0f, 4.5f, 1, 30, 2.0f);
+        zoom.onFound(new Result("plain", null, new ResultPoint[] {new ResultPoint(1, 1)}, BarcodeFormat.CODE_128));
+        zoom.onFound(new Result("none", null, null, BarcodeFormat.CODE_128));
+        assertEquals(0.0f, zoom.getRecentModuleSize(), 0.0f);
+        assertEquals(1.0f, zoom.onMissed(), 0.0f);
+    }
+
+    @Test
+    public void missesZoomBackOutInSteps() {
+        AutoZoom zoom = new AutoZoom(3.0f, 4.5f, 1, 4, 2.0f);
+        zoom.onFound(result(1.0f));
+        assertEquals(2.0f, zoom.onMissed(), 0.0f);
+        zoom.onFound(result(1.5f));
+        assertEquals(2.0f, zoom.onMissed(), 0.0f);
+        // Zoomed in 4x; the code is gone and the misses give it back, at most 2x at a time.
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1.0f, zoom.onMissed(), 0.0f);
+        }
+        assertEquals(0.5f, zoom.onMissed(), 0.0f);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1.0f, zoom.onMissed(), 0.0f);
+        }
+        assertEquals(0.5f, zoom.onMissed(), 0.0f);
+        // Never further out than it started.
+        for (int i = 0; i < 20; i++) {
+            assertEquals(1.0f, zoom.onMissed(), 0.0f);
+        }
+        assertEquals(2, zoom.getZoomInCount());
+        assertEquals(2, zoom.getZoomOutCount());
+    }
+
+    @Test
+    public void resetKeepsTheUsersZoom() {
+        AutoZoom zoom = new AutoZoom(3.0f, 4.5f, 1, 4, 2.0f);
+        zoom.onFound(result(1.0f));
+        assertEquals(2.0f, zoom.onMissed(), 0.0f);
+        zoom.reset();
+        for (int i = 0; i < 20; i++) {
+            assertEquals(1.0f, zoom.onMissed(), 0.0f);
+        }
+        assertEquals(0, zoom.getZoomOutCount());
+    }
+
+    @Test
+    public void finderPatternsCarryModuleSize() {
+        int size = 200;
+        byte[] pixels = TestImages.blank(size, size);
+        TestImages.drawQrCode(pixels, size, "far", 20, 20, 2);
+        DecodeEngine engine = new DecodeEngine(TestImages.hints(BarcodeFormat.QR_CODE), null);
+        DecodeOutcome outcome = engine.decode(TestImages.source(pixels, size, size));
+        assertTrue(outcome.toString(), outcome.isFound());
+        AutoZoom zoom = new AutoZoom(3.0f, 4.5f, 1, 30, 2.0f);
+        zoom.onFound(outcome.getResult());
+        assertEquals(2.0f, zoom.getRecentModuleSize(), 0.25f);
+        assertEquals(2.0f, zoom.onMissed(), 0.3f);
+    }
+
+    private static Result result(float... moduleSizes) {
+        ResultPoint[] points = new ResultPoint[moduleSizes.length];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new AutoZoom.ModuleSizedPoint(10 * i, 10 * i, moduleSizes[i]);
+        }
+        return new Result("code", null, points, BarcodeFormat.QR_CODE);
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.rhino.zxing.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.LuminanceSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DecodeBudgetTest {
+
+    private static final int SIZE = 200;
+
+    @Test
+    public void unlimitedBudgetNeverRunsOut() {
+        DecodeBudget budget = new DecodeBudget();
+        budget.start(0L);
+        assertFalse(budget.isExhausted());
+        budget.cancel();
+        assertTrue(budget.isCancelled());
+        assertTrue(budget.isExhausted());
+        // A new start clears the cancel.
+        budget.start(0L);
+        assertFalse(budget.isExhausted());
+    }
+
+    @Test
+    public void cancelledBudgetAbandonsBeforeReading() {
+        DecodeBudget budget = new DecodeBudget();
+        budget.start(0L);
+        budget.cancel();
+        DecodeStatistics statistics = new DecodeStatistics();
+        DecodeEngine engine = new DecodeEngine(TestImages.hints(BarcodeFormat.QR_CODE), statistics);
+        engine.setBudget(budget);
+        CountingSource source = new CountingSource(qrCode(), null);
+        DecodeOutcome outcome = engine.decode(source);
+        assertTrue(outcome.isAbandoned());
+        assertEquals(0, source.rows);
+        assertEquals(0, source.matrices);
+        assertEquals(1, statistics.getAbandonedCount());
+        assertEquals(0, statistics.getNotFoundCount());
+    }
+
+    @Test
+    public void expiredDeadlineAbandons() throws InterruptedException {
+        DecodeBudget budget = new DecodeBudget();
+        budget.start(1L);
+        Thread.sleep(1L);
+        assertTrue(budget.isExhausted());
+        assertFalse(budget.isCancelled());
+        DecodeEngine engine = new DecodeEngine(TestImages.hints(BarcodeFormat.QR_CODE), null);
+        engine.setBudget(budget);
+        assertTrue(engine.decode(qrCode()).isAbandoned());
+    }
+
+    @Test
+    public void budgetRunningOutStopsRowScanning() {
+        byte[] pixels = TestImages.blank(SIZE, SIZE);
+        DecodeEngine engine = new DecodeEngine(TestImages.hints(BarcodeFormat.CODE_128), null);
+        CountingSource unlimited = new CountingSource(TestImages.source(pixels, SIZE, SIZE), null);
+        assertEquals(DecodeOutcome.Status.NOT_FOUND, engine.decode(unlimited).getStatus());
+        assertTrue(unlimited.rows > 10);
+
+        DecodeBudget budget = new DecodeBudget();
+        budget.start(0L);
+        engine.setBudget(budget);
+        CountingSource cut = new CountingSource(TestImages.source(pixels, SIZE, SIZE), budget);
+        DecodeOutcome outcome = engine.decode(cut);
+        assertTrue(outcome.isAbandoned());
+        // The row which ran the budget out is the last one read.
+        assertEquals(1, cut.rows);
+    }
+
+    @Test
+    public void abandonedDecodeTeachesStrategyNothing() {
+        DecodeBudget budget = new DecodeBudget();
+        budget.start(0L);
+        budget.cancel();
+        AdaptiveBinarizerStrategy strategy = new AdaptiveBinarizerStrategy();
+        DecodeEngine engine = new DecodeEngine(TestImages.hints(BarcodeFormat.QR_CODE), null);
+        engine.setBinarizerStrategy(strategy);
+        engine.setBudget(budget);
+        String before = strategy.toString();
+        assertTrue(engine.decode(qrCode()).isAbandoned());
+        assertEquals(before, strategy.toString());
+    }
+
+    private static LuminanceSource qrCode() {
+        byte[] pixels = TestImages.blank(SIZE, SIZE);
+        TestImages.drawQrCode(pixels, SIZE, "budget", 20, 20, 6);
+        return TestImages.source(pixels, SIZE, SIZE);
+    }
+
+    /**
+     * Counts the rows and matrices the readers ask for, and cancels {@code budget}, if any, on
+     * the first row.
+     */
+    private static final class CountingSource extends LuminanceSource {
+
+        private final LuminanceSource delegate;
+        private final DecodeBudget budget;
+        int rows;
+        int matrices;
+
+        CountingSource(LuminanceSource delegate, DecodeBudget budget) {
+            super(delegate.getWidth(), delegate.getHeight());
+            this.delegate = delegate;
+            this.budget = budget;
+        }
+
+        @Override
+        public byte[] getRow(int y, byte[] row) {
+            rows++;
+            if (budget != null) {
+                budget.cancel();
+            }
+            return delegate.getRow(y, row);
+        }
+
+        @Override
+        public byte[] getMatrix() {
+            matrices++;
+            return delegate.getMatrix();
+        }
+    }
+
+}
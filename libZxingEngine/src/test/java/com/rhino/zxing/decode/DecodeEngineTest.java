@@ -0,0 +1,247 @@
+package com.rhino.zxing.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.ChecksumException;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.FormatException;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Reader;
+import com.google.zxing.Result;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeReader;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class DecodeEngineTest {
+
+    private static final int SIZE = 200;
+
+    @Test
+    public void blankFrameIsNotFound() {
+        DecodeStatistics statistics = new DecodeStatistics();
+        DecodeEngine engine = new DecodeEngine(TestImages.hints(BarcodeFormat.QR_CODE), statistics);
+        DecodeOutcome outcome = engine.decode(TestImages.source(TestImages.blank(SIZE, SIZE), SIZE, SIZE));
+        assertEquals(DecodeOutcome.Status.NOT_FOUND, outcome.getStatus());
+        assertNull(outcome.getResult());
+        assertEquals(1, statistics.getNotFoundCount());
+        assertEquals(1, statistics.getAttemptCount());
+    }
+
+    @Test
+    public void foundCodeIsNoMiss() {
+        DecodeStatistics statistics = new DecodeStatistics();
+        DecodeEngine engine = new DecodeEngine(TestImages.hints(BarcodeFormat.QR_CODE), statistics);
+        DecodeOutcome outcome = engine.decode(qrCode("found"));
+        assertEquals(DecodeOutcome.Status.FOUND, outcome.getStatus());
+        assertEquals("found", outcome.getResult().getText());
+        assertEquals(1, statistics.getFoundCount());
+        assertEquals(1, statistics.getAttemptCount());
+    }
+
+    @Test
+    public void damagedCodeIsLocatedButNotRead() {
+        BitMatrix matrix = TestImages.encode(BarcodeFormat.QR_CODE, "damaged", 0, 0);
+        // Flip a block of data modules, clear of the finder patterns, beyond what error
+        // correction can repair.
+        for (int y = 10; y < 17; y++) {
+            for (int x = 10; x < 17; x++) {
+                matrix.flip(x, y);
+            }
+        }
+        byte[] pixels = TestImages.blank(SIZE, SIZE);
+        TestImages.draw(pixels, SIZE, matrix, 20, 20, 6);
+        DecodeStatistics statistics = new DecodeStatistics();
+        DecodeEngine engine = new DecodeEngine(TestImages.hints(BarcodeFormat.QR_CODE), statistics);
+        DecodeOutcome outcome = engine.decode(TestImages.source(pixels, SIZE, SIZE));
+        assertTrue(outcome.toString(), outcome.getStatus() == DecodeOutcome.Status.CHECKSUM ||
+                outcome.getStatus() == DecodeOutcome.Status.FORMAT);
+        assertEquals(1, statistics.getChecksumCount() + statistics.getFormatCount());
+        assertEquals(0, statistics.getNotFoundCount());
+        assertEquals(0, statistics.getFoundCount());
+    }
+
+    @Test
+    public void failingReaderIsAnError() {
+        DecodeStatistics statistics = new DecodeStatistics();
+        DecodeEngine engine = new DecodeEngine(null, new Reader[] {new FailingReader()}, statistics, null);
+        DecodeOutcome outcome = engine.decode(TestImages.source(TestImages.blank(SIZE, SIZE), SIZE, SIZE));
+        assertEquals(DecodeOutcome.Status.ERROR, outcome.getStatus());
+        assertEquals(1, statistics.getErrorCount());
+        assertEquals(1, statistics.getAttemptCount());
+    }
+
+    @Test
+    public void readersAfterFailingOneAreTried() {
+        DecodeStatistics statistics = new DecodeStatistics();
+        DecodeEngine engine = new DecodeEngine(null,
+                new Reader[] {new FailingReader(), new QRCodeReader()}, statistics, null);
+        DecodeOutcome outcome = engine.decode(qrCode("after"));
+        assertTrue(outcome.isFound());
+        assertEquals("after", outcome.getResult().getText());
+        assertEquals(0, statistics.getErrorCount());
+    }
+
+    @Test
+    public void failingReaderDoesNotStopMultipleDecode() {
+        DecodeEngine engine = new DecodeEngine(null,
+                new Reader[] {new QRCodeReader(), new FailingReader()}, null, null);
+        DecodeOutcome outcome = engine.decodeMultiple(qrCode("multi"));
+        assertTrue(outcome.isFound());
+        assertEquals("multi", outcome.getResult().getText());
+        engine = new DecodeEngine(null, new Reader[] {new FailingReader()}, null, null);
+        assertFalse(engine.decodeMultiple(TestImages.source(TestImages.blank(SIZE, SIZE), SIZE, SIZE)).isFound());
+    }
+
+    @Test
+    public void multipleDecodeFindsEveryCode() {
+        DecodeEngine engine = new DecodeEngine(TestImages.hints(BarcodeFormat.QR_CODE), null);
+        DecodeOutcome outcome = engine.decodeMultiple(twoQrCodes());
+        assertTrue(outcome.isFound());
+        assertEquals(setOf("left", "right"), texts(outcome.getResults()));
+    }
+
+    @Test
+    public void codeFoundByTwoReadersIsReportedOnce() {
+        // The QR reader goes to QRCodeMultiReader, the wrapped one to GenericMultipleBarcodeReader,
+        // and both find both codes.
+        DecodeEngine engine = new DecodeEngine(null,
+                new Reader[] {new QRCodeReader(), new WrappedReader(new QRCodeReader())}, null, null);
+        Result[] results = engine.decodeMultiple(twoQrCodes()).getResults();
+        assertEquals(2, results.length);
+        assertEquals(setOf("left", "right"), texts(results));
+    }
+
+    @Test
+    public void multipleDecodeKeepsCodesFoundBeforeBudgetRunsOut() {
+        int width = 400;
+        int height = 400;
+        byte[] pixels = TestImages.blank(width, height);
+        TestImages.drawQrCode(pixels, width, "qr", 20, 20, 6);
+        // Below the middle row, where the 1D reader starts, but within the rows it scans.
+        TestImages.draw(pixels, width, TestImages.encode(BarcodeFormat.CODE_128, "1D", 300, 40), 50, 230, 1);
+        Map<DecodeHintType,Object> hints = TestImages.hints(BarcodeFormat.QR_CODE, BarcodeFormat.CODE_128);
+
+        DecodeEngine engine = new DecodeEngine(hints, null);
+        assertEquals(setOf("qr", "1D"), texts(engine.decodeMultiple(TestImages.source(pixels, width, height)).getResults()));
+
+        // The QR multi reader runs first and reads only the matrix; the budget runs out as soon
+        // as the 1D reader reads a row.
+        final DecodeBudget budget = new DecodeBudget();
+        budget.start(0L);
+        engine.setBudget(budget);
+        DecodeOutcome outcome = engine.decodeMultiple(
+                new CancellingSource(TestImages.source(pixels, width, height), budget));
+        assertTrue(outcome.toString(), outcome.isFound());
+        assertEquals(setOf("qr"), texts(outcome.getResults()));
+    }
+
+    private static LuminanceSource twoQrCodes() {
+        int width = 400;
+        byte[] pixels = TestImages.blank(width, SIZE);
+        TestImages.drawQrCode(pixels, width, "left", 20, 20, 6);
+        TestImages.drawQrCode(pixels, width, "right", 240, 20, 6);
+        return TestImages.source(pixels, width, SIZE);
+    }
+
+    private static Set<String> texts(Result[] results) {
+        Set<String> texts = new HashSet<>();
+        for (Result result : results) {
+            texts.add(result.getText());
+        }
+        return texts;
+    }
+
+    private static Set<String> setOf(String... texts) {
+        return new HashSet<>(Arrays.asList(texts));
+    }
+
+    private static LuminanceSource qrCode(String contents) {
+        byte[] pixels = TestImages.blank(SIZE, SIZE);
+        TestImages.drawQrCode(pixels, SIZE, contents, 20, 20, 6);
+        return TestImages.source(pixels, SIZE, SIZE);
+    }
+
+    /**
+     * Cancels the budget on the first row read, which only the 1D readers do.
+     */
+    private static final class CancellingSource extends LuminanceSource {
+
+        private final LuminanceSource delegate;
+        private final DecodeBudget budget;
+
+        CancellingSource(LuminanceSource delegate, DecodeBudget budget) {
+            super(delegate.getWidth(), delegate.getHeight());
+            this.delegate = delegate;
+            this.budget = budget;
+        }
+
+        @Override
+        public byte[] getRow(int y, byte[] row) {
+            budget.cancel();
+            return delegate.getRow(y, row);
+        }
+
+        @Override
+        public byte[] getMatrix() {
+            return delegate.getMatrix();
+        }
+    }
+
+    /**
+     * Hides the type of the reader it wraps.
+     */
+    private static final class WrappedReader implements Reader {
+
+        private final Reader delegate;
+
+        WrappedReader(Reader delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Result decode(BinaryBitmap image) throws NotFoundException, ChecksumException, FormatException {
+            return delegate.decode(image);
+        }
+
+        @Override
+        public Result decode(BinaryBitmap image, Map<DecodeHintType,?> hints)
+                throws NotFoundException, ChecksumException, FormatException {
+            return delegate.decode(image, hints);
+        }
+
+        @Override
+        public void reset() {
+            delegate.reset();
+        }
+    }
+
+    /**
+     * Fails the way core readers sometimes do on odd images.
+     */
+    private static final class FailingReader implements Reader {
+
+        @Override
+        public Result decode(BinaryBitmap image) {
+            return decode(image, null);
+        }
+
+        @Override
+        public Result decode(BinaryBitmap image, Map<DecodeHintType,?> hints) {
+            throw new ArrayIndexOutOfBoundsException(-1);
+        }
+
+        @Override
+        public void reset() {
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.rhino.zxing.decode;
+
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.PlanarYUVLuminanceSource;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class FrameQualityGateTest {
+
+    private static final int WIDTH = 128;
+    private static final int HEIGHT = 64;
+
+    @Test
+    public void sharpStripesPass() {
+        FrameQualityGate gate = new FrameQualityGate();
+        assertNull(gate.getLatestQuality());
+        FrameQuality quality = gate.evaluate(stripes(false));
+        assertTrue(quality.toString(), quality.isAccepted());
+        assertEquals(100, quality.getSharpness());
+        assertTrue(quality.toString(), quality.getContrast() > 200);
+        assertEquals(127, quality.getBrightness(), 1);
+        assertEquals(0, quality.getMotion());
+        assertSame(quality, gate.getLatestQuality());
+    }
+
+    @Test
+    public void flatFrameIsRejected() {
+        FrameQualityGate gate = new FrameQualityGate();
+        FrameQuality quality = gate.evaluate(flat(128));
+        assertFalse(quality.isAccepted());
+        assertEquals(0, quality.getContrast());
+        assertEquals(0, quality.getSharpness());
+        assertEquals(128, quality.getBrightness());
+        assertEquals(1, gate.getLowContrastCount());
+        assertEquals(1, gate.getBlurredCount());
+        assertEquals(1, gate.getRejectedCount());
+    }
+
+    @Test
+    public void gentleRampsAreBlurred() {
+        byte[] pixels = new byte[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                // Up and down in steps of 8 across 32 pixels.
+                int phase = x % 64;
+                pixels[y * WIDTH + x] = (byte) (8 * (phase < 32 ? phase : 63 - phase));
+            }
+        }
+        FrameQualityGate gate = new FrameQualityGate();
+        FrameQuality quality = gate.evaluate(source(pixels));
+        assertFalse(quality.toString(), quality.isAccepted());
+        assertTrue(quality.toString(), quality.getContrast() >= FrameQualityGate.DEFAULT_MIN_CONTRAST);
+        assertTrue(quality.toString(), quality.getSharpness() < FrameQualityGate.DEFAULT_MIN_SHARPNESS);
+        assertEquals(0, gate.getLowContrastCount());
+        assertEquals(1, gate.getBlurredCount());
+    }
+
+    @Test
+    public void changedFrameIsMoving() {
+        FrameQualityGate gate = new FrameQualityGate();
+        assertTrue(gate.evaluate(stripes(false)).isAccepted());
+        FrameQuality quality = gate.evaluate(stripes(true));
+        assertFalse(quality.isAccepted());
+        assertTrue(quality.toString(), quality.getMotion() > FrameQualityGate.DEFAULT_MAX_MOTION);
+        assertEquals(1, gate.getMovingCount());
+        // The same frame again is still.
+        assertEquals(0, gate.evaluate(stripes(true)).getMotion());
+    }
+
+    @Test
+    public void eachSamplerComparesItsOwnFrames() {
+        FrameQualityGate gate = new FrameQualityGate();
+        FrameQualityGate.Sampler first = new FrameQualityGate.Sampler();
+        FrameQualityGate.Sampler second = new FrameQualityGate.Sampler();
+        // Two threads, each steady, whose frames finish interleaved.
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, gate.evaluate(stripes(false), first).getMotion());
+            assertEquals(0, gate.evaluate(stripes(true), second).getMotion());
+        }
+        assertEquals(0, gate.getMovingCount());
+        assertEquals(6, gate.getEvaluatedCount());
+        assertTrue(gate.evaluate(stripes(true), first).getMotion() > FrameQualityGate.DEFAULT_MAX_MOTION);
+    }
+
+    @Test
+    public void frameSizeChangeIsNoMotion() {
+        FrameQualityGate gate = new FrameQualityGate();
+        FrameQualityGate.Sampler sampler = new FrameQualityGate.Sampler();
+        gate.evaluate(stripes(false), sampler);
+        byte[] pixels = new byte[WIDTH * 8];
+        Arrays.fill(pixels, (byte) 255);
+        LuminanceSource shallow = new PlanarYUVLuminanceSource(pixels, WIDTH, 8, 0, 0, WIDTH, 8, false);
+        assertEquals(0, gate.evaluate(shallow, sampler).getMotion());
+        assertEquals(0, gate.evaluate(shallow, sampler).getMotion());
+    }
+
+    @Test
+    public void longRunOfRejectionsLetsOneThrough() {
+        FrameQualityGate gate = new FrameQualityGate();
+        int rejected = 0;
+        while (!gate.evaluate(flat(0)).isAccepted()) {
+            rejected++;
+            assertTrue(rejected < 100);
+        }
+        assertEquals(10, rejected);
+        assertEquals(11, gate.getEvaluatedCount());
+        assertEquals(10, gate.getRejectedCount());
+        assertFalse(gate.evaluate(flat(0)).isAccepted());
+    }
+
+    @Test
+    public void thresholdsAreConfigurable() {
+        FrameQualityGate gate = new FrameQualityGate(0, 0, 255);
+        assertTrue(gate.evaluate(flat(128)).isAccepted());
+        assertTrue(gate.evaluate(stripes(false)).isAccepted());
+        assertEquals(0, gate.getRejectedCount());
+    }
+
+    /**
+     * Black and white stripes as wide as a motion grid cell, or the inverse.
+     */
+    private static LuminanceSource stripes(boolean inverted) {
+        byte[] pixels = new byte[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                boolean white = (x / 8) % 2 == 0;
+                pixels[y * WIDTH + x] = (byte) (white != inverted ? 255 : 0);
+            }
+        }
+        return source(pixels);
+    }
+
+    private static LuminanceSource flat(int luminance) {
+        byte[] pixels = new byte[WIDTH * HEIGHT];
+        Arrays.fill(pixels, (byte) luminance);
+        return source(pixels);
+    }
+
+    private static LuminanceSource source(byte[] pixels) {
+        return new PlanarYUVLuminanceSource(pixels, WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, false);
+    }
+
+}
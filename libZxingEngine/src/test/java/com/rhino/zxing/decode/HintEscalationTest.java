@@ -0,0 +1,124 @@
+package com.rhino.zxing.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class HintEscalationTest {
+
+    @Test
+    public void standardLadderStartsFromCallersFormats() {
+        Map<DecodeHintType,Object> hints = hints(EnumSet.of(BarcodeFormat.QR_CODE, BarcodeFormat.EAN_13));
+        hints.put(DecodeHintType.CHARACTER_SET, "UTF-8");
+        HintEscalation escalation = HintEscalation.standard(hints, null, 4);
+        assertEquals(2, escalation.getStepCount());
+        assertEquals(hints, escalation.getHints(0));
+        Map<DecodeHintType,?> harder = escalation.getHints(1);
+        assertEquals(hints.get(DecodeHintType.POSSIBLE_FORMATS), harder.get(DecodeHintType.POSSIBLE_FORMATS));
+        assertEquals("UTF-8", harder.get(DecodeHintType.CHARACTER_SET));
+        assertTrue(harder.containsKey(DecodeHintType.TRY_HARDER));
+    }
+
+    @Test
+    public void primaryFormatsComeFirst() {
+        Map<DecodeHintType,Object> hints = hints(EnumSet.of(BarcodeFormat.QR_CODE, BarcodeFormat.EAN_13));
+        HintEscalation escalation = HintEscalation.standard(hints, EnumSet.of(BarcodeFormat.QR_CODE), 4);
+        assertEquals(3, escalation.getStepCount());
+        assertEquals(EnumSet.of(BarcodeFormat.QR_CODE), escalation.getHints(0).get(DecodeHintType.POSSIBLE_FORMATS));
+        assertEquals(hints.get(DecodeHintType.POSSIBLE_FORMATS), escalation.getHints(1).get(DecodeHintType.POSSIBLE_FORMATS));
+    }
+
+    @Test
+    public void primaryStepIsLeftOutIfItAddsNothing() {
+        Map<DecodeHintType,Object> hints = hints(EnumSet.of(BarcodeFormat.QR_CODE));
+        assertEquals(2, HintEscalation.standard(hints, EnumSet.of(BarcodeFormat.QR_CODE), 4).getStepCount());
+        // Primary formats the caller doesn't decode are dropped too.
+        assertEquals(2, HintEscalation.standard(hints, EnumSet.of(BarcodeFormat.EAN_13), 4).getStepCount());
+    }
+
+    @Test
+    public void callersTryHarderIsKeptOnEveryStep() {
+        Map<DecodeHintType,Object> hints = hints(EnumSet.of(BarcodeFormat.QR_CODE, BarcodeFormat.EAN_13));
+        hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+        HintEscalation escalation = HintEscalation.standard(hints, EnumSet.of(BarcodeFormat.QR_CODE), 4);
+        assertEquals(2, escalation.getStepCount());
+        for (int step = 0; step < escalation.getStepCount(); step++) {
+            assertTrue("step " + step, escalation.getHints(step).containsKey(DecodeHintType.TRY_HARDER));
+        }
+    }
+
+    @Test
+    public void noFormatsMeansEveryFormat() {
+        HintEscalation escalation = HintEscalation.standard(null, EnumSet.of(BarcodeFormat.QR_CODE), 4);
+        assertEquals(3, escalation.getStepCount());
+        assertNull(escalation.getHints(1).get(DecodeHintType.POSSIBLE_FORMATS));
+    }
+
+    @Test
+    public void missesClimbAndHitsReturnToFirstStep() {
+        HintEscalation escalation = threeSteps(2);
+        escalation.onDecoded(0, false);
+        assertEquals(0, escalation.getStep());
+        escalation.onDecoded(0, false);
+        assertEquals(1, escalation.getStep());
+        escalation.onDecoded(1, false);
+        escalation.onDecoded(1, false);
+        assertEquals(2, escalation.getStep());
+        // The top step is as far as it goes.
+        escalation.onDecoded(2, false);
+        escalation.onDecoded(2, false);
+        assertEquals(2, escalation.getStep());
+        assertEquals(2, escalation.getEscalationCount());
+        escalation.onDecoded(2, true);
+        assertEquals(0, escalation.getStep());
+        assertEquals(1, escalation.getHitCount(2));
+        assertEquals(3, escalation.getFrameCount(2));
+        assertEquals(1.0f / 3, escalation.getHitRate(2), 1e-6f);
+    }
+
+    @Test
+    public void missesAtAnotherStepDontCount() {
+        HintEscalation escalation = threeSteps(2);
+        escalation.onDecoded(0, false);
+        escalation.onDecoded(0, false);
+        assertEquals(1, escalation.getStep());
+        // Frames still in flight from the first step.
+        escalation.onDecoded(0, false);
+        escalation.onDecoded(0, false);
+        assertEquals(1, escalation.getStep());
+    }
+
+    @Test
+    public void resetReturnsToFirstStep() {
+        HintEscalation escalation = threeSteps(1);
+        escalation.onDecoded(0, false);
+        escalation.reset();
+        assertEquals(0, escalation.getStep());
+        assertEquals(0.0f, escalation.getHitRate(1), 0.0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void needsSteps() {
+        new HintEscalation(Collections.<Map<DecodeHintType,?>>emptyList(), 1);
+    }
+
+    private static HintEscalation threeSteps(int missesToEscalate) {
+        Map<DecodeHintType,Object> hints = hints(EnumSet.of(BarcodeFormat.QR_CODE, BarcodeFormat.EAN_13));
+        return HintEscalation.standard(hints, EnumSet.of(BarcodeFormat.QR_CODE), missesToEscalate);
+    }
+
+    private static Map<DecodeHintType,Object> hints(EnumSet<BarcodeFormat> formats) {
+        Map<DecodeHintType,Object> hints = new EnumMap<>(DecodeHintType.class);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
+        return hints;
+    }
+
+}
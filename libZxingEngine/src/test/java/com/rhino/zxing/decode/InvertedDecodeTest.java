@@ -0,0 +1,109 @@
+package com.rhino.zxing.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.LuminanceSource;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class InvertedDecodeTest {
+
+    private static final int SIZE = 200;
+
+    @Test
+    public void offMissesLightOnDark() {
+        DecodeStatistics statistics = new DecodeStatistics();
+        BarcodeDecoder decoder = decoder(statistics, InvertedDecode.OFF);
+        assertFalse(decoder.decode(inverted("screen")).isFound());
+        assertEquals(0, statistics.getPolarityAttemptCount(false));
+        assertEquals(0, statistics.getPolarityAttemptCount(true));
+    }
+
+    @Test
+    public void whenDarkReadsLightOnDark() {
+        DecodeStatistics statistics = new DecodeStatistics();
+        BarcodeDecoder decoder = decoder(statistics, InvertedDecode.WHEN_DARK);
+        DecodeOutcome outcome = decoder.decode(inverted("screen"));
+        assertTrue(outcome.isFound());
+        assertEquals("screen", outcome.getResult().getText());
+        assertEquals(1, statistics.getPolarityAttemptCount(true));
+        assertEquals(1, statistics.getPolarityHitCount(true));
+        assertEquals(0, statistics.getPolarityAttemptCount(false));
+    }
+
+    @Test
+    public void whenDarkDecodesLightFramesOnce() {
+        DecodeStatistics statistics = new DecodeStatistics();
+        BarcodeDecoder decoder = decoder(statistics, InvertedDecode.WHEN_DARK);
+        assertTrue(decoder.decode(normal("paper")).isFound());
+        assertFalse(decoder.decode(TestImages.source(TestImages.blank(SIZE, SIZE), SIZE, SIZE)).isFound());
+        assertEquals(2, statistics.getPolarityAttemptCount(false));
+        assertEquals(1, statistics.getPolarityHitCount(false));
+        assertEquals(0, statistics.getPolarityAttemptCount(true));
+    }
+
+    @Test
+    public void whenDarkDecodesDarkFramesTwice() {
+        DecodeStatistics statistics = new DecodeStatistics();
+        BarcodeDecoder decoder = decoder(statistics, InvertedDecode.WHEN_DARK);
+        // A dim frame: a dark code on the one light patch of a dark scene.
+        int width = 400;
+        int height = 400;
+        byte[] pixels = new byte[width * height];
+        Arrays.fill(pixels, (byte) TestImages.BLACK);
+        for (int y = 100; y < 300; y++) {
+            Arrays.fill(pixels, y * width + 100, y * width + 300, (byte) TestImages.WHITE);
+        }
+        TestImages.drawQrCode(pixels, width, "dim", 120, 120, 6);
+        assertTrue(decoder.decode(TestImages.source(pixels, width, height)).isFound());
+        // The inverted pass found nothing, and the frame was read again as it is.
+        assertEquals(1, statistics.getPolarityAttemptCount(true));
+        assertEquals(0, statistics.getPolarityHitCount(true));
+        assertEquals(1, statistics.getPolarityAttemptCount(false));
+        assertEquals(1, statistics.getPolarityHitCount(false));
+    }
+
+    @Test
+    public void alternateSwitchesAfterMiss() {
+        DecodeStatistics statistics = new DecodeStatistics();
+        BarcodeDecoder decoder = decoder(statistics, InvertedDecode.ALTERNATE);
+        LuminanceSource screen = inverted("screen");
+        assertFalse(decoder.decode(screen).isFound());
+        assertTrue(decoder.decode(screen).isFound());
+        // It stays with the polarity which found the code.
+        assertTrue(decoder.decode(screen).isFound());
+        assertEquals(1, statistics.getPolarityAttemptCount(false));
+        assertEquals(0, statistics.getPolarityHitCount(false));
+        assertEquals(2, statistics.getPolarityAttemptCount(true));
+        assertEquals(2, statistics.getPolarityHitCount(true));
+        assertEquals(1.0f, statistics.getPolarityHitRate(true), 0.0f);
+        // And switches back once that misses.
+        assertFalse(decoder.decode(normal("paper")).isFound());
+        assertTrue(decoder.decode(normal("paper")).isFound());
+        assertEquals(2, statistics.getPolarityHitCount(true));
+        assertEquals(1, statistics.getPolarityHitCount(false));
+    }
+
+    private static BarcodeDecoder decoder(DecodeStatistics statistics, InvertedDecode mode) {
+        BarcodeDecoder decoder = new BarcodeDecoder(TestImages.hints(BarcodeFormat.QR_CODE), statistics, null, null, null, false);
+        decoder.setInvertedDecode(mode);
+        return decoder;
+    }
+
+    private static LuminanceSource normal(String contents) {
+        byte[] pixels = TestImages.blank(SIZE, SIZE);
+        TestImages.drawQrCode(pixels, SIZE, contents, 20, 20, 6);
+        return TestImages.source(pixels, SIZE, SIZE);
+    }
+
+    private static LuminanceSource inverted(String contents) {
+        byte[] pixels = TestImages.blank(SIZE, SIZE);
+        TestImages.drawQrCode(pixels, SIZE, contents, 20, 20, 6);
+        TestImages.invert(pixels);
+        return TestImages.source(pixels, SIZE, SIZE);
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.rhino.zxing.decode;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    // 8 buckets per power of two: a bucket's middle is within 1/16 of any value in it.
+    private static final double MAX_ERROR = 1.0 / 16;
+
+    @Test
+    public void emptySnapshotIsZero() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+        assertEquals(0L, snapshot.getCount());
+        assertEquals(0L, snapshot.getMeanNanos());
+        assertEquals(0L, snapshot.getMaxNanos());
+        assertEquals(0L, snapshot.getPercentileNanos(50));
+    }
+
+    @Test
+    public void bucketsRoundTripWithinError() {
+        long[] values = {0L, 1L, 7L, 8L, 9L, 15L, 16L, 1000L, 123456789L, Long.MAX_VALUE / 3};
+        for (long value : values) {
+            long middle = LatencyHistogram.valueOf(LatencyHistogram.bucketOf(value));
+            assertEquals("value " + value, value, middle, Math.max(0.5, value * MAX_ERROR));
+        }
+    }
+
+    @Test
+    public void bucketsIncreaseWithValue() {
+        int previous = -1;
+        for (long value = 1L; value > 0L && value < Long.MAX_VALUE / 2; value = value * 3 / 2 + 1) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue("value " + value, bucket >= previous);
+            previous = bucket;
+        }
+    }
+
+    @Test
+    public void percentilesOfUniformDurations() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000000L);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000L, snapshot.getCount());
+        assertEquals(500500000L, snapshot.getMeanNanos());
+        assertEquals(1000000000L, snapshot.getMaxNanos());
+        assertPercentile(500000000L, snapshot.getPercentileNanos(50));
+        assertPercentile(900000000L, snapshot.getPercentileNanos(90));
+        assertPercentile(990000000L, snapshot.getPercentileNanos(99));
+        assertPercentile(1000000000L, snapshot.getPercentileNanos(100));
+        assertPercentile(1000000L, snapshot.getPercentileNanos(0));
+    }
+
+    @Test
+    public void percentileNeverExceedsMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // The middle of this value's bucket is above it.
+        histogram.record(960L);
+        assertTrue(LatencyHistogram.valueOf(LatencyHistogram.bucketOf(960L)) > 960L);
+        assertEquals(960L, histogram.snapshot().getPercentileNanos(99));
+    }
+
+    @Test
+    public void negativeDurationsAreIgnored() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-1L);
+        assertEquals(0L, histogram.getCount());
+    }
+
+    @Test
+    public void resetClearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5000L);
+        histogram.reset();
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(0L, snapshot.getCount());
+        assertEquals(0L, snapshot.getMaxNanos());
+        assertEquals(0L, snapshot.getPercentileNanos(50));
+    }
+
+    @Test
+    public void concurrentRecordsAreAllCounted() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final int threads = 4;
+        final int perThread = 10000;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final long offset = t;
+            workers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < perThread; i++) {
+                        histogram.record(i * threads + offset);
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(threads * perThread, snapshot.getCount());
+        assertEquals(threads * perThread - 1L, snapshot.getMaxNanos());
+    }
+
+    private static void assertPercentile(long expected, long actual) {
+        assertEquals(expected, actual, expected * MAX_ERROR);
+    }
+
+}
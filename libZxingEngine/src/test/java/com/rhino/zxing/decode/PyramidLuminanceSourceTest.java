@@ -0,0 +1,101 @@
+package com.rhino.zxing.decode;
+
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.rhino.zxing.camera.RotatedYUVLuminanceSource;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PyramidLuminanceSourceTest {
+
+    @Test
+    public void levelZeroIsBase() {
+        LuminanceSource base = planar(image(9, 7), 9, 7);
+        PyramidLuminanceSource pyramid = new PyramidLuminanceSource(base);
+        assertSame(base, pyramid.getLevel(0));
+        assertEquals(9, pyramid.getWidth());
+        assertEquals(7, pyramid.getHeight());
+        assertArrayEquals(base.getMatrix(), pyramid.getMatrix());
+    }
+
+    @Test
+    public void levelsAverageTwoByTwoAndDropOddEdge() {
+        byte[] pixels = image(9, 7);
+        PyramidLuminanceSource pyramid = new PyramidLuminanceSource(planar(pixels, 9, 7));
+        LuminanceSource half = pyramid.getLevel(1);
+        assertEquals(4, half.getWidth());
+        assertEquals(3, half.getHeight());
+        byte[] matrix = half.getMatrix();
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 4; x++) {
+                int sum = at(pixels, 9, x * 2, y * 2) + at(pixels, 9, x * 2 + 1, y * 2) +
+                        at(pixels, 9, x * 2, y * 2 + 1) + at(pixels, 9, x * 2 + 1, y * 2 + 1);
+                assertEquals("(" + x + ", " + y + ")", (sum + 2) / 4, matrix[y * 4 + x] & 0xff);
+            }
+        }
+    }
+
+    @Test
+    public void levelsAreComputedOnDemand() {
+        PyramidLuminanceSource pyramid = new PyramidLuminanceSource(planar(image(32, 32), 32, 32));
+        assertFalse(pyramid.hasLevel(1));
+        LuminanceSource quarter = pyramid.getLevel(2);
+        assertTrue(pyramid.hasLevel(1));
+        assertTrue(pyramid.hasLevel(2));
+        assertFalse(pyramid.hasLevel(3));
+        assertSame(quarter, pyramid.getLevel(2));
+        assertEquals(8, quarter.getWidth());
+    }
+
+    @Test
+    public void rotatedSourceDownsamplesLikeRotatedCopy() {
+        int dataWidth = 14;
+        int dataHeight = 10;
+        byte[] frame = new byte[dataWidth * dataHeight * 3 / 2];
+        System.arraycopy(image(dataWidth, dataHeight), 0, frame, 0, dataWidth * dataHeight);
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            RotatedYUVLuminanceSource rotated =
+                    new RotatedYUVLuminanceSource(frame, dataWidth, dataHeight, 2, 2, 8, 6, rotation);
+            LuminanceSource expected = new PyramidLuminanceSource(
+                    planar(rotated.getMatrix(), rotated.getWidth(), rotated.getHeight())).getLevel(1);
+            LuminanceSource actual = new PyramidLuminanceSource(rotated).getLevel(1);
+            assertEquals("width at " + rotation, expected.getWidth(), actual.getWidth());
+            assertEquals("height at " + rotation, expected.getHeight(), actual.getHeight());
+            assertArrayEquals("matrix at " + rotation, expected.getMatrix(), actual.getMatrix());
+        }
+    }
+
+    @Test
+    public void levelCountStopsAtMinSize() {
+        PyramidLuminanceSource pyramid = new PyramidLuminanceSource(planar(new byte[640 * 480], 640, 480));
+        assertEquals(1, pyramid.getLevelCount(480));
+        assertEquals(2, pyramid.getLevelCount(240));
+        assertEquals(3, pyramid.getLevelCount(120));
+        assertEquals(PyramidLuminanceSource.MAX_LEVELS, pyramid.getLevelCount(1));
+        assertEquals(8, PyramidLuminanceSource.getScale(3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badLevelFails() {
+        new PyramidLuminanceSource(planar(new byte[4], 2, 2)).getLevel(PyramidLuminanceSource.MAX_LEVELS);
+    }
+
+    private static LuminanceSource planar(byte[] pixels, int width, int height) {
+        return new PlanarYUVLuminanceSource(pixels, width, height, 0, 0, width, height, false);
+    }
+
+    private static byte[] image(int width, int height) {
+        byte[] pixels = new byte[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) (i * 37 % 256);
+        }
+        return pixels;
+    }
+
+    private static int at(byte[] pixels, int width, int x, int y) {
+        return pixels[y * width + x] & 0xff;
+    }
+
+}
@@ -0,0 +1,142 @@
+package com.rhino.zxing.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.ResultPoint;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RegionTrackerTest {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+
+    @Test
+    public void nothingToFollowWithoutResults() {
+        RegionTracker tracker = new RegionTracker();
+        assertNull(tracker.predict(WIDTH, HEIGHT));
+        tracker.onResult(null);
+        tracker.onResult(new ResultPoint[] {new ResultPoint(100, 100), null});
+        assertNull(tracker.predict(WIDTH, HEIGHT));
+        assertEquals(0, tracker.getRegionAttemptCount());
+    }
+
+    @Test
+    public void regionIsPaddedByLargerSide() {
+        RegionTracker tracker = new RegionTracker();
+        tracker.onResult(points(100, 100, 140, 100, 100, 130));
+        // A 40x30 box padded by 40 on each side.
+        assertRegion(60, 60, 120, 110, tracker.predict(WIDTH, HEIGHT));
+        assertEquals(1, tracker.getRegionAttemptCount());
+        assertEquals(120f * 110f / (WIDTH * HEIGHT), tracker.getRegionPixelRatio(), 1e-6f);
+    }
+
+    @Test
+    public void smallRegionIsWidened() {
+        RegionTracker tracker = new RegionTracker();
+        // The two ends of a 1D code's row.
+        tracker.onResult(points(200, 300, 210, 300));
+        assertRegion(173, 268, 64, 64, tracker.predict(WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void regionIsClampedToFrame() {
+        RegionTracker tracker = new RegionTracker();
+        tracker.onResult(points(5, 5, 45, 5, 5, 45));
+        assertRegion(0, 0, 120, 120, tracker.predict(WIDTH, HEIGHT));
+
+        tracker.reset();
+        tracker.onResult(points(600, 440, 635, 440, 600, 475));
+        assertRegion(WIDTH - 105, HEIGHT - 105, 105, 105, tracker.predict(WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void regionAsLargeAsFrameIsNone() {
+        RegionTracker tracker = new RegionTracker();
+        tracker.onResult(points(20, 20, 120, 20, 20, 120));
+        assertNull(tracker.predict(160, 160));
+        // Only one side may be cut short.
+        assertRegion(0, 0, 160, 300, tracker.predict(160, 480));
+    }
+
+    @Test
+    public void missLosesTheCode() {
+        RegionTracker tracker = new RegionTracker();
+        tracker.onResult(points(100, 100, 140, 100, 100, 140));
+        assertNotNull(tracker.predict(WIDTH, HEIGHT));
+        tracker.onRegionDecoded(true);
+        assertNotNull(tracker.predict(WIDTH, HEIGHT));
+        tracker.onRegionDecoded(false);
+        assertNull(tracker.predict(WIDTH, HEIGHT));
+        assertEquals(2, tracker.getRegionAttemptCount());
+        assertEquals(1, tracker.getRegionHitCount());
+        assertEquals(1, tracker.getLostCount());
+        // A new result finds it again.
+        tracker.onResult(points(100, 100, 140, 100, 100, 140));
+        assertNotNull(tracker.predict(WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void regionResultPointsAreInFrameCoordinates() {
+        byte[] pixels = TestImages.blank(WIDTH, HEIGHT);
+        TestImages.drawQrCode(pixels, WIDTH, "tracked", 300, 200, 4);
+        LuminanceSource frame = TestImages.source(pixels, WIDTH, HEIGHT);
+        RegionTracker tracker = new RegionTracker();
+        BarcodeDecoder decoder = new BarcodeDecoder(TestImages.hints(BarcodeFormat.QR_CODE), null, null, null, tracker, false);
+        decoder.setPyramidDecode(false);
+
+        DecodeOutcome whole = decoder.decode(frame);
+        assertTrue(whole.isFound());
+        assertEquals(0, tracker.getRegionAttemptCount());
+
+        DecodeOutcome inRegion = decoder.decode(frame);
+        assertTrue(inRegion.isFound());
+        assertEquals(1, tracker.getRegionHitCount());
+        assertTrue(tracker.getRegionPixelRatio() < 0.5f);
+        ResultPoint[] expected = whole.getResult().getResultPoints();
+        ResultPoint[] actual = inRegion.getResult().getResultPoints();
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].getX(), actual[i].getX(), 0.5f);
+            assertEquals(expected[i].getY(), actual[i].getY(), 0.5f);
+        }
+    }
+
+    @Test
+    public void regionMissFallsBackToWholeFrame() {
+        byte[] pixels = TestImages.blank(WIDTH, HEIGHT);
+        TestImages.drawQrCode(pixels, WIDTH, "moved", 40, 40, 4);
+        RegionTracker tracker = new RegionTracker();
+        // The code was last seen in the other corner.
+        tracker.onResult(points(500, 350, 560, 350, 500, 410));
+        BarcodeDecoder decoder = new BarcodeDecoder(TestImages.hints(BarcodeFormat.QR_CODE), null, null, null, tracker, false);
+        decoder.setPyramidDecode(false);
+        assertTrue(decoder.decode(TestImages.source(pixels, WIDTH, HEIGHT)).isFound());
+        assertEquals(1, tracker.getRegionAttemptCount());
+        assertEquals(0, tracker.getRegionHitCount());
+        assertEquals(1, tracker.getLostCount());
+        // Following the code where it was found.
+        RegionTracker.Region region = tracker.predict(WIDTH, HEIGHT);
+        assertNotNull(region);
+        assertTrue(region.toString(), region.getLeft() < 100 && region.getTop() < 100);
+    }
+
+    private static ResultPoint[] points(float... coordinates) {
+        ResultPoint[] points = new ResultPoint[coordinates.length / 2];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new ResultPoint(coordinates[2 * i], coordinates[2 * i + 1]);
+        }
+        return points;
+    }
+
+    private static void assertRegion(int left, int top, int width, int height, RegionTracker.Region region) {
+        assertNotNull(region);
+        assertEquals(region.toString(), left, region.getLeft());
+        assertEquals(region.toString(), top, region.getTop());
+        assertEquals(region.toString(), width, region.getWidth());
+        assertEquals(region.toString(), height, region.getHeight());
+    }
+
+}
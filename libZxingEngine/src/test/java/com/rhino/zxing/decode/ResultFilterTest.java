@@ -0,0 +1,100 @@
+package com.rhino.zxing.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+
+import org.junit.Test;
+
+import java.util.EnumSet;
+
+import static org.junit.Assert.*;
+
+public class ResultFilterTest {
+
+    @Test
+    public void repeatsInsideWindowAreDropped() {
+        ResultFilter filter = new ResultFilter(1000L);
+        assertTrue(filter.accept(qr("a"), 0L));
+        assertFalse(filter.accept(qr("a"), 500L));
+        assertTrue(filter.accept(qr("b"), 500L));
+        assertEquals(2, filter.getDeliveredCount());
+        assertEquals(1, filter.getDuplicateCount());
+    }
+
+    @Test
+    public void everySightingRestartsWindow() {
+        ResultFilter filter = new ResultFilter(1000L);
+        assertTrue(filter.accept(qr("a"), 0L));
+        assertFalse(filter.accept(qr("a"), 900L));
+        assertFalse(filter.accept(qr("a"), 1800L));
+        // Out of view for a whole window.
+        assertTrue(filter.accept(qr("a"), 2800L));
+    }
+
+    @Test
+    public void sameTextInAnotherFormatIsNotDuplicate() {
+        ResultFilter filter = new ResultFilter(1000L);
+        assertTrue(filter.accept(qr("123"), 0L));
+        assertTrue(filter.accept(result("123", BarcodeFormat.DATA_MATRIX), 0L));
+    }
+
+    @Test
+    public void lowConfidenceFormatsNeedVotes() {
+        ResultFilter filter = new ResultFilter(1000L, 2, 3, ResultFilter.LOW_CONFIDENCE_FORMATS);
+        assertFalse(filter.accept(code39("x"), 0L));
+        assertFalse(filter.accept(code39("y"), 10L));
+        assertTrue(filter.accept(code39("x"), 20L));
+        assertEquals(2, filter.getUnconfirmedCount());
+        // Other formats don't vote.
+        assertTrue(filter.accept(qr("x"), 30L));
+    }
+
+    @Test
+    public void votesOutsideFramesAreForgotten() {
+        ResultFilter filter = new ResultFilter(1000L, 2, 2, EnumSet.of(BarcodeFormat.CODE_39));
+        assertFalse(filter.accept(code39("x"), 0L));
+        assertFalse(filter.accept(code39("y"), 10L));
+        assertFalse(filter.accept(code39("z"), 20L));
+        assertFalse(filter.accept(code39("x"), 30L));
+        assertTrue(filter.accept(code39("x"), 40L));
+    }
+
+    @Test
+    public void acceptArrayKeepsOrderAndDropsRepeats() {
+        ResultFilter filter = new ResultFilter(1000L);
+        Result a = qr("a");
+        Result b = qr("b");
+        Result[] accepted = filter.accept(new Result[] {a, qr("a"), b}, 0L);
+        assertArrayEquals(new Result[] {a, b}, accepted);
+        assertEquals(0, filter.accept(new Result[] {qr("b")}, 10L).length);
+    }
+
+    @Test
+    public void clearForgetsCodesAndVotes() {
+        ResultFilter filter = new ResultFilter(1000L, 2, 2, EnumSet.of(BarcodeFormat.CODE_39));
+        assertTrue(filter.accept(qr("a"), 0L));
+        assertFalse(filter.accept(code39("x"), 0L));
+        filter.clear();
+        assertTrue(filter.accept(qr("a"), 10L));
+        assertFalse(filter.accept(code39("x"), 10L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void needsEnoughFramesForVotes() {
+        new ResultFilter(1000L, 3, 2, ResultFilter.LOW_CONFIDENCE_FORMATS);
+    }
+
+    private static Result qr(String text) {
+        return result(text, BarcodeFormat.QR_CODE);
+    }
+
+    private static Result code39(String text) {
+        return result(text, BarcodeFormat.CODE_39);
+    }
+
+    private static Result result(String text, BarcodeFormat format) {
+        return new Result(text, null, new ResultPoint[0], format);
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.rhino.zxing.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+
+/**
+ * Grey images with barcodes drawn into them, for the decode tests.
+ */
+final class TestImages {
+
+    static final int BLACK = 0x20;
+    static final int WHITE = 0xE0;
+
+    private TestImages() {
+    }
+
+    static byte[] blank(int width, int height) {
+        byte[] pixels = new byte[width * height];
+        Arrays.fill(pixels, (byte) WHITE);
+        return pixels;
+    }
+
+    /**
+     * @return the code's modules, with a one module margin, at low error correction.
+     */
+    static BitMatrix encode(BarcodeFormat format, String contents, int width, int height) {
+        Map<EncodeHintType,Object> hints = new EnumMap<>(EncodeHintType.class);
+        hints.put(EncodeHintType.MARGIN, 1);
+        if (format == BarcodeFormat.QR_CODE) {
+            hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.L);
+        }
+        try {
+            return new MultiFormatWriter().encode(contents, format, width, height, hints);
+        } catch (WriterException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Draws {@code matrix} with each module {@code scale} pixels wide, its top left at
+     * ({@code left}, {@code top}).
+     */
+    static void draw(byte[] pixels, int width, BitMatrix matrix, int left, int top, int scale) {
+        for (int y = 0; y < matrix.getHeight() * scale; y++) {
+            for (int x = 0; x < matrix.getWidth() * scale; x++) {
+                pixels[(top + y) * width + left + x] = (byte) (matrix.get(x / scale, y / scale) ? BLACK : WHITE);
+            }
+        }
+    }
+
+    static void drawQrCode(byte[] pixels, int width, String contents, int left, int top, int scale) {
+        draw(pixels, width, encode(BarcodeFormat.QR_CODE, contents, 0, 0), left, top, scale);
+    }
+
+    static void invert(byte[] pixels) {
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) (255 - (pixels[i] & 0xff));
+        }
+    }
+
+    static LuminanceSource source(byte[] pixels, int width, int height) {
+        return new PlanarYUVLuminanceSource(pixels, width, height, 0, 0, width, height, false);
+    }
+
+    static Map<DecodeHintType,Object> hints(BarcodeFormat first, BarcodeFormat... rest) {
+        Map<DecodeHintType,Object> hints = new EnumMap<>(DecodeHintType.class);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, EnumSet.of(first, rest));
+        return hints;
+    }
+
+}